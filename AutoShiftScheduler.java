@@ -0,0 +1,136 @@
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * AutoShiftScheduler
+ * -------------------------------------------
+ * Shifts the logged-in user's due future trades (date <= today) into their warehouses
+ * without anyone opening the shift form. Runs once right after login (catching up on
+ * everything that became due while the application was closed) and then every day at
+ * the configured time, using FutureTradeDAO.shiftDue in batches per warehouse.
+ *
+ * Trades that could not be shifted (usually not enough stock yet) stay scheduled and
+ * are retried every RETRY_MINUTES until they go through or the next daily run.
+ * Every pass is logged through java.util.logging (logger "AutoShiftScheduler").
+ *
+ * Disabled unless a time is configured (MainProject: --auto-shift-at=HH:mm).
+ */
+public class AutoShiftScheduler {
+
+    private static final Logger LOG = Logger.getLogger(AutoShiftScheduler.class.getName());
+    private static final long RETRY_MINUTES = 30;
+    private static final int LOGGED_FAILURES = 20;
+
+    private static volatile LocalTime runAt = null; // null = disabled
+    private static ScheduledExecutorService executor;
+    private static ScheduledFuture<?> retry;
+    private static String username;
+
+    // --------------------------------------------------------
+    // Daily time ("HH:mm"); "off" or empty disables the scheduler
+    // --------------------------------------------------------
+    public static void configure(String time) {
+        if (time == null || time.isBlank() || time.equalsIgnoreCase("off")) {
+            runAt = null;
+        } else {
+            runAt = LocalTime.parse(time.trim());
+        }
+    }
+
+    public static boolean isEnabled() {
+        return runAt != null;
+    }
+
+    // Start for the user who just logged in: catch-up pass now, then daily
+    public static synchronized void start() {
+        stop();
+        if (runAt == null || !SessionManager.isLoggedIn()) return;
+        username = SessionManager.getCurrentUser();
+        ScheduledThreadPoolExecutor ex = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread t = new Thread(r, "auto-shift");
+            t.setDaemon(true);
+            return t;
+        });
+        ex.setExecuteExistingDelayedTasksAfterShutdownPolicy(false); // stop() drops the next daily run
+        executor = ex;
+        ex.execute(() -> runPass(ex, "startup catch-up"));
+        scheduleDaily(ex);
+        LOG.info("Auto-shift: enabled for " + username + ", daily at " + runAt);
+    }
+
+    // On logout: no further passes (a pass in progress finishes its current warehouse)
+    public static synchronized void stop() {
+        if (executor == null) return;
+        executor.shutdown();
+        executor = null;
+        retry = null;
+        username = null;
+    }
+
+    private static synchronized void scheduleDaily(ScheduledExecutorService ex) {
+        if (ex != executor || runAt == null) return;
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime next = now.toLocalDate().atTime(runAt);
+        if (!next.isAfter(now)) next = next.plusDays(1);
+        ex.schedule(() -> {
+            runPass(ex, "daily run");
+            scheduleDaily(ex);
+        }, Duration.between(now, next).toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    // --------------------------------------------------------
+    // One pass over everything due today
+    // --------------------------------------------------------
+    private static void runPass(ScheduledExecutorService ex, String reason) {
+        String user;
+        synchronized (AutoShiftScheduler.class) {
+            if (ex != executor) return; // stopped or restarted meanwhile
+            user = username;
+            retry = null;
+        }
+        if (!user.equals(SessionManager.getCurrentUser())) return;
+
+        FutureTradeDAO.ShiftResult result;
+        try {
+            result = FutureTradeDAO.shiftDue(user, LocalDate.now());
+        } catch (SQLException | RuntimeException e) {
+            LOG.log(Level.WARNING, "Auto-shift (" + reason + "): failed: " + e.getMessage(), e);
+            scheduleRetry(ex);
+            return;
+        }
+
+        if (result.shiftedIds.isEmpty() && result.failed.isEmpty()) return; // nothing due
+        LOG.info("Auto-shift (" + reason + "): " + result.shiftedIds.size() + " trade(s) shifted, "
+                + result.failed.size() + " still pending.");
+        int logged = 0;
+        for (Map.Entry<Integer, String> f : result.failed.entrySet()) {
+            if (logged++ == LOGGED_FAILURES) {
+                LOG.info("Auto-shift:   ... and " + (result.failed.size() - LOGGED_FAILURES) + " more");
+                break;
+            }
+            LOG.info("Auto-shift:   trade " + f.getKey() + ": " + f.getValue());
+        }
+        if (!result.failed.isEmpty()) scheduleRetry(ex);
+    }
+
+    // Another pass later, unless the daily run comes first
+    private static synchronized void scheduleRetry(ScheduledExecutorService ex) {
+        if (ex != executor || retry != null || runAt == null) return;
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime next = now.toLocalDate().atTime(runAt);
+        if (!next.isAfter(now)) next = next.plusDays(1);
+        if (Duration.between(now, next).toMinutes() <= RETRY_MINUTES) return;
+        retry = ex.schedule(() -> runPass(ex, "retry"), RETRY_MINUTES, TimeUnit.MINUTES);
+        LOG.info("Auto-shift: retrying pending trades in " + RETRY_MINUTES + " minutes.");
+    }
+}
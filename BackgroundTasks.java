@@ -0,0 +1,146 @@
+import javax.swing.*;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * BackgroundTasks
+ * -------------------------------------------
+ * Runs the database work of one window off the event dispatch thread (a SwingWorker per
+ * task) and hands the result back on it, so a slow query never freezes the window.
+ *
+ * load() is for reads that fill the current view. newView() - called when the user
+ * switches views - cancels the loads still running and drops their results, so a late
+ * answer can never overwrite the view the user has moved to. The query itself is not
+ * interrupted (that would tear down its pooled connection); it runs out in the background.
+ * Loads run on their own small pool, so stale queries running out can never occupy
+ * the threads writes (and other SwingWorkers) need; a cancelled load still queued never starts.
+ *
+ * write() is for changes. A write is never cancelled - a transaction in flight commits or
+ * rolls back as usual - and its result is always delivered.
+ *
+ * Every method must be called on the event dispatch thread. The busy listener receives
+ * the label of the most recently started task still running, or null when idle.
+ */
+public class BackgroundTasks {
+
+    // Database work returning a value (or throwing)
+    public interface Work<T> {
+        T call() throws Exception;
+    }
+
+    // Threads for load(); writes keep SwingWorker's own executor
+    private static final int LOAD_THREADS = 4;
+    private static final AtomicInteger SEQ = new AtomicInteger();
+    private static final ExecutorService LOADS = Executors.newFixedThreadPool(LOAD_THREADS, r -> {
+        Thread t = new Thread(r, "view-load-" + SEQ.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final Consumer<String> busyListener;
+    private final Map<SwingWorker<?, ?>, String> running = new LinkedHashMap<>();
+    private final List<SwingWorker<?, ?>> viewTasks = new ArrayList<>();
+    private int view = 0;
+
+    public BackgroundTasks(Consumer<String> busyListener) {
+        this.busyListener = busyListener;
+    }
+
+    // --------------------------------------------------------
+    // The user moved to another view: loads of the previous one are dropped
+    // --------------------------------------------------------
+    public void newView() {
+        view++;
+        for (SwingWorker<?, ?> w : viewTasks) {
+            w.cancel(false);
+            running.remove(w);
+        }
+        viewTasks.clear();
+        fireBusy();
+    }
+
+    // Id of the current view; compare with a value captured earlier to see whether the user moved on
+    public int currentView() {
+        return view;
+    }
+
+    public <T> void load(String label, Work<T> work, Consumer<T> onResult, Consumer<Exception> onError) {
+        start(label, work, onResult, onError, true);
+    }
+
+    public <T> void write(String label, Work<T> work, Consumer<T> onResult, Consumer<Exception> onError) {
+        start(label, work, onResult, onError, false);
+    }
+
+    // A worker managed elsewhere (progress updates etc.) that should still be cancelled with its view
+    public void trackForView(String label, SwingWorker<?, ?> worker) {
+        viewTasks.add(worker);
+        running.put(worker, label);
+        worker.addPropertyChangeListener(e -> {
+            if ("state".equals(e.getPropertyName()) && e.getNewValue() == SwingWorker.StateValue.DONE) finished(worker);
+        });
+        fireBusy();
+    }
+
+    private <T> void start(String label, Work<T> work, Consumer<T> onResult, Consumer<Exception> onError,
+                           boolean ofView) {
+        int startedIn = view;
+        SwingWorker<T, Void> worker = new SwingWorker<>() {
+            @Override
+            protected T doInBackground() throws Exception {
+                return work.call();
+            }
+
+            @Override
+            protected void done() {
+                finished(this);
+                if (isCancelled() || (ofView && startedIn != view)) return; // stale: the view has changed
+                T result;
+                try {
+                    result = get();
+                } catch (CancellationException ex) {
+                    return;
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (ExecutionException ex) {
+                    Throwable cause = ex.getCause();
+                    if (cause instanceof Exception) {
+                        onError.accept((Exception) cause);
+                    } else {
+                        onError.accept(new RuntimeException(cause));
+                    }
+                    return;
+                }
+                onResult.accept(result);
+            }
+        };
+        if (ofView) viewTasks.add(worker);
+        running.put(worker, label);
+        fireBusy();
+        if (ofView) {
+            LOADS.execute(worker);
+        } else {
+            worker.execute();
+        }
+    }
+
+    private void finished(SwingWorker<?, ?> worker) {
+        viewTasks.remove(worker);
+        if (running.remove(worker) != null) fireBusy();
+    }
+
+    private void fireBusy() {
+        String latest = null;
+        for (String label : running.values()) latest = label;
+        busyListener.accept(latest);
+    }
+}
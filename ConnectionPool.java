@@ -0,0 +1,552 @@
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * ConnectionPool
+ * -------------------------------------------
+ * Bounded pool of physical JDBC connections used behind DBConnection.getConnection().
+ * Callers receive a wrapper whose close() returns the physical connection to the pool,
+ * so the DAOs keep their try-with-resources blocks unchanged.
+ *
+ * Features: min/max idle, max total, validation-on-borrow, idle eviction,
+ * leak detection (connections held longer than the leak threshold are reported
+ * together with the stack of the borrower) and pool statistics.
+ *
+ * Each physical connection also keeps an LRU cache of PreparedStatements keyed by
+ * SQL text: prepareStatement(sql) on a pooled connection reuses the already-prepared
+ * statement, and closing it only clears its parameters.
+ */
+public class ConnectionPool {
+
+    // -----------------------------
+    // Snapshot of pool statistics
+    // -----------------------------
+    public static class PoolStats {
+        public int total;
+        public int idle;
+        public int active;
+        public int waiting;
+        public long created;
+        public long destroyed;
+        public long borrowed;
+        public long validationFailures;
+        public long timeouts;
+        public long leaksDetected;
+        public long statementCacheHits;
+        public long statementCacheMisses;
+
+        @Override
+        public String toString() {
+            return "total=" + total + ", idle=" + idle + ", active=" + active + ", waiting=" + waiting
+                    + ", created=" + created + ", destroyed=" + destroyed + ", borrowed=" + borrowed
+                    + ", validationFailures=" + validationFailures + ", timeouts=" + timeouts
+                    + ", leaksDetected=" + leaksDetected
+                    + ", statementCacheHits=" + statementCacheHits + ", statementCacheMisses=" + statementCacheMisses;
+        }
+    }
+
+    // -----------------------------
+    // A prepared statement owned by one physical connection's cache
+    // -----------------------------
+    private static class CachedStatement {
+        final PreparedStatement statement;
+        boolean inUse;
+        boolean evicted;
+
+        CachedStatement(PreparedStatement statement) {
+            this.statement = statement;
+        }
+    }
+
+    // -----------------------------
+    // One physical connection owned by the pool
+    // -----------------------------
+    private static class PooledConnection {
+        final Connection physical;
+        final Map<String, CachedStatement> statements;
+        long lastReturned = System.currentTimeMillis();
+        long borrowedAt;
+        Throwable borrowSite;
+        boolean leakReported;
+
+        PooledConnection(Connection physical, int cacheSize) {
+            this.physical = physical;
+            // Access-ordered map = LRU; evicted statements are closed once nobody is using them
+            this.statements = new LinkedHashMap<String, CachedStatement>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+                    if (size() <= cacheSize) return false;
+                    CachedStatement cs = eldest.getValue();
+                    if (cs.inUse) {
+                        cs.evicted = true;
+                    } else {
+                        closeQuietly(cs.statement);
+                    }
+                    return true;
+                }
+            };
+        }
+    }
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int minIdle;
+    private final int maxIdle;
+    private final int maxTotal;
+    private final long borrowTimeoutMs;
+    private final long leakThresholdMs;
+    private final long idleTimeoutMs;
+    private final int statementCacheSize;
+    private final long validateAfterIdleMs = 5_000;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    private final ArrayDeque<PooledConnection> idle = new ArrayDeque<>();
+    private final Map<PooledConnection, Boolean> active = new IdentityHashMap<>();
+    private final ScheduledExecutorService housekeeper;
+
+    private int total = 0;
+    private int pending = 0; // connections being opened outside the lock
+    private int waiting = 0;
+    private boolean shutdown = false;
+
+    private long createdCount, destroyedCount, borrowedCount, validationFailures, timeouts, leaksDetected;
+    private long statementCacheHits, statementCacheMisses; // updated by borrower threads, read approximately
+
+    public ConnectionPool(String url, String user, String password,
+                          int minIdle, int maxIdle, int maxTotal,
+                          long borrowTimeoutMs, long leakThresholdMs, long idleTimeoutMs,
+                          int statementCacheSize) {
+        if (maxTotal < 1 || minIdle < 0 || maxIdle < minIdle || maxIdle > maxTotal)
+            throw new IllegalArgumentException("Invalid pool sizing: min=" + minIdle + ", maxIdle=" + maxIdle + ", max=" + maxTotal);
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.minIdle = minIdle;
+        this.maxIdle = maxIdle;
+        this.maxTotal = maxTotal;
+        this.borrowTimeoutMs = borrowTimeoutMs;
+        this.leakThresholdMs = leakThresholdMs;
+        this.idleTimeoutMs = idleTimeoutMs;
+        this.statementCacheSize = statementCacheSize;
+
+        housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "db-pool-housekeeper");
+            t.setDaemon(true);
+            return t;
+        });
+        housekeeper.scheduleWithFixedDelay(this::housekeep, 10, 10, TimeUnit.SECONDS);
+    }
+
+    public int getMaxTotal() {
+        return maxTotal;
+    }
+
+    // --------------------------------------------------------
+    // Borrow a connection (blocks up to borrowTimeoutMs when the pool is exhausted)
+    // --------------------------------------------------------
+    public Connection borrow() throws SQLException {
+        long deadline = System.currentTimeMillis() + borrowTimeoutMs;
+
+        while (true) {
+            PooledConnection candidate = null;
+            boolean mayCreate = false;
+
+            lock.lock();
+            try {
+                while (true) {
+                    if (shutdown) throw new SQLException("Connection pool has been shut down.");
+                    candidate = idle.pollLast(); // LIFO keeps the warmest connections in use
+                    if (candidate != null) break;
+                    if (total + pending < maxTotal) {
+                        pending++;
+                        mayCreate = true;
+                        break;
+                    }
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        timeouts++;
+                        throw new SQLException("Timed out after " + borrowTimeoutMs
+                                + " ms waiting for a database connection (" + statsLocked() + ")");
+                    }
+                    waiting++;
+                    try {
+                        available.await(remaining, TimeUnit.MILLISECONDS);
+                    } catch (InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                        throw new SQLException("Interrupted while waiting for a database connection.", ie);
+                    } finally {
+                        waiting--;
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            if (mayCreate) {
+                // Open the physical connection outside the lock so other borrowers are not blocked by the handshake
+                try {
+                    candidate = new PooledConnection(DriverManager.getConnection(url, user, password), statementCacheSize);
+                } catch (SQLException ex) {
+                    lock.lock();
+                    try {
+                        pending--;
+                        available.signal();
+                    } finally {
+                        lock.unlock();
+                    }
+                    throw ex;
+                }
+                lock.lock();
+                try {
+                    pending--;
+                    total++;
+                    createdCount++;
+                } finally {
+                    lock.unlock();
+                }
+            } else if (!validate(candidate)) {
+                destroy(candidate);
+                continue;
+            }
+
+            lock.lock();
+            try {
+                candidate.borrowedAt = System.currentTimeMillis();
+                candidate.borrowSite = new Throwable("Connection borrowed here");
+                candidate.leakReported = false;
+                active.put(candidate, Boolean.TRUE);
+                borrowedCount++;
+            } finally {
+                lock.unlock();
+            }
+            return wrap(candidate);
+        }
+    }
+
+    // Validation-on-borrow: only connections idle for a while are pinged
+    private boolean validate(PooledConnection pc) {
+        if (System.currentTimeMillis() - pc.lastReturned < validateAfterIdleMs) return true;
+        try {
+            if (pc.physical.isValid(2)) return true;
+        } catch (SQLException ignored) {
+            // treated as invalid below
+        }
+        lock.lock();
+        try {
+            validationFailures++;
+        } finally {
+            lock.unlock();
+        }
+        return false;
+    }
+
+    // --------------------------------------------------------
+    // Return a connection to the pool (called from the wrapper's close())
+    // --------------------------------------------------------
+    private void release(PooledConnection pc) {
+        boolean healthy = true;
+        try {
+            if (pc.physical.isClosed()) {
+                healthy = false;
+            } else if (!pc.physical.getAutoCommit()) {
+                // A caller forgot to commit: never leak an open transaction to the next borrower
+                pc.physical.rollback();
+                pc.physical.setAutoCommit(true);
+            }
+        } catch (SQLException ex) {
+            healthy = false;
+        }
+
+        lock.lock();
+        try {
+            active.remove(pc);
+            pc.borrowSite = null;
+            pc.lastReturned = System.currentTimeMillis();
+            if (healthy && !shutdown && idle.size() < maxIdle) {
+                idle.addLast(pc);
+                available.signal();
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+        destroy(pc);
+    }
+
+    private void destroy(PooledConnection pc) {
+        try {
+            pc.physical.close();
+        } catch (SQLException ignored) {
+            // already broken
+        }
+        lock.lock();
+        try {
+            total--;
+            destroyedCount++;
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // --------------------------------------------------------
+    // Wrapper handed to callers: close() returns to the pool, use-after-close fails fast
+    // --------------------------------------------------------
+    private Connection wrap(PooledConnection pc) {
+        Connection[] self = new Connection[1];
+        InvocationHandler handler = new InvocationHandler() {
+            private boolean closed = false;
+
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                switch (method.getName()) {
+                    case "close":
+                        if (!closed) {
+                            closed = true;
+                            release(pc);
+                        }
+                        return null;
+                    case "isClosed":
+                        return closed || pc.physical.isClosed();
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "toString":
+                        return "Pooled[" + pc.physical + "]";
+                    case "prepareStatement":
+                        // Only prepareStatement(sql) and prepareStatement(sql, autoGeneratedKeys) are cached
+                        Class<?>[] types = method.getParameterTypes();
+                        if (!closed && statementCacheSize > 0
+                                && (types.length == 1 || (types.length == 2 && types[1] == int.class))) {
+                            String sql = (String) args[0];
+                            String key = types.length == 1 ? sql : args[1] + "|" + sql;
+                            return prepareCached(pc, self[0], key, method, args);
+                        }
+                        if (closed) throw new SQLException("Connection is closed (returned to pool).");
+                        try {
+                            return method.invoke(pc.physical, args);
+                        } catch (InvocationTargetException ite) {
+                            throw ite.getCause();
+                        }
+                    default:
+                        if (closed) throw new SQLException("Connection is closed (returned to pool).");
+                        try {
+                            return method.invoke(pc.physical, args);
+                        } catch (InvocationTargetException ite) {
+                            throw ite.getCause();
+                        }
+                }
+            }
+        };
+        self[0] = (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, handler);
+        return self[0];
+    }
+
+    // --------------------------------------------------------
+    // Statement cache: hand out the cached statement behind a wrapper whose close() keeps it open
+    // --------------------------------------------------------
+    private PreparedStatement prepareCached(PooledConnection pc, Connection owner, String key,
+                                            Method prepare, Object[] args) throws Throwable {
+        CachedStatement cs = pc.statements.get(key);
+        if (cs != null && cs.inUse) {
+            // Same SQL already open on this connection (nested use): give out a private statement
+            try {
+                return (PreparedStatement) prepare.invoke(pc.physical, args);
+            } catch (InvocationTargetException ite) {
+                throw ite.getCause();
+            }
+        }
+        if (cs == null) {
+            statementCacheMisses++;
+            try {
+                cs = new CachedStatement((PreparedStatement) prepare.invoke(pc.physical, args));
+            } catch (InvocationTargetException ite) {
+                throw ite.getCause();
+            }
+            pc.statements.put(key, cs);
+        } else {
+            statementCacheHits++;
+        }
+        cs.inUse = true;
+
+        CachedStatement entry = cs;
+        InvocationHandler handler = new InvocationHandler() {
+            private boolean closed = false;
+
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] a) throws Throwable {
+                switch (method.getName()) {
+                    case "close":
+                        if (!closed) {
+                            closed = true;
+                            entry.inUse = false;
+                            if (entry.evicted) {
+                                closeQuietly(entry.statement);
+                            } else {
+                                try {
+                                    entry.statement.clearParameters();
+                                    entry.statement.clearBatch();
+                                    // Settings a caller changed must not leak to the next user of the statement
+                                    entry.statement.setFetchSize(0);
+                                    entry.statement.setMaxRows(0);
+                                } catch (SQLException ex) {
+                                    // Statement is unusable; drop it from the cache
+                                    pc.statements.remove(key);
+                                    closeQuietly(entry.statement);
+                                }
+                            }
+                        }
+                        return null;
+                    case "isClosed":
+                        return closed || entry.statement.isClosed();
+                    case "getConnection":
+                        return owner;
+                    case "equals":
+                        return proxy == a[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    default:
+                        if (closed) throw new SQLException("Statement is closed.");
+                        try {
+                            return method.invoke(entry.statement, a);
+                        } catch (InvocationTargetException ite) {
+                            throw ite.getCause();
+                        }
+                }
+            }
+        };
+        return (PreparedStatement) Proxy.newProxyInstance(
+                PreparedStatement.class.getClassLoader(), new Class<?>[]{PreparedStatement.class}, handler);
+    }
+
+    private static void closeQuietly(PreparedStatement ps) {
+        try {
+            ps.close();
+        } catch (SQLException ignored) {
+            // nothing useful to do
+        }
+    }
+
+    // --------------------------------------------------------
+    // Periodic maintenance: leak detection, idle eviction, min-idle top-up
+    // --------------------------------------------------------
+    private void housekeep() {
+        List<PooledConnection> evict = new ArrayList<>();
+        int toCreate;
+        long now = System.currentTimeMillis();
+
+        lock.lock();
+        try {
+            if (shutdown) return;
+
+            for (PooledConnection pc : active.keySet()) {
+                if (!pc.leakReported && now - pc.borrowedAt > leakThresholdMs) {
+                    pc.leakReported = true;
+                    leaksDetected++;
+                    System.err.println("Possible connection leak: connection held for "
+                            + (now - pc.borrowedAt) + " ms");
+                    if (pc.borrowSite != null) pc.borrowSite.printStackTrace();
+                }
+            }
+
+            while (idle.size() > minIdle && now - idle.peekFirst().lastReturned > idleTimeoutMs) {
+                evict.add(idle.pollFirst());
+            }
+
+            toCreate = Math.min(minIdle - idle.size(), maxTotal - total - pending);
+            if (toCreate > 0) pending += toCreate;
+        } finally {
+            lock.unlock();
+        }
+
+        for (PooledConnection pc : evict) destroy(pc);
+
+        for (int i = 0; i < toCreate; i++) {
+            PooledConnection pc = null;
+            try {
+                pc = new PooledConnection(DriverManager.getConnection(url, user, password), statementCacheSize);
+            } catch (SQLException ex) {
+                // Database unreachable right now; try again on the next run
+            }
+            lock.lock();
+            try {
+                pending--;
+                if (pc != null) {
+                    total++;
+                    createdCount++;
+                    idle.addFirst(pc);
+                    available.signal();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    // --------------------------------------------------------
+    // Statistics & shutdown
+    // --------------------------------------------------------
+    public PoolStats getStats() {
+        lock.lock();
+        try {
+            return statsLocked();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private PoolStats statsLocked() {
+        PoolStats s = new PoolStats();
+        s.total = total;
+        s.idle = idle.size();
+        s.active = active.size();
+        s.waiting = waiting;
+        s.created = createdCount;
+        s.destroyed = destroyedCount;
+        s.borrowed = borrowedCount;
+        s.validationFailures = validationFailures;
+        s.timeouts = timeouts;
+        s.leaksDetected = leaksDetected;
+        s.statementCacheHits = statementCacheHits;
+        s.statementCacheMisses = statementCacheMisses;
+        return s;
+    }
+
+    public void shutdown() {
+        List<PooledConnection> toClose;
+        lock.lock();
+        try {
+            if (shutdown) return;
+            shutdown = true;
+            toClose = new ArrayList<>(idle);
+            idle.clear();
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        housekeeper.shutdownNow();
+        // Active connections are closed by release() when their borrowers finish
+        for (PooledConnection pc : toClose) destroy(pc);
+    }
+}
@@ -0,0 +1,142 @@
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * CrossWarehouseReport
+ * -------------------------------------------
+ * Current stock of every product across all warehouses of the logged-in user.
+ * Each warehouse on its own tables is one primary-key-ordered read of its
+ * current-stock table; those reads are fanned out over a small thread pool
+ * (bounded by the connection pool) and every warehouse is handed to the
+ * listener as soon as it arrives. Warehouses in the unified store are answered
+ * together by a single query.
+ *
+ * The listener is called from worker threads; a warehouse that fails is reported
+ * through onError and does not stop the others.
+ */
+public class CrossWarehouseReport {
+
+    public interface Listener {
+        void onWarehouse(String warehouseName, List<ProductDAO.StockLevel> levels);
+
+        void onError(String warehouseName, Exception ex);
+    }
+
+    // Total of one product over all warehouses
+    public static class ProductTotal {
+        public String product;
+        public long quantity;
+        public double stockValue;
+        public int warehouses;
+
+        public ProductTotal(String product) {
+            this.product = product;
+        }
+    }
+
+    private final Map<String, ProductTotal> totals = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    private volatile ExecutorService executor;
+    private volatile boolean cancelled = false;
+
+    // --------------------------------------------------------
+    // Query every warehouse; returns when all have been reported (or the report was cancelled)
+    // --------------------------------------------------------
+    public void run(Listener listener) throws InterruptedException {
+        List<WarehouseHandle> handles;
+        try {
+            handles = WarehouseHandle.ofAll(); // one query for every warehouse's id and layout
+        } catch (SQLException ex) {
+            listener.onError("(warehouse list)", ex);
+            return;
+        }
+        List<WarehouseHandle> unified = new ArrayList<>();
+        List<WarehouseHandle> separate = new ArrayList<>();
+        for (WarehouseHandle h : handles) {
+            (h.getLayout() == WarehouseHandle.Layout.UNIFIED ? unified : separate).add(h);
+        }
+
+        // Leave half of the pool to the rest of the application
+        int threads = Math.max(1, Math.min(DBConnection.getMaxConnections() / 2, separate.size() + 1));
+        AtomicInteger seq = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "stock-report-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        executor = pool;
+
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            if (!unified.isEmpty()) {
+                futures.add(pool.submit(() -> {
+                    if (cancelled) return;
+                    try {
+                        Map<Integer, List<ProductDAO.StockLevel>> byId = ProductDAO.getCurrentStockUnified(unified);
+                        for (WarehouseHandle h : unified) {
+                            deliver(listener, h.getWarehouseName(), byId.getOrDefault(h.getWarehouseId(), new ArrayList<>()));
+                        }
+                    } catch (SQLException ex) {
+                        for (WarehouseHandle h : unified) listener.onError(h.getWarehouseName(), ex);
+                    }
+                }));
+            }
+            for (WarehouseHandle h : separate) {
+                futures.add(pool.submit(() -> {
+                    if (cancelled) return; // queued tasks of a cancelled report finish at once
+                    try {
+                        deliver(listener, h.getWarehouseName(), ProductDAO.getCurrentStock(h));
+                    } catch (SQLException ex) {
+                        listener.onError(h.getWarehouseName(), ex);
+                    }
+                }));
+            }
+        } catch (RejectedExecutionException ex) {
+            // cancelled while submitting; wait for what was already queued
+        }
+        try {
+            for (Future<?> f : futures) {
+                try {
+                    f.get();
+                } catch (ExecutionException ex) {
+                    ex.getCause().printStackTrace();
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // Stops the report: warehouses not yet queried are skipped and nothing more is delivered
+    public void cancel() {
+        cancelled = true;
+        ExecutorService pool = executor;
+        if (pool != null) pool.shutdown();
+    }
+
+    // Totals per product over the warehouses reported so far (product order)
+    public synchronized List<ProductTotal> getTotals() {
+        return new ArrayList<>(totals.values());
+    }
+
+    private void deliver(Listener listener, String warehouseName, List<ProductDAO.StockLevel> levels) {
+        if (cancelled) return;
+        synchronized (this) {
+            for (ProductDAO.StockLevel s : levels) {
+                ProductTotal t = totals.computeIfAbsent(s.product, ProductTotal::new);
+                t.quantity += s.quantity;
+                t.stockValue += s.stockValue;
+                t.warehouses++;
+            }
+        }
+        listener.onWarehouse(warehouseName, levels);
+    }
+}
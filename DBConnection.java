@@ -1,33 +1,99 @@
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 
 /**
- * Handles database connection using MySQL JDBC.
- * IMPORTANT: This class is modified to ensure connection reliability.
- * It now provides a NEW connection for every call to ensure reliability
- * and prevent "connection closed" errors when DAO methods implicitly close
- * connections via try-with-resources.
+ * Handles database connections for the selected StorageEngine (MySQL by default).
+ * Connections are served from a bounded ConnectionPool: every call still returns a
+ * Connection that DAO methods close with try-with-resources, but close() now hands the
+ * physical connection back to the pool instead of tearing down the TCP/auth session.
+ * Inside an active UnitOfWork the call returns the unit's shared connection instead.
  */
 public class DBConnection {
 
-    private static final String URL = "jdbc:mysql://localhost:3306/warehouse_db";
-    private static final String USER = "root"; // your MySQL username
-    private static final String PASSWORD = "sqlkapassword"; // your MySQL password
+    // Pool sizing (a desktop client rarely needs more than a handful of concurrent connections)
+    private static final int MIN_IDLE = 2;
+    private static final int MAX_IDLE = 8;
+    private static final int MAX_TOTAL = 16;
+    private static final long BORROW_TIMEOUT_MS = 10_000;
+    private static final long LEAK_THRESHOLD_MS = 60_000;
+    private static final long IDLE_TIMEOUT_MS = 5 * 60_000;
+    private static final int STATEMENT_CACHE_SIZE = 64; // prepared statements kept per connection
 
-    // The static 'connection' field has been removed to enforce the connection-per-request model.
+    private static StorageEngine engine = new MySqlStorageEngine();
+    private static ConnectionPool pool;
+
+    /**
+     * Selects the storage backend and prepares its schema. Must be called at startup,
+     * before the first DAO call; switching engines closes the current pool.
+     */
+    public static void useStorageEngine(StorageEngine newEngine) throws SQLException {
+        LastActivityBuffer.flush(); // buffered timestamps belong to the current database
+        synchronized (DBConnection.class) {
+            shutdownPool();
+            engine = newEngine;
+        }
+        try (Connection conn = getPool().borrow()) {
+            SchemaBootstrapper.migrate(conn, newEngine);
+        }
+    }
+
+    public static synchronized StorageEngine getStorageEngine() {
+        return engine;
+    }
+
+    private static synchronized ConnectionPool getPool() {
+        if (pool == null) {
+            pool = new ConnectionPool(engine.getJdbcUrl(), engine.getUser(), engine.getPassword(),
+                    MIN_IDLE, MAX_IDLE, MAX_TOTAL, BORROW_TIMEOUT_MS, LEAK_THRESHOLD_MS, IDLE_TIMEOUT_MS,
+                    STATEMENT_CACHE_SIZE);
+        }
+        return pool;
+    }
 
     public static Connection getConnection() throws SQLException {
-        // Always return a new connection. DAO methods must ensure this connection is closed
-        // using the try-with-resources block (try (Connection conn = ...) { ... }).
-        return DriverManager.getConnection(URL, USER, PASSWORD);
+        // Join the caller's transaction if one is active on this thread
+        Connection joined = UnitOfWork.currentConnection();
+        if (joined != null) return joined;
+
+        // DAO methods must still close this connection using try-with-resources
+        // (try (Connection conn = ...) { ... }); closing returns it to the pool.
+        return getPool().borrow();
+    }
+
+    // Always borrows a fresh pooled connection, ignoring any active UnitOfWork
+    static Connection getPooledConnection() throws SQLException {
+        return getPool().borrow();
     }
 
     /**
-     * This method is retained for compatibility but is generally unused since
-     * connections are closed automatically by DAO try-with-resources blocks.
+     * Upper bound on concurrently open connections; callers that fan out work
+     * across threads should not run more tasks than this at once.
+     */
+    public static int getMaxConnections() {
+        return MAX_TOTAL;
+    }
+
+    /**
+     * Current pool statistics (idle/active counts, borrows, validation failures, leaks).
+     */
+    public static ConnectionPool.PoolStats getPoolStats() {
+        return getPool().getStats();
+    }
+
+    /**
+     * Writes buffered activity timestamps, then shuts the pool down and closes all idle
+     * physical connections. A later getConnection() call transparently creates a fresh pool.
      */
     public static void closeConnection() {
-        // No implementation needed since no static connection is stored/reused.
+        // Not under the class lock: the flush borrows from the pool (getPool locks it too)
+        LastActivityBuffer.flush();
+        shutdownPool();
+    }
+
+    private static synchronized void shutdownPool() {
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,78 @@
+/**
+ * In-process backend: an H2 database stored in a local file, running in MySQL
+ * compatibility mode so the DAO SQL is shared with the server backend. Text compares
+ * case-insensitively (IGNORECASE), like MySQL's default collation, so product names
+ * match the same rows on both backends.
+ * Intended for single-site installs, testing and benchmarking (no network hop).
+ */
+public class EmbeddedStorageEngine implements StorageEngine {
+
+    public static final String DEFAULT_PATH = "./data/warehouse_db";
+
+    private final String path;
+
+    public EmbeddedStorageEngine(String path) {
+        this.path = path;
+    }
+
+    @Override
+    public String getName() {
+        return "embedded";
+    }
+
+    @Override
+    public String getJdbcUrl() {
+        return "jdbc:h2:file:" + path + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;CASE_INSENSITIVE_IDENTIFIERS=TRUE"
+                + ";IGNORECASE=TRUE";
+    }
+
+    @Override
+    public String getUser() {
+        return "sa";
+    }
+
+    @Override
+    public String getPassword() {
+        return "";
+    }
+
+    @Override
+    public String priceColumnType() {
+        return "DOUBLE";
+    }
+
+    @Override
+    public String renameTableSql(String oldTable, String newTable) {
+        return "ALTER TABLE " + oldTable + " RENAME TO " + newTable;
+    }
+
+    @Override
+    public String createIndexSql(String table, String indexName, String... columns) {
+        // H2 index names are schema-wide, so let H2 name the index to avoid clashes between warehouses
+        return "CREATE INDEX ON " + table + " (" + String.join(", ", columns) + ")";
+    }
+
+    @Override
+    public String ignoreCaseColumnSql(String table, String column, int length) {
+        // Columns created before IGNORECASE was set keep comparing case-sensitively until retyped
+        return "ALTER TABLE " + table + " ALTER COLUMN " + column + " SET DATA TYPE VARCHAR_IGNORECASE(" + length + ")";
+    }
+
+    @Override
+    public String partitionByWarehouseClause(String column) {
+        // H2 has no table partitioning; the warehouse-leading keys give the same locality
+        return "";
+    }
+
+    @Override
+    public int streamingFetchSize() {
+        // H2 reads large results lazily in blocks of the fetch size
+        return 1000;
+    }
+
+    @Override
+    public String sharedLockSuffix() {
+        // The database file belongs to this process; the in-process warehouse gate orders writers
+        return "";
+    }
+}
@@ -1,6 +1,17 @@
 import java.sql.*;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Predicate;
 
 /**
  * FutureTradeDAO
@@ -10,68 +21,80 @@ import java.util.ArrayList;
  */
 public class FutureTradeDAO {
 
+    // Trade ids per IN-list in the batch shift
+    private static final int SHIFT_CHUNK = 500;
+
     // --------------------------------------------------------
-    // Helper: Find the next sequential ID for the current user (Point 3 Fix)
+    // Get all future trades for current user
     // --------------------------------------------------------
-    private static int getNextUserId() {
-        if (!SessionManager.isLoggedIn()) return 1;
+    public static ArrayList<FutureTrade> getAllFutureTrades() {
+        ArrayList<FutureTrade> list = new ArrayList<>();
+        if (!SessionManager.isLoggedIn()) return list;
 
-        String username = SessionManager.getCurrentUser();
-        // Finds the maximum existing ID for the current user only
-        String sql = "SELECT MAX(id) AS max_id FROM future_trades WHERE username=?";
+        // FIX: Order by ID to respect the intended sequence
+        try {
+            forEachFutureTrade(list::add);
+        } catch (SQLException ex) {
+            ex.printStackTrace();
+        }
+
+        return list;
+    }
+
+    // --------------------------------------------------------
+    // Keyset pagination: up to pageSize trades of the current user with id > afterId
+    // (0 = from the start), in id order
+    // --------------------------------------------------------
+    public static List<FutureTrade> getFutureTradesPage(int afterId, int pageSize) throws SQLException {
+        List<FutureTrade> page = new ArrayList<>();
+        if (!SessionManager.isLoggedIn()) return page;
+        String sql = "SELECT * FROM future_trades WHERE username=? AND id > ? ORDER BY id ASC LIMIT ?";
 
         try (Connection conn = DBConnection.getConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, SessionManager.getCurrentUser());
+            ps.setInt(2, afterId);
+            ps.setInt(3, pageSize);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) page.add(readTrade(rs));
+            }
+        }
+        return page;
+    }
 
-            ps.setString(1, username);
+    public static int countFutureTrades() throws SQLException {
+        if (!SessionManager.isLoggedIn()) return 0;
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement("SELECT COUNT(*) FROM future_trades WHERE username=?")) {
+            ps.setString(1, SessionManager.getCurrentUser());
             try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    // Returns 1 if no records exist, or max_id + 1 if records are found.
-                    return rs.getInt("max_id") + 1;
-                }
+                return rs.next() ? rs.getInt(1) : 0;
             }
-        } catch (SQLException ex) {
-            ex.printStackTrace();
         }
-        return 1;
     }
 
     // --------------------------------------------------------
-    // Get all future trades for current user
+    // Streaming cursor over the current user's trades in id order (forward-only result set,
+    // one row in memory at a time); the handler returns false to stop early.
+    // Runs on its own pooled connection. Returns the number of trades handled.
     // --------------------------------------------------------
-    public static ArrayList<FutureTrade> getAllFutureTrades() {
-        ArrayList<FutureTrade> list = new ArrayList<>();
-        if (!SessionManager.isLoggedIn()) return list;
-
-        String username = SessionManager.getCurrentUser();
-        // FIX: Order by ID to respect the intended sequence
+    public static int forEachFutureTrade(Predicate<FutureTrade> handler) throws SQLException {
+        if (!SessionManager.isLoggedIn()) return 0;
         String sql = "SELECT * FROM future_trades WHERE username=? ORDER BY id ASC";
+        int n = 0;
 
-        try (Connection conn = DBConnection.getConnection();
+        try (Connection conn = DBConnection.getPooledConnection();
              PreparedStatement ps = conn.prepareStatement(sql)) {
-
-            ps.setString(1, username);
+            ps.setFetchSize(DBConnection.getStorageEngine().streamingFetchSize());
+            ps.setString(1, SessionManager.getCurrentUser());
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
-                    list.add(new FutureTrade(
-                            rs.getInt("id"),
-                            rs.getString("warehouse_name"),
-                            rs.getString("product"),
-                            rs.getString("supplier"),
-                            rs.getString("customer"),
-                            rs.getInt("import_quantity"),
-                            rs.getDouble("import_price"),
-                            rs.getInt("export_quantity"),
-                            rs.getDouble("export_price"),
-                            rs.getDate("date").toLocalDate()
-                    ));
+                    n++;
+                    if (!handler.test(readTrade(rs))) break;
                 }
             }
-        } catch (SQLException ex) {
-            ex.printStackTrace();
         }
-
-        return list;
+        return n;
     }
 
     // --------------------------------------------------------
@@ -115,7 +138,7 @@ public class FutureTradeDAO {
             throw new IllegalStateException("User not logged in.");
 
         String username = SessionManager.getCurrentUser();
-        int nextId = getNextUserId(); // Point 3: Get the user's next sequential ID
+        int nextId = FutureTradeIdSequence.next(username); // Point 3: the user's next ID, never handed out twice
 
         String sql = "INSERT INTO future_trades (id, username, warehouse_name, product, supplier, customer, "
                 + "import_quantity, import_price, export_quantity, export_price, date) "
@@ -188,7 +211,7 @@ public class FutureTradeDAO {
     public static void addFutureImport(FutureTrade f) throws SQLException {
         if (!SessionManager.isLoggedIn()) throw new IllegalStateException("User not logged in.");
         String username = SessionManager.getCurrentUser();
-        int nextId = getNextUserId(); // Point 3: Get the user's next sequential ID
+        int nextId = FutureTradeIdSequence.next(username); // Point 3: the user's next ID, never handed out twice
 
         String sql = "INSERT INTO future_trades (id, username, warehouse_name, product, supplier, customer, "
                 + "import_quantity, import_price, export_quantity, export_price, date) "
@@ -214,7 +237,7 @@ public class FutureTradeDAO {
     public static void addFutureExport(FutureTrade f) throws SQLException {
         if (!SessionManager.isLoggedIn()) throw new IllegalStateException("User not logged in.");
         String username = SessionManager.getCurrentUser();
-        int nextId = getNextUserId(); // Point 3: Get the user's next sequential ID
+        int nextId = FutureTradeIdSequence.next(username); // Point 3: the user's next ID, never handed out twice
 
         String sql = "INSERT INTO future_trades (id, username, warehouse_name, product, supplier, customer, "
                 + "import_quantity, import_price, export_quantity, export_price, date) "
@@ -234,106 +257,244 @@ public class FutureTradeDAO {
         }
     }
 
+    /**
+     * Add many future trades for the current user in one transaction (file imports).
+     * Ids are one consecutive range of the user's sequence; rows are sent as JDBC batches.
+     */
+    public static void addFutureTrades(List<FutureTrade> batch) throws SQLException {
+        if (!SessionManager.isLoggedIn()) throw new IllegalStateException("User not logged in.");
+        if (batch.isEmpty()) return;
+        String username = SessionManager.getCurrentUser();
+
+        String sql = "INSERT INTO future_trades (id, username, warehouse_name, product, supplier, customer, "
+                + "import_quantity, import_price, export_quantity, export_price, date) "
+                + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        try (UnitOfWork uow = UnitOfWork.begin()) {
+            Connection conn = uow.getConnection();
+            int nextId = FutureTradeIdSequence.nextRange(username, batch.size()); // one reservation for the batch
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                int pending = 0;
+                for (FutureTrade f : batch) {
+                    ps.setInt(1, nextId++);
+                    ps.setString(2, username);
+                    ps.setString(3, f.getWarehouse());
+                    ps.setString(4, f.getName());
+                    ps.setString(5, f.getSupplier());
+                    ps.setString(6, f.getCustomer());
+                    ps.setInt(7, f.getimpQuantity());
+                    ps.setDouble(8, f.getimpPrice());
+                    ps.setInt(9, f.getexpQuantity());
+                    ps.setDouble(10, f.getexpPrice());
+                    ps.setDate(11, Date.valueOf(f.getDateAdded()));
+                    ps.addBatch();
+                    if (++pending == 500) {
+                        ps.executeBatch();
+                        pending = 0;
+                    }
+                }
+                if (pending > 0) ps.executeBatch();
+            }
+            uow.commit();
+        }
+    }
+
     /**
      * Shift a future trade (id) into the specified warehouse's records table.
      * This performs the import/export action(s) in the target warehouse and then deletes the future_trades row.
+     * Runs as a batch of one (see shiftToWarehouses): either the whole shift commits or nothing does.
      */
     public static void shiftToWarehouse(int id) throws SQLException {
+        ShiftResult result = shiftToWarehouses(Collections.singletonList(id));
+        String reason = result.failed.get(id);
+        if (reason != null) throw new SQLException(reason);
+    }
+
+    // -----------------------------
+    // Outcome of a batch shift
+    // -----------------------------
+    public static class ShiftResult {
+        public List<Integer> shiftedIds = new ArrayList<>();
+        public Map<Integer, String> failed = new LinkedHashMap<>(); // trade id -> reason (trade stays scheduled)
+    }
+
+    // --------------------------------------------------------
+    // Batch shift: many trades of the current user into their warehouses
+    // --------------------------------------------------------
+    public static ShiftResult shiftToWarehouses(Collection<Integer> ids) throws SQLException {
         if (!SessionManager.isLoggedIn()) throw new IllegalStateException("User not logged in.");
         String username = SessionManager.getCurrentUser();
-        Connection conn = null;
 
-        // 1) fetch the future trade for this user
-        String selectSql = "SELECT * FROM future_trades WHERE id=? AND username=?";
-        try {
-            conn = DBConnection.getConnection();
-            conn.setAutoCommit(false); // Start transaction for atomicity
+        List<Integer> distinct = new ArrayList<>(new LinkedHashSet<>(ids));
+        List<FutureTrade> trades = new ArrayList<>();
+        try (Connection conn = DBConnection.getConnection()) {
+            for (int from = 0; from < distinct.size(); from += SHIFT_CHUNK) {
+                List<Integer> chunk = distinct.subList(from, Math.min(from + SHIFT_CHUNK, distinct.size()));
+                try (PreparedStatement ps = conn.prepareStatement(
+                        "SELECT * FROM future_trades WHERE username=? AND id IN (" + placeholders(chunk.size()) + ")")) {
+                    ps.setString(1, username);
+                    for (int i = 0; i < chunk.size(); i++) ps.setInt(i + 2, chunk.get(i));
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) trades.add(readTrade(rs));
+                    }
+                }
+            }
+        }
 
-            try (PreparedStatement ps = conn.prepareStatement(selectSql)) {
+        ShiftResult result = shift(username, trades);
+        Set<Integer> found = new HashSet<>();
+        for (FutureTrade t : trades) found.add(t.getId());
+        for (int id : distinct) {
+            if (!found.contains(id)) result.failed.put(id, "Future trade not found or not owned by current user.");
+        }
+        return result;
+    }
 
-                ps.setInt(1, id);
-                ps.setString(2, username);
-                try (ResultSet rs = ps.executeQuery()) {
-                    if (!rs.next()) throw new SQLException("Future trade not found or not owned by current user.");
-
-                    String warehouseName = rs.getString("warehouse_name");
-                    String product = rs.getString("product");
-                    String supplier = rs.getString("supplier");
-                    String customer = rs.getString("customer");
-                    int impQty = rs.getInt("import_quantity");
-                    double impPrice = rs.getDouble("import_price");
-                    int expQty = rs.getInt("export_quantity");
-                    double expPrice = rs.getDouble("export_price");
-                    Date date = rs.getDate("date");
-                    LocalDate localDate = date == null ? LocalDate.now() : date.toLocalDate();
-
-                    // 2) perform actions on the warehouse records via ProductDAO
-                    ProductDAO.setCurrentWarehouse(warehouseName);
-
-                    // Flag to check if export succeeded
-                    boolean exportOk = true;
-
-                    // If there's an import quantity, add it as an import record
-                    if (impQty > 0) {
-                        Product importProduct = new Product(
-                                0,
-                                product,
-                                supplier,
-                                customer,
-                                0,
-                                impQty,
-                                impPrice,
-                                0,
-                                0.0,
-                                localDate
-                        );
-                        // Temporarily bypass transaction for ProductDAO calls
-                        conn.setAutoCommit(true);
-                        ProductDAO.addProduct(importProduct);
-                        conn.setAutoCommit(false);
+    // Every trade of the current user dated on or before upTo
+    public static ShiftResult shiftDue(LocalDate upTo) throws SQLException {
+        if (!SessionManager.isLoggedIn()) throw new IllegalStateException("User not logged in.");
+        return shiftDue(SessionManager.getCurrentUser(), upTo);
+    }
+
+    // Same for an explicit user (AutoShiftScheduler keeps the user it was started for)
+    static ShiftResult shiftDue(String username, LocalDate upTo) throws SQLException {
+        List<FutureTrade> trades = new ArrayList<>();
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(
+                     "SELECT * FROM future_trades WHERE username=? AND date <= ? ORDER BY date ASC, id ASC")) {
+            ps.setString(1, username);
+            ps.setDate(2, Date.valueOf(upTo));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) trades.add(readTrade(rs));
+            }
+        }
+        return shift(username, trades);
+    }
+
+    /*
+     * One transaction per warehouse. Under the locks, the warehouse's trades are re-read
+     * (a concurrent shift may have taken some) and replayed in date order against the
+     * locked current stock, per product with an in-memory running total. A product whose
+     * stock would go negative keeps all its trades scheduled; the rest are written as
+     * one ProductDAO.addRecords batch (import before export within a trade) and removed
+     * with one DELETE ... IN. A failing warehouse does not stop the others.
+     */
+    private static ShiftResult shift(String username, List<FutureTrade> trades) {
+        ShiftResult result = new ShiftResult();
+        Map<String, List<Integer>> idsByWarehouse = new LinkedHashMap<>();
+        for (FutureTrade t : trades) {
+            idsByWarehouse.computeIfAbsent(t.getWarehouse(), k -> new ArrayList<>()).add(t.getId());
+        }
+
+        for (Map.Entry<String, List<Integer>> e : idsByWarehouse.entrySet()) {
+            String warehouseName = e.getKey();
+            List<Integer> ids = e.getValue();
+            Map<Integer, String> rejected = new LinkedHashMap<>();
+            List<Integer> accepted = new ArrayList<>();
+
+            try (UnitOfWork uow = UnitOfWork.begin()) {
+                Connection conn = uow.getConnection();
+                List<FutureTrade> locked = lockTrades(conn, username, warehouseName, ids);
+                if (locked.isEmpty()) {
+                    uow.commit();
+                    continue; // all shifted or moved elsewhere in the meantime
+                }
+                WarehouseHandle h = WarehouseHandle.of(username, warehouseName);
+
+                Set<String> names = new HashSet<>();
+                for (FutureTrade t : locked) names.add(t.getName());
+                Map<String, Integer> running = ProductDAO.lockCurrentStock(conn, h, names);
+
+                // Running totals per product; the first shortfall rejects the product's whole group
+                Map<String, String> shortOf = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+                for (FutureTrade t : locked) {
+                    if (shortOf.containsKey(t.getName())) continue;
+                    int total = running.get(t.getName()) + t.getimpQuantity();
+                    if (t.getexpQuantity() > total) {
+                        shortOf.put(t.getName(), "Shift failed: insufficient stock for export of " + t.getName()
+                                + " in warehouse " + warehouseName + " on " + t.getDateAdded()
+                                + " (needs " + t.getexpQuantity() + ", has " + total + ").");
+                        continue;
                     }
+                    running.put(t.getName(), total - t.getexpQuantity());
+                }
 
-                    // If there's an export quantity, perform an export (check stock inside ProductDAO.exportProduct)
-                    if (expQty > 0) {
-                        Product exportProduct = new Product(
-                                0,
-                                product,
-                                supplier,
-                                customer,
-                                0,
-                                0,
-                                0.0,
-                                expQty,
-                                expPrice,
-                                localDate
-                        );
-                        // Temporarily bypass transaction for ProductDAO calls
-                        conn.setAutoCommit(true);
-                        exportOk = ProductDAO.exportProduct(exportProduct);
-                        conn.setAutoCommit(false);
-
-                        if (!exportOk) {
-                            // If export is not possible (insufficient stock), throw so caller can handle.
-                            throw new SQLException("Shift failed: insufficient stock for export in target warehouse.");
-                        }
+                List<Product> records = new ArrayList<>();
+                for (FutureTrade t : locked) {
+                    String reason = shortOf.get(t.getName());
+                    if (reason != null) {
+                        rejected.put(t.getId(), reason);
+                        continue;
                     }
+                    if (t.getimpQuantity() > 0) {
+                        records.add(new Product(0, t.getName(), t.getSupplier(), t.getCustomer(), 0,
+                                t.getimpQuantity(), t.getimpPrice(), 0, 0.0, t.getDateAdded()));
+                    }
+                    if (t.getexpQuantity() > 0) {
+                        records.add(new Product(0, t.getName(), t.getSupplier(), t.getCustomer(), 0,
+                                0, 0.0, t.getexpQuantity(), t.getexpPrice(), t.getDateAdded()));
+                    }
+                    accepted.add(t.getId());
+                }
 
-                    // 3) delete the future trade row now that it's shifted (Point 11)
-                    String delSql = "DELETE FROM future_trades WHERE id=? AND username=?";
-                    try (PreparedStatement delPs = conn.prepareStatement(delSql)) {
-                        delPs.setInt(1, id);
-                        delPs.setString(2, username);
-                        delPs.executeUpdate();
+                ProductDAO.addRecords(h, records); // joins this unit of work
+                for (int from = 0; from < accepted.size(); from += SHIFT_CHUNK) {
+                    List<Integer> chunk = accepted.subList(from, Math.min(from + SHIFT_CHUNK, accepted.size()));
+                    try (PreparedStatement ps = conn.prepareStatement(
+                            "DELETE FROM future_trades WHERE username=? AND id IN (" + placeholders(chunk.size()) + ")")) {
+                        ps.setString(1, username);
+                        for (int i = 0; i < chunk.size(); i++) ps.setInt(i + 2, chunk.get(i));
+                        ps.executeUpdate();
                     }
+                }
+                uow.commit();
+                result.shiftedIds.addAll(accepted);
+                result.failed.putAll(rejected);
+            } catch (SQLException | IllegalStateException ex) {
+                ex.printStackTrace();
+                for (int id : ids) result.failed.put(id, ex.getMessage());
+            }
+        }
+        return result;
+    }
 
-                    conn.commit();
+    // Re-reads and locks the still-scheduled trades of one warehouse, in date order
+    private static List<FutureTrade> lockTrades(Connection conn, String username, String warehouseName,
+                                                List<Integer> ids) throws SQLException {
+        List<FutureTrade> trades = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += SHIFT_CHUNK) {
+            List<Integer> chunk = ids.subList(from, Math.min(from + SHIFT_CHUNK, ids.size()));
+            try (PreparedStatement ps = conn.prepareStatement("SELECT * FROM future_trades WHERE username=? "
+                    + "AND warehouse_name=? AND id IN (" + placeholders(chunk.size()) + ") FOR UPDATE")) {
+                ps.setString(1, username);
+                ps.setString(2, warehouseName);
+                for (int i = 0; i < chunk.size(); i++) ps.setInt(i + 3, chunk.get(i));
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) trades.add(readTrade(rs));
                 }
             }
-        } catch (SQLException ex) {
-            if (conn != null) conn.rollback();
-            throw ex; // Re-throw the exception (including insufficient stock)
-        } finally {
-            if (conn != null) conn.setAutoCommit(true);
         }
+        trades.sort(Comparator.comparing(FutureTrade::getDateAdded).thenComparingInt(FutureTrade::getId));
+        return trades;
+    }
+
+    private static FutureTrade readTrade(ResultSet rs) throws SQLException {
+        return new FutureTrade(
+                rs.getInt("id"),
+                rs.getString("warehouse_name"),
+                rs.getString("product"),
+                rs.getString("supplier"),
+                rs.getString("customer"),
+                rs.getInt("import_quantity"),
+                rs.getDouble("import_price"),
+                rs.getInt("export_quantity"),
+                rs.getDouble("export_price"),
+                rs.getDate("date").toLocalDate()
+        );
+    }
+
+    private static String placeholders(int n) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < n; i++) sb.append(i == 0 ? "?" : ", ?");
+        return sb.toString();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,136 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * FutureTradeIdSequence
+ * -------------------------------------------
+ * Per-user id sequence for future_trades (ids are numbered per user, Point 3).
+ * future_trade_sequences holds the next unreserved id of every user; this process
+ * reserves BLOCK_SIZE ids at a time with one locked read-and-advance of that row
+ * (its own short transaction, independent of the caller's) and hands them out from
+ * memory. Two inserts - in this process or another one - never get the same id, and
+ * there is no MAX(id) scan per insert.
+ *
+ * Ids reserved but not used before the application exits are skipped, so a user's
+ * ids stay increasing but may have gaps.
+ */
+public class FutureTradeIdSequence {
+
+    public static final String TABLE = "future_trade_sequences";
+    private static final int BLOCK_SIZE = 50;
+    // Tries of a reservation the database rolled back (deadlock, lock wait timeout)
+    private static final int RESERVE_ATTEMPTS = 3;
+
+    // Reserved, not yet used ids of one user: [next, limit)
+    private static class Block {
+        int next;
+        int limit;
+    }
+
+    private static final ConcurrentHashMap<String, Block> BLOCKS = new ConcurrentHashMap<>();
+
+    // --------------------------------------------------------
+    // Next id of a user
+    // --------------------------------------------------------
+    public static int next(String username) throws SQLException {
+        Block b = BLOCKS.computeIfAbsent(username, k -> new Block());
+        synchronized (b) {
+            if (b.next >= b.limit) {
+                b.next = reserve(username, BLOCK_SIZE);
+                b.limit = b.next + BLOCK_SIZE;
+            }
+            return b.next++;
+        }
+    }
+
+    // First of count consecutive ids (bulk inserts); served from the current block when it has room
+    public static int nextRange(String username, int count) throws SQLException {
+        if (count <= 0) throw new IllegalArgumentException("count must be positive");
+        Block b = BLOCKS.computeIfAbsent(username, k -> new Block());
+        synchronized (b) {
+            if (b.limit - b.next >= count) {
+                int first = b.next;
+                b.next += count;
+                return first;
+            }
+            return reserve(username, count);
+        }
+    }
+
+    // --------------------------------------------------------
+    // Advance the user's row by count and return the first reserved id
+    // --------------------------------------------------------
+    private static int reserve(String username, int count) throws SQLException {
+        // Two first-time seeds can deadlock on MySQL's gap locks; the loser's reservation
+        // was rolled back as a whole, so it is simply tried again
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return tryReserve(username, count);
+            } catch (SQLException ex) {
+                if (attempt == RESERVE_ATTEMPTS || !isLockConflict(ex)) throw ex;
+            }
+        }
+    }
+
+    private static int tryReserve(String username, int count) throws SQLException {
+        // Own connection: the reservation commits at once and does not wait for the caller's transaction
+        try (Connection conn = DBConnection.getPooledConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                Integer first = lockRow(conn, username);
+                if (first == null) {
+                    seed(conn, username);
+                    first = lockRow(conn, username);
+                    if (first == null) throw new SQLException("Cannot create the id sequence of user " + username + ".");
+                }
+                try (PreparedStatement ps = conn.prepareStatement(
+                        "UPDATE " + TABLE + " SET next_id = next_id + ? WHERE username=?")) {
+                    ps.setInt(1, count);
+                    ps.setString(2, username);
+                    ps.executeUpdate();
+                }
+                conn.commit();
+                return first;
+            } catch (SQLException ex) {
+                conn.rollback();
+                throw ex;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    private static Integer lockRow(Connection conn, String username) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(
+                "SELECT next_id FROM " + TABLE + " WHERE username=? FOR UPDATE")) {
+            ps.setString(1, username);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : null;
+            }
+        }
+    }
+
+    // Deadlock or lock wait timeout: SQLState class 40 (H2, standard) or 41000 (older MySQL
+    // drivers for a lock wait timeout), MySQL errors 1213 / 1205
+    private static boolean isLockConflict(SQLException ex) {
+        String state = ex.getSQLState();
+        return (state != null && (state.startsWith("40") || state.equals("41000")))
+                || ex.getErrorCode() == 1213 || ex.getErrorCode() == 1205;
+    }
+
+    // First use by this user: continue after the ids already in future_trades
+    private static void seed(Connection conn, String username) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("INSERT INTO " + TABLE + " (username, next_id) "
+                + "SELECT ?, COALESCE(MAX(id), 0) + 1 FROM future_trades WHERE username=?")) {
+            ps.setString(1, username);
+            ps.setString(2, username);
+            ps.executeUpdate();
+        } catch (SQLException ex) {
+            // Another process seeded the row first; use theirs
+            if (ex.getSQLState() == null || !ex.getSQLState().startsWith("23")) throw ex;
+        }
+    }
+}
@@ -0,0 +1,252 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * InventoryValuation
+ * -------------------------------------------
+ * Stock value and cost of goods sold of every product in a warehouse, by two methods:
+ *   FIFO             - exports consume the oldest open import lots first
+ *   weighted average - moving average cost, recomputed on every import
+ * Revenue is export_quantity * export_price; gross margin is revenue - COGS.
+ *
+ * The records are walked once in id order (the history order, Point 3) through a
+ * forward-only streaming result set, so memory holds only the per-product state
+ * (open FIFO lots and running sums), never the rows. A valuation is cached per
+ * warehouse and later calls only read the records added since (id > last seen id);
+ * edits and deletes of existing records drop it (see ProductDAO), and the next call
+ * rebuilds it.
+ *
+ * Other clients change the records without this process hearing of it, so every
+ * incremental call also checks the cached state against the database: the row count
+ * and import/export totals of the records already read, and the quantity of every
+ * current-stock row (a rename moves stock without changing the totals). Any
+ * difference rebuilds the valuation from the first record.
+ */
+public class InventoryValuation {
+
+    private static final ConcurrentHashMap<String, InventoryValuation> CACHE = new ConcurrentHashMap<>();
+
+    // -----------------------------
+    // Valuation of one product
+    // -----------------------------
+    public static class ProductValuation {
+        public String product;
+        public long quantity;
+        public double fifoValue;
+        public double fifoCogs;
+        public double averageCost;
+        public double averageValue;
+        public double averageCogs;
+        public double revenue;
+        public double fifoMargin;
+        public double averageMargin;
+    }
+
+    // One open import lot (FIFO)
+    private static class Lot {
+        long quantity;
+        final double price;
+
+        Lot(long quantity, double price) {
+            this.quantity = quantity;
+            this.price = price;
+        }
+    }
+
+    // Running state of one product
+    private static class ProductState {
+        final ArrayDeque<Lot> lots = new ArrayDeque<>();
+        long quantity;
+        double fifoValue;
+        double fifoCogs;
+        double averageCost;
+        double averageCogs;
+        double revenue;
+
+        void importLot(int qty, double price) {
+            if (qty <= 0) return;
+            averageCost = quantity > 0 ? (quantity * averageCost + qty * price) / (quantity + qty) : price;
+            quantity += qty;
+            lots.addLast(new Lot(qty, price));
+            fifoValue += qty * price;
+        }
+
+        void export(int qty, double price) {
+            if (qty <= 0) return;
+            revenue += qty * price;
+            averageCogs += qty * averageCost;
+
+            long left = qty;
+            while (left > 0 && !lots.isEmpty()) {
+                Lot lot = lots.peekFirst();
+                long used = Math.min(left, lot.quantity);
+                fifoCogs += used * lot.price;
+                fifoValue -= used * lot.price;
+                lot.quantity -= used;
+                left -= used;
+                if (lot.quantity == 0) lots.pollFirst();
+            }
+            // Oversold history (should not pass the Point 12 checks): cost the rest at average
+            fifoCogs += left * averageCost;
+
+            quantity -= qty;
+            if (quantity <= 0) {
+                quantity = Math.max(quantity, 0);
+                fifoValue = 0;
+            }
+        }
+    }
+
+    // Product names compare case-insensitively, like the product column and the stock table
+    private final Map<String, ProductState> products = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    private volatile int lastId = 0;
+    // Totals of the records read so far, compared with the database on each call
+    private long rowsRead;
+    private long importedQuantity;
+    private double importedValue;
+    private long exportedQuantity;
+    private double exportedValue;
+    // Ids committed by this process but not yet read (detects inserts committed out of id order)
+    private final Set<Integer> unread = ConcurrentHashMap.newKeySet();
+
+    // --------------------------------------------------------
+    // Valuation of every product of a warehouse (product order)
+    // --------------------------------------------------------
+    public static List<ProductValuation> valueWarehouse(String warehouseName) throws SQLException {
+        return valueWarehouse(WarehouseHandle.of(warehouseName));
+    }
+
+    public static List<ProductValuation> valueWarehouse(WarehouseHandle h) throws SQLException {
+        InventoryValuation v = CACHE.computeIfAbsent(h.getScopeKey(), k -> new InventoryValuation());
+        try {
+            return v.refresh(h);
+        } catch (SQLException | RuntimeException ex) {
+            CACHE.remove(h.getScopeKey(), v); // half-read state is not reused
+            throw ex;
+        }
+    }
+
+    // Called after a record insert commits; new records are read on the next valuation
+    static void recordCommitted(WarehouseHandle h, int id) {
+        InventoryValuation v = CACHE.get(h.getScopeKey());
+        if (v == null) return;
+        if (id <= v.lastId) {
+            CACHE.remove(h.getScopeKey(), v); // committed behind rows already read
+        } else {
+            v.unread.add(id);
+        }
+    }
+
+    // Existing records of the warehouse changed (edit, delete): rebuild on next use
+    static void invalidate(WarehouseHandle h) {
+        CACHE.remove(h.getScopeKey());
+    }
+
+    static void invalidateScope(String scopeKey) {
+        CACHE.remove(scopeKey);
+    }
+
+    // --------------------------------------------------------
+    // Read the records added since the last call, then snapshot the results
+    // --------------------------------------------------------
+    private synchronized List<ProductValuation> refresh(WarehouseHandle h) throws SQLException {
+        boolean incremental = lastId > 0;
+        int readUpTo = lastId;
+        boolean current;
+        try (Connection conn = DBConnection.getConnection()) {
+            try (PreparedStatement ps = conn.prepareStatement(h.movementsAfter)) {
+                ps.setFetchSize(DBConnection.getStorageEngine().streamingFetchSize());
+                ps.setInt(1, readUpTo);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        int id = rs.getInt(1);
+                        int importQty = rs.getInt(3), exportQty = rs.getInt(5);
+                        double importPrice = rs.getDouble(4), exportPrice = rs.getDouble(6);
+                        ProductState s = products.computeIfAbsent(rs.getString(2), k -> new ProductState());
+                        s.importLot(importQty, importPrice);
+                        s.export(exportQty, exportPrice);
+                        rowsRead++;
+                        importedQuantity += importQty;
+                        importedValue += importQty * importPrice;
+                        exportedQuantity += exportQty;
+                        exportedValue += exportQty * exportPrice;
+                        unread.remove(id);
+                        readUpTo = id;
+                    }
+                }
+            }
+            lastId = readUpTo;
+            // A full read is as current as it gets; only state carried over from earlier calls is checked
+            current = !incremental || matchesDatabase(conn, h, readUpTo);
+        }
+
+        // A committed id at or below the last one read that the scan did not see means
+        // the history was read with a gap: start over from the first record
+        for (int id : unread) {
+            if (id <= readUpTo) current = false;
+        }
+        if (!current) {
+            CACHE.remove(h.getScopeKey(), this);
+            return valueWarehouse(h);
+        }
+        return snapshot();
+    }
+
+    // Whether the records up to lastRead and the current-stock rows are still the ones this state was built from
+    private boolean matchesDatabase(Connection conn, WarehouseHandle h, int lastRead) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(h.movementTotalsUpTo)) {
+            ps.setInt(1, lastRead);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) return false;
+                if (rs.getLong(1) != rowsRead || rs.getLong(2) != importedQuantity || rs.getLong(4) != exportedQuantity
+                        || !sameAmount(rs.getDouble(3), importedValue) || !sameAmount(rs.getDouble(5), exportedValue)) {
+                    return false;
+                }
+            }
+        }
+        // Records added after lastRead already count in a stock row: skip products that have one
+        try (PreparedStatement ps = conn.prepareStatement(h.stockAll);
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                if (rs.getInt(3) > lastRead) continue;
+                ProductState s = products.get(rs.getString(1));
+                if (rs.getLong(2) != (s == null ? 0 : s.quantity)) return false;
+            }
+        }
+        return true;
+    }
+
+    // Sums of prices: the database adds exact decimals, this class adds doubles
+    private static boolean sameAmount(double a, double b) {
+        return Math.abs(a - b) <= 0.005 + 1e-9 * Math.abs(a);
+    }
+
+    private List<ProductValuation> snapshot() {
+        List<ProductValuation> list = new ArrayList<>(products.size());
+        for (Map.Entry<String, ProductState> e : products.entrySet()) {
+            ProductState s = e.getValue();
+            ProductValuation pv = new ProductValuation();
+            pv.product = e.getKey();
+            pv.quantity = s.quantity;
+            pv.fifoValue = s.fifoValue;
+            pv.fifoCogs = s.fifoCogs;
+            pv.averageCost = s.quantity > 0 ? s.averageCost : 0.0;
+            pv.averageValue = s.quantity * pv.averageCost;
+            pv.averageCogs = s.averageCogs;
+            pv.revenue = s.revenue;
+            pv.fifoMargin = s.revenue - s.fifoCogs;
+            pv.averageMargin = s.revenue - s.averageCogs;
+            list.add(pv);
+        }
+        return list;
+    }
+}
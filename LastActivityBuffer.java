@@ -0,0 +1,101 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LastActivityBuffer
+ * -------------------------------------------
+ * Write-behind buffer for warehouses.last_activity_date. Record writes only note
+ * the latest timestamp per (user, warehouse) in memory; a background task writes
+ * the buffered values every FLUSH_INTERVAL_MS as one JDBC batch, so a burst of
+ * scans against a warehouse becomes a single UPDATE of its row instead of one per
+ * record (and record transactions no longer lock the warehouses row).
+ *
+ * DBConnection.closeConnection flushes before the pool shuts down (application exit,
+ * storage engine switch); WarehouseDAO reads overlay values that are still pending.
+ */
+public class LastActivityBuffer {
+
+    private static final long FLUSH_INTERVAL_MS = 250;
+    private static final String UPDATE_SQL =
+            "UPDATE warehouses SET last_activity_date=? WHERE username=? AND warehouse_name=?";
+
+    private static final ConcurrentHashMap<String, Timestamp> PENDING = new ConcurrentHashMap<>();
+    private static volatile ScheduledExecutorService flusher;
+
+    // --------------------------------------------------------
+    // Note activity now (latest timestamp per warehouse wins)
+    // --------------------------------------------------------
+    public static void touch(String username, String warehouseName) {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        PENDING.merge(key(username, warehouseName), now, (a, b) -> a.after(b) ? a : b);
+        if (flusher == null) startFlusher();
+    }
+
+    // Buffered timestamp not yet written to the database, or null
+    public static Timestamp pending(String username, String warehouseName) {
+        return PENDING.get(key(username, warehouseName));
+    }
+
+    // --------------------------------------------------------
+    // Write everything buffered so far (one batch); failed values stay buffered
+    // --------------------------------------------------------
+    public static synchronized void flush() {
+        if (PENDING.isEmpty()) return;
+
+        List<String> keys = new ArrayList<>();
+        List<Timestamp> values = new ArrayList<>();
+        for (String k : PENDING.keySet()) {
+            Timestamp ts = PENDING.remove(k); // a concurrent touch re-adds it for the next flush
+            if (ts != null) {
+                keys.add(k);
+                values.add(ts);
+            }
+        }
+        if (keys.isEmpty()) return;
+
+        try (Connection conn = DBConnection.getPooledConnection();
+             PreparedStatement ps = conn.prepareStatement(UPDATE_SQL)) {
+            for (int i = 0; i < keys.size(); i++) {
+                String[] parts = keys.get(i).split("\u0000", 2);
+                ps.setTimestamp(1, values.get(i));
+                ps.setString(2, parts[0]);
+                ps.setString(3, parts[1]);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        } catch (SQLException ex) {
+            ex.printStackTrace();
+            for (int i = 0; i < keys.size(); i++) {
+                PENDING.merge(keys.get(i), values.get(i), (a, b) -> a.after(b) ? a : b);
+            }
+        }
+    }
+
+    private static synchronized void startFlusher() {
+        if (flusher != null) return;
+        ScheduledExecutorService s = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "last-activity-flusher");
+            t.setDaemon(true);
+            return t;
+        });
+        s.scheduleWithFixedDelay(LastActivityBuffer::flush, FLUSH_INTERVAL_MS, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        flusher = s;
+    }
+
+    private static String key(String username, String warehouseName) {
+        return username + '\u0000' + warehouseName;
+    }
+
+    // Drop a buffered value whose warehouse no longer exists under that name
+    static void discard(String username, String warehouseName) {
+        PENDING.remove(key(username, warehouseName));
+    }
+}
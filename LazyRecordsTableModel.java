@@ -0,0 +1,179 @@
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * LazyRecordsTableModel
+ * -------------------------------------------
+ * Read-only table model over a warehouse's records that never holds the whole table.
+ * The row count comes from one COUNT(*); rows are fetched a page at a time with keyset
+ * reads (ProductDAO.getRecordColumnsPage) when the table asks for them, i.e. only for the
+ * rows being painted. Rows not loaded yet show a placeholder and are repainted when
+ * their page arrives.
+ *
+ * Keyset paging needs the id a page starts after. Page 0 starts after 0 and page k
+ * after the last id of page k-1; for jumps further ahead (dragging the scroll bar) a
+ * background scan of the id index collects every page's start id. The PAGE_CACHE most
+ * recently used pages are kept (column-wise, see RecordColumns), and the page after
+ * one being viewed is prefetched.
+ *
+ * All state except the loader threads' fetches is confined to the event dispatch thread.
+ * Row positions are those of the moment the view was opened: rows added later are not
+ * shown until the view is reloaded.
+ */
+public class LazyRecordsTableModel extends AbstractTableModel {
+
+    private static final long serialVersionUID = 1L;
+    private static final int PAGE_SIZE = ProductDAO.DEFAULT_PAGE_SIZE;
+    private static final int PAGE_CACHE = 200; // pages are compact RecordColumns (~25 KB each)
+    private static final String PLACEHOLDER = "Loading...";
+    private static final AtomicInteger SEQ = new AtomicInteger();
+
+    private final WarehouseHandle handle;
+    private final int rowCount;
+    private final ExecutorService loader;
+
+    // Least recently used page first
+    private final LinkedHashMap<Integer, RecordColumns> pages = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, RecordColumns> eldest) {
+            return size() > PAGE_CACHE;
+        }
+    };
+    private final Set<Integer> pending = new HashSet<>();
+    private int[] pageStarts;    // id each page starts after; null until the id scan finishes
+    private volatile int lastViewedPage; // read by the loaders
+    private volatile boolean closed = false;
+
+    public LazyRecordsTableModel(WarehouseHandle handle, int rowCount) {
+        this.handle = handle;
+        this.rowCount = rowCount;
+        this.loader = Executors.newFixedThreadPool(2, r -> {
+            Thread t = new Thread(r, "records-page-" + SEQ.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        if (rowCount > PAGE_SIZE) loader.execute(this::scanPageStarts);
+        request(0, true);
+    }
+
+    public WarehouseHandle getHandle() {
+        return handle;
+    }
+
+    // Stops the loaders; the model keeps answering with what it has
+    public void close() {
+        closed = true;
+        loader.shutdown(); // queued fetches see closed; running ones finish (no interrupt mid-query)
+    }
+
+    // ---------------------- TableModel ----------------------
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return RecordColumns.COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return RecordColumns.COLUMNS[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return RecordColumns.getColumnClass(column);
+    }
+
+    @Override
+    public boolean isCellEditable(int row, int col) {
+        return false;
+    }
+
+    @Override
+    public Object getValueAt(int row, int col) {
+        int page = row / PAGE_SIZE;
+        lastViewedPage = page;
+        RecordColumns rows = pages.get(page);
+        if (rows == null) {
+            request(page, true);
+            return col == 1 ? PLACEHOLDER : null;
+        }
+        int offset = row % PAGE_SIZE;
+        if (offset >= rows.size()) return null; // rows deleted since the count
+        return rows.getValue(offset, col);
+    }
+
+    // ---------------------- Paging ----------------------
+
+    // Id page k starts after, or -1 while unknown
+    private int startOf(int page) {
+        if (page == 0) return 0;
+        if (pageStarts != null) return page < pageStarts.length ? pageStarts[page] : -1;
+        RecordColumns before = pages.get(page - 1);
+        return before != null && before.size() == PAGE_SIZE ? before.getId(PAGE_SIZE - 1) : -1;
+    }
+
+    private void request(int page, boolean prefetchNext) {
+        if (closed || page * PAGE_SIZE >= rowCount || pages.containsKey(page) || pending.contains(page)) return;
+        int afterId = startOf(page);
+        if (afterId < 0) return; // repainted once the page starts are known
+        pending.add(page);
+        loader.execute(() -> {
+            if (closed) return;
+            RecordColumns rows = null;
+            // Scrolled far away meanwhile: skip, a later repaint asks again if needed
+            if (Math.abs(page - lastViewedPage) <= 2) {
+                try {
+                    rows = ProductDAO.getRecordColumnsPage(handle, afterId, PAGE_SIZE);
+                } catch (SQLException ex) {
+                    ex.printStackTrace();
+                }
+            }
+            RecordColumns loaded = rows;
+            SwingUtilities.invokeLater(() -> pageLoaded(page, loaded, prefetchNext));
+        });
+    }
+
+    private void pageLoaded(int page, RecordColumns rows, boolean prefetchNext) {
+        pending.remove(page);
+        if (closed || rows == null) return;
+        pages.put(page, rows);
+        int first = page * PAGE_SIZE;
+        fireTableRowsUpdated(first, Math.min(rowCount, first + PAGE_SIZE) - 1);
+        if (prefetchNext) request(page + 1, false);
+    }
+
+    // Every PAGE_SIZE-th id, from one streaming read of the id index
+    private void scanPageStarts() {
+        int[] starts = new int[(rowCount + PAGE_SIZE - 1) / PAGE_SIZE];
+        int[] n = {0};
+        try {
+            ProductDAO.forEachRecordId(handle, id -> {
+                if (closed) return false;
+                int i = ++n[0];
+                if (i % PAGE_SIZE == 0 && i / PAGE_SIZE < starts.length) starts[i / PAGE_SIZE] = id;
+                return i < rowCount;
+            });
+        } catch (SQLException ex) {
+            ex.printStackTrace();
+            return;
+        }
+        if (closed) return;
+        SwingUtilities.invokeLater(() -> {
+            if (closed) return;
+            pageStarts = starts;
+            fireTableRowsUpdated(0, rowCount - 1); // placeholders on screen ask again
+        });
+    }
+}
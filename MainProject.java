@@ -1,7 +1,39 @@
+import javax.swing.JOptionPane;
 import javax.swing.SwingUtilities;
+import java.sql.SQLException;
 
 public class MainProject {
     public static void main(String[] args) {
+        // Storage backend: --storage=embedded (or -Dwarehouse.storage=embedded); MySQL by default
+        String storage = System.getProperty("warehouse.storage");
+        // Records layout of new warehouses: --records-layout=unified (or -Dwarehouse.recordsLayout=unified)
+        String layout = System.getProperty("warehouse.recordsLayout");
+        // Daily auto-shift of due future trades: --auto-shift-at=HH:mm (or -Dwarehouse.autoShiftAt); off by default
+        String autoShift = System.getProperty("warehouse.autoShiftAt");
+        for (String arg : args) {
+            if (arg.startsWith("--storage=")) storage = arg.substring("--storage=".length());
+            if (arg.startsWith("--records-layout=")) layout = arg.substring("--records-layout=".length());
+            if (arg.startsWith("--auto-shift-at=")) autoShift = arg.substring("--auto-shift-at=".length());
+        }
+        if (layout != null && layout.equalsIgnoreCase("unified")) {
+            WarehouseDAO.setNewWarehouseLayout(WarehouseHandle.Layout.UNIFIED);
+        }
+        try {
+            AutoShiftScheduler.configure(autoShift);
+        } catch (java.time.format.DateTimeParseException ex) {
+            System.err.println("Ignoring auto-shift time " + autoShift + " (expected HH:mm)");
+        }
+        try {
+            DBConnection.useStorageEngine(StorageEngine.fromName(storage));
+        } catch (SQLException | IllegalArgumentException ex) {
+            ex.printStackTrace();
+            JOptionPane.showMessageDialog(null, "Cannot open the database: " + ex.getMessage(),
+                    "Startup Error", JOptionPane.ERROR_MESSAGE);
+            System.exit(1);
+        }
+
+        // Release pooled database connections when the application exits
+        Runtime.getRuntime().addShutdownHook(new Thread(DBConnection::closeConnection));
         SwingUtilities.invokeLater(() -> new LoginFrame().setVisible(true));
     }
 }
@@ -0,0 +1,70 @@
+/**
+ * MySQL server backend (the original deployment).
+ */
+public class MySqlStorageEngine implements StorageEngine {
+
+    // Server-side prepared statements, so the pool's per-connection statement cache skips re-parsing;
+    // rewriteBatchedStatements turns JDBC batches into multi-row statements (one round-trip)
+    private static final String URL = "jdbc:mysql://localhost:3306/warehouse_db"
+            + "?useServerPrepStmts=true&rewriteBatchedStatements=true";
+    private static final String USER = "root"; // your MySQL username
+    private static final String PASSWORD = "sqlkapassword"; // your MySQL password
+
+    @Override
+    public String getName() {
+        return "mysql";
+    }
+
+    @Override
+    public String getJdbcUrl() {
+        return URL;
+    }
+
+    @Override
+    public String getUser() {
+        return USER;
+    }
+
+    @Override
+    public String getPassword() {
+        return PASSWORD;
+    }
+
+    @Override
+    public String priceColumnType() {
+        return "DOUBLE(10,2)";
+    }
+
+    @Override
+    public String renameTableSql(String oldTable, String newTable) {
+        return "RENAME TABLE " + oldTable + " TO " + newTable;
+    }
+
+    @Override
+    public String createIndexSql(String table, String indexName, String... columns) {
+        // MySQL index names are scoped to their table
+        return "CREATE INDEX " + indexName + " ON " + table + " (" + String.join(", ", columns) + ")";
+    }
+
+    @Override
+    public String ignoreCaseColumnSql(String table, String column, int length) {
+        return null; // the default collation already ignores case
+    }
+
+    @Override
+    public String partitionByWarehouseClause(String column) {
+        // Hash partitions: a warehouse's rows (and its scans) stay within one partition
+        return " PARTITION BY KEY(" + column + ") PARTITIONS 16";
+    }
+
+    @Override
+    public int streamingFetchSize() {
+        // Connector/J streams a forward-only result row by row only for this value
+        return Integer.MIN_VALUE;
+    }
+
+    @Override
+    public String sharedLockSuffix() {
+        return " LOCK IN SHARE MODE";
+    }
+}
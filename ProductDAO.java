@@ -1,6 +1,17 @@
 import java.sql.*;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
 
 /**
  * ProductDAO
@@ -8,166 +19,297 @@ import java.util.ArrayList;
  * Handles all product-record operations for a selected warehouse.
  * Each warehouse has its own table: <username>_records_<warehouseName>
  * Includes stock checking and history recalculation (Point 12).
+ * Edits of existing records are validated against the in-memory StockIndex and
+ * shift the later running totals with one set-based UPDATE.
+ * Every write also keeps the warehouse's current-stock table (<username>_stock_<warehouseName>)
+ * in step inside the same transaction, so stock checks are a primary-key lookup.
  */
 public class ProductDAO {
 
+    // Rows per multi-row INSERT (and products per IN-list) in the bulk paths
+    private static final int BULK_CHUNK = 500;
+
+    // Page size callers use when they have no reason to pick another
+    public static final int DEFAULT_PAGE_SIZE = 500;
+
+    // Tries of a write whose record is renamed by another writer before it gets the lock
+    private static final int LOCK_ATTEMPTS = 3;
+
+    // -----------------------------
+    // Current stock of one product (row of the current-stock table)
+    // -----------------------------
+    public static class StockLevel {
+        public String product;
+        public int quantity;
+        public int lastRecordId;
+        public double averageImportCost;
+        public double stockValue;
+
+        public StockLevel(String product, int quantity, int lastRecordId, double averageImportCost) {
+            this.product = product;
+            this.quantity = quantity;
+            this.lastRecordId = lastRecordId;
+            this.averageImportCost = averageImportCost;
+            this.stockValue = quantity * averageImportCost;
+        }
+    }
+
     private static String currentWarehouse = null;
+    private static WarehouseHandle currentHandle = null;
 
     public static void setCurrentWarehouse(String warehouseName) {
         currentWarehouse = warehouseName;
+        currentHandle = null; // resolved lazily on first use
     }
 
-    private static String getTableName() throws SQLException {
+    // Cached table name + SQL text for the selected warehouse (see WarehouseHandle)
+    private static WarehouseHandle getHandle() throws SQLException {
         if (!SessionManager.isLoggedIn() || currentWarehouse == null) {
             throw new IllegalStateException("Warehouse not selected or user not logged in.");
         }
-        return SessionManager.prefixTable("records_" + WarehouseDAO.sanitizeName(currentWarehouse));
+        WarehouseHandle h = currentHandle;
+        if (h == null || h.isRetired() || !h.getUsername().equals(SessionManager.getCurrentUser())) {
+            h = WarehouseHandle.of(currentWarehouse);
+            currentHandle = h;
+        }
+        return h;
     }
 
     // --------------------------------------------------------
     // Helper: Gets a single product record by ID
     // --------------------------------------------------------
     public static Product getProductById(int id) throws SQLException {
-        String table = getTableName();
-        String sql = "SELECT * FROM " + table + " WHERE id=?";
+        return getProductById(getHandle(), id);
+    }
 
+    public static Product getProductById(WarehouseHandle h, int id) throws SQLException {
         try (Connection conn = DBConnection.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
+             PreparedStatement ps = conn.prepareStatement(h.selectById)) {
 
             ps.setInt(1, id);
             try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    return new Product(
-                            rs.getInt("id"),
-                            rs.getString("product"),
-                            rs.getString("supplier"),
-                            rs.getString("customer"),
-                            rs.getInt("total_quantity"),
-                            rs.getInt("import_quantity"),
-                            rs.getDouble("import_price"),
-                            rs.getInt("export_quantity"),
-                            rs.getDouble("export_price"),
-                            rs.getDate("date").toLocalDate()
-                    );
-                }
+                if (rs.next()) return readProduct(rs);
             }
         }
         return null;
     }
 
+    // Maps the current row of a records-table result set
+    private static Product readProduct(ResultSet rs) throws SQLException {
+        return new Product(
+                rs.getInt("id"),
+                rs.getString("product"),
+                rs.getString("supplier"),
+                rs.getString("customer"),
+                rs.getInt("total_quantity"),
+                rs.getInt("import_quantity"),
+                rs.getDouble("import_price"),
+                rs.getInt("export_quantity"),
+                rs.getDouble("export_price"),
+                rs.getDate("date").toLocalDate()
+        );
+    }
+
     // --------------------------------------------------------
     // Get all products from current warehouse
     // FIX: Catches SQLException and IllegalStateException (for compile error fix)
     // --------------------------------------------------------
     public static ArrayList<Product> getAllProducts() {
         ArrayList<Product> list = new ArrayList<>();
-        String table;
+        WarehouseHandle h;
 
         try {
-            table = getTableName(); // This can throw SQLException or IllegalStateException
+            h = getHandle(); // This can throw IllegalStateException (or SQLException resolving the warehouse)
         } catch (IllegalStateException | SQLException e) {
-            // FIX: If not logged in, no warehouse selected, or DB error fetching table name, return empty list.
+            // FIX: If not logged in or no warehouse selected, return empty list.
             e.printStackTrace();
             return list;
         }
 
         // Order by ID to maintain history sequence (Point 3)
-        String sql = "SELECT * FROM " + table + " ORDER BY id ASC";
+        try {
+            forEachProduct(h, list::add);
+        } catch (SQLException ex) {
+            ex.printStackTrace();
+        }
 
+        return list;
+    }
+
+    // --------------------------------------------------------
+    // Keyset pagination: up to pageSize records with id > afterId (0 = from the start),
+    // in id order. The next page starts after the last id of this one.
+    // --------------------------------------------------------
+    public static List<Product> getProductsPage(int afterId, int pageSize) throws SQLException {
+        return getProductsPage(getHandle(), afterId, pageSize);
+    }
+
+    public static List<Product> getProductsPage(WarehouseHandle h, int afterId, int pageSize) throws SQLException {
+        List<Product> page = new ArrayList<>(Math.min(pageSize, DEFAULT_PAGE_SIZE));
         try (Connection conn = DBConnection.getConnection();
-             Statement st = conn.createStatement();
-             ResultSet rs = st.executeQuery(sql)) {
-
-            while (rs.next()) {
-                Product p = new Product(
-                        rs.getInt("id"),
-                        rs.getString("product"),
-                        rs.getString("supplier"),
-                        rs.getString("customer"),
-                        rs.getInt("total_quantity"),
-                        rs.getInt("import_quantity"),
-                        rs.getDouble("import_price"),
-                        rs.getInt("export_quantity"),
-                        rs.getDouble("export_price"),
-                        rs.getDate("date").toLocalDate()
-                );
-                list.add(p);
+             PreparedStatement ps = conn.prepareStatement(h.selectPage)) {
+            ps.setInt(1, afterId);
+            ps.setInt(2, pageSize);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) page.add(readProduct(rs));
             }
+        }
+        return page;
+    }
 
-        } catch (SQLException ex) {
-            ex.printStackTrace();
+    public static int countRecords() throws SQLException {
+        return countRecords(getHandle());
+    }
+
+    public static int countRecords(WarehouseHandle h) throws SQLException {
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(h.countAll);
+             ResultSet rs = ps.executeQuery()) {
+            return rs.next() ? rs.getInt(1) : 0;
         }
+    }
 
-        return list;
+    // --------------------------------------------------------
+    // Streaming cursor: every record in id order, read through a forward-only result set
+    // so only the row being handled is in memory. The handler returns false to stop early.
+    // Runs on its own pooled connection, so the handler may use the database itself.
+    // Returns the number of records handled.
+    // --------------------------------------------------------
+    public static int forEachProduct(Predicate<Product> handler) throws SQLException {
+        return forEachProduct(getHandle(), handler);
+    }
+
+    public static int forEachProduct(WarehouseHandle h, Predicate<Product> handler) throws SQLException {
+        int n = 0;
+        try (Connection conn = DBConnection.getPooledConnection();
+             PreparedStatement ps = conn.prepareStatement(h.selectAll)) {
+            ps.setFetchSize(DBConnection.getStorageEngine().streamingFetchSize());
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    n++;
+                    if (!handler.test(readProduct(rs))) break;
+                }
+            }
+        }
+        return n;
     }
 
     // --------------------------------------------------------
-    // Helper: Recalculate total_quantity for all records after a certain ID
-    // (Crucial for Points 5, 12)
+    // Column-wise reads (RecordColumns): rows go straight from the result set into
+    // primitive arrays, without a Product per row
     // --------------------------------------------------------
-    private static void recalculateHistory(Connection conn, String table, int startingId, String productName) throws SQLException {
-        String selectSql = "SELECT id, product, import_quantity, export_quantity FROM " + table +
-                " WHERE product=? AND id >= ? ORDER BY id ASC";
+    public static RecordColumns getRecordColumnsPage(WarehouseHandle h, int afterId, int pageSize) throws SQLException {
+        RecordColumns page = new RecordColumns(Math.min(pageSize, DEFAULT_PAGE_SIZE));
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(h.selectPage)) {
+            ps.setInt(1, afterId);
+            ps.setInt(2, pageSize);
+            try (ResultSet rs = ps.executeQuery()) {
+                readColumns(rs, page);
+            }
+        }
+        return page;
+    }
 
-        try (PreparedStatement selectPs = conn.prepareStatement(selectSql)) {
-            selectPs.setString(1, productName);
-            selectPs.setInt(2, startingId);
+    // Every record of the warehouse (streaming read); expectedRows only sizes the arrays
+    public static RecordColumns loadRecordColumns(WarehouseHandle h, int expectedRows) throws SQLException {
+        RecordColumns all = new RecordColumns(expectedRows);
+        try (Connection conn = DBConnection.getPooledConnection();
+             PreparedStatement ps = conn.prepareStatement(h.selectAll)) {
+            ps.setFetchSize(DBConnection.getStorageEngine().streamingFetchSize());
+            try (ResultSet rs = ps.executeQuery()) {
+                readColumns(rs, all);
+            }
+        }
+        return all;
+    }
 
-            // Fetch all subsequent records for this product
-            ArrayList<Product> history = new ArrayList<>();
-            try (ResultSet rs = selectPs.executeQuery()) {
+    private static void readColumns(ResultSet rs, RecordColumns into) throws SQLException {
+        // Column positions resolved once, not per row
+        int id = rs.findColumn("id"), product = rs.findColumn("product"), date = rs.findColumn("date"),
+                supplier = rs.findColumn("supplier"), customer = rs.findColumn("customer"),
+                total = rs.findColumn("total_quantity"), impQ = rs.findColumn("import_quantity"),
+                impP = rs.findColumn("import_price"), expQ = rs.findColumn("export_quantity"),
+                expP = rs.findColumn("export_price");
+        while (rs.next()) {
+            into.add(rs.getInt(id), rs.getString(product), (int) rs.getDate(date).toLocalDate().toEpochDay(),
+                    rs.getString(supplier), rs.getString(customer), rs.getInt(total),
+                    rs.getInt(impQ), rs.getDouble(impP), rs.getInt(expQ), rs.getDouble(expP));
+        }
+    }
+
+    // Streams only the record ids (id order, index-only read); the handler returns false to stop early
+    public static void forEachRecordId(WarehouseHandle h, IntPredicate handler) throws SQLException {
+        try (Connection conn = DBConnection.getPooledConnection();
+             PreparedStatement ps = conn.prepareStatement(h.selectIds)) {
+            ps.setFetchSize(DBConnection.getStorageEngine().streamingFetchSize());
+            try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
-                    Product p = new Product();
-                    p.setId(rs.getInt("id"));
-                    p.setName(rs.getString("product"));
-                    p.setimpQuantity(rs.getInt("import_quantity"));
-                    p.setexpQuantity(rs.getInt("export_quantity"));
-                    history.add(p);
+                    if (!handler.test(rs.getInt(1))) break;
                 }
             }
+        }
+    }
 
-            // Find the total quantity immediately preceding the startingId
-            int runningTotal = getCurrentTotalQuantityPreId(productName, conn, table, startingId);
+    // --------------------------------------------------------
+    // Helper: Recalculate total_quantity for all records of a product from a certain ID
+    // in one streaming pass (Crucial for Points 5, 12). Only rows whose stored total
+    // is wrong are rewritten; returns the product's final running total.
+    // --------------------------------------------------------
+    private static int recalculateHistory(Connection conn, WarehouseHandle h, int startingId, String productName) throws SQLException {
+        // Find the total quantity immediately preceding the startingId
+        int runningTotal = getCurrentTotalQuantityPreId(productName, conn, h, startingId);
 
-            String updateSql = "UPDATE " + table + " SET total_quantity=? WHERE id=?";
-            try (PreparedStatement updatePs = conn.prepareStatement(updateSql)) {
-                for (Product p : history) {
-                    // Calculate change: import - export
-                    int change = p.getimpQuantity() - p.getexpQuantity();
-                    runningTotal += change;
+        try (PreparedStatement selectPs = conn.prepareStatement(h.historyFrom);
+             PreparedStatement updatePs = conn.prepareStatement(h.updateTotal)) {
+            selectPs.setString(1, productName);
+            selectPs.setInt(2, startingId);
+
+            int pending = 0;
+            try (ResultSet rs = selectPs.executeQuery()) {
+                while (rs.next()) {
+                    runningTotal += rs.getInt("delta");
 
                     // Point 12: Integrity Check
                     if (runningTotal < 0) {
-                        throw new SQLException("Negative stock detected in history (Recalculation aborted).");
+                        throw new SQLException("Negative stock detected in history of " + productName + " (Recalculation aborted).");
                     }
 
-                    updatePs.setInt(1, runningTotal);
-                    updatePs.setInt(2, p.getId());
-                    updatePs.addBatch();
+                    if (rs.getInt("total_quantity") != runningTotal) {
+                        updatePs.setInt(1, runningTotal);
+                        updatePs.setInt(2, rs.getInt("id"));
+                        updatePs.addBatch();
+                        if (++pending == BULK_CHUNK) {
+                            updatePs.executeBatch();
+                            pending = 0;
+                        }
+                    }
                 }
-                updatePs.executeBatch();
             }
+            if (pending > 0) updatePs.executeBatch();
         }
+        return runningTotal;
     }
 
-
     // --------------------------------------------------------
     // Add a new import record (Point 3: Appends to end, auto-ID)
     // --------------------------------------------------------
     public static void addProduct(Product p) throws SQLException {
-        String table = getTableName();
+        addProduct(getHandle(), p);
+    }
 
-        try (Connection conn = DBConnection.getConnection()) {
+    // Same as addProduct(Product) but for an explicit warehouse (does not touch the selected one)
+    public static void addProduct(WarehouseHandle h, Product p) throws SQLException {
+        try (UnitOfWork uow = UnitOfWork.begin()) {
+            Connection conn = uow.getConnection();
 
-            // Find total quantity for this product just before this insertion
-            int total = getCurrentTotalQuantity(p.getName(), conn, table);
+            // Find total quantity for this product just before this insertion (locked until commit)
+            int total = lockCurrentTotalQuantity(p.getName(), conn, h, true);
             int newTotal = total + p.getimpQuantity();
 
             // FIX: New column order (date after product)
-            String sql = "INSERT INTO " + table + " (product, date, supplier, customer, total_quantity, "
-                    + "import_quantity, import_price, export_quantity, export_price) "
-                    + "VALUES (?, ?, ?, ?, ?, ?, ?, 0, 0)";
-            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            int newId;
+            try (PreparedStatement ps = conn.prepareStatement(h.insertImport, Statement.RETURN_GENERATED_KEYS)) {
                 ps.setString(1, p.getName());
                 ps.setDate(2, Date.valueOf(p.getDateAdded())); // MOVED DATE
                 ps.setString(3, p.getSupplier());
@@ -176,9 +318,15 @@ public class ProductDAO {
                 ps.setInt(6, p.getimpQuantity());
                 ps.setDouble(7, p.getimpPrice());
                 ps.executeUpdate();
+                newId = generatedId(ps);
             }
 
-            WarehouseDAO.updateLastActivity(currentWarehouse);
+            applyStockChange(conn, h, p.getName(), p.getimpQuantity(), newId,
+                    p.getimpQuantity(), p.getimpQuantity() * p.getimpPrice());
+            RollupDAO.recordAdded(conn, h, p.getName(), p.getDateAdded(), p.getimpQuantity(), p.getimpPrice(), 0, 0.0);
+            WarehouseDAO.updateLastActivity(h);
+            indexAfterCommit(h, p, newId, p.getimpQuantity());
+            uow.commit();
         }
     }
 
@@ -186,19 +334,24 @@ public class ProductDAO {
     // Export record (reduce total quantity)
     // --------------------------------------------------------
     public static boolean exportProduct(Product p) throws SQLException {
-        String table = getTableName();
-        try (Connection conn = DBConnection.getConnection()) {
-            int total = getCurrentTotalQuantity(p.getName(), conn, table);
+        return exportProduct(getHandle(), p);
+    }
+
+    // Same as exportProduct(Product) but for an explicit warehouse (does not touch the selected one)
+    public static boolean exportProduct(WarehouseHandle h, Product p) throws SQLException {
+        try (UnitOfWork uow = UnitOfWork.begin()) {
+            Connection conn = uow.getConnection();
+            // Locked until commit: a concurrent export of this product waits for our result
+            int total = lockCurrentTotalQuantity(p.getName(), conn, h, false);
             if (p.getexpQuantity() > total) {
+                uow.commit(); // nothing written; keeps an enclosing unit usable
                 return false; // insufficient stock
             }
             int newTotal = total - p.getexpQuantity();
 
             // FIX: New column order (date after product)
-            String sql = "INSERT INTO " + table + " (product, date, supplier, customer, total_quantity, "
-                    + "import_quantity, import_price, export_quantity, export_price) "
-                    + "VALUES (?, ?, ?, ?, ?, 0, 0, ?, ?)";
-            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            int newId;
+            try (PreparedStatement ps = conn.prepareStatement(h.insertExport, Statement.RETURN_GENERATED_KEYS)) {
                 ps.setString(1, p.getName());
                 ps.setDate(2, Date.valueOf(p.getDateAdded())); // MOVED DATE
                 ps.setString(3, p.getSupplier());
@@ -207,154 +360,686 @@ public class ProductDAO {
                 ps.setInt(6, p.getexpQuantity());
                 ps.setDouble(7, p.getexpPrice());
                 ps.executeUpdate();
+                newId = generatedId(ps);
             }
 
-            WarehouseDAO.updateLastActivity(currentWarehouse);
+            applyStockChange(conn, h, p.getName(), -p.getexpQuantity(), newId, 0, 0.0);
+            RollupDAO.recordAdded(conn, h, p.getName(), p.getDateAdded(), 0, 0.0, p.getexpQuantity(), p.getexpPrice());
+            WarehouseDAO.updateLastActivity(h);
+            indexAfterCommit(h, p, newId, -p.getexpQuantity());
+            uow.commit();
             return true;
         }
     }
 
+    // --------------------------------------------------------
+    // Bulk ingestion: a whole batch of import/export rows in one transaction.
+    // Each Product is one record (delta = import - export). Stock is validated for
+    // the whole batch in memory before anything is written; rows are then written
+    // with multi-row INSERTs and the current-stock table is updated once per product.
+    // --------------------------------------------------------
+    public static void addRecords(List<Product> batch) throws SQLException {
+        addRecords(getHandle(), batch);
+    }
+
+    public static void addRecords(WarehouseHandle h, List<Product> batch) throws SQLException {
+        if (batch.isEmpty()) return;
+
+        try (UnitOfWork uow = UnitOfWork.begin()) {
+            Connection conn = uow.getConnection();
+
+            // 1. Starting stock of every product in the batch (locked until commit)
+            Set<String> names = new HashSet<>();
+            for (Product p : batch) names.add(p.getName());
+            Map<String, Integer> running = lockStockRows(conn, h, names);
+
+            // 2. Running totals in one pass (Point 12: no row may drive stock negative)
+            int[] totals = new int[batch.size()];
+            for (int i = 0; i < batch.size(); i++) {
+                Product p = batch.get(i);
+                int total = running.get(p.getName()) + p.getimpQuantity() - p.getexpQuantity();
+                if (total < 0) {
+                    throw new SQLException("Negative stock detected: row " + (i + 1) + " (" + p.getName()
+                            + ") would leave stock at " + total + ". Import aborted.");
+                }
+                running.put(p.getName(), total);
+                totals[i] = total;
+            }
+
+            // 3. Multi-row inserts
+            int[] ids = new int[batch.size()];
+            for (int from = 0; from < batch.size(); from += BULK_CHUNK) {
+                int to = Math.min(from + BULK_CHUNK, batch.size());
+                try (PreparedStatement ps = conn.prepareStatement(h.multiInsert(to - from), Statement.RETURN_GENERATED_KEYS)) {
+                    int k = 1;
+                    for (int i = from; i < to; i++) {
+                        Product p = batch.get(i);
+                        ps.setString(k++, p.getName());
+                        ps.setDate(k++, Date.valueOf(p.getDateAdded()));
+                        ps.setString(k++, p.getSupplier());
+                        ps.setString(k++, p.getCustomer());
+                        ps.setInt(k++, totals[i]);
+                        ps.setInt(k++, p.getimpQuantity());
+                        ps.setDouble(k++, p.getimpPrice());
+                        ps.setInt(k++, p.getexpQuantity());
+                        ps.setDouble(k++, p.getexpPrice());
+                    }
+                    ps.executeUpdate();
+                    try (ResultSet keys = ps.getGeneratedKeys()) {
+                        for (int i = from; i < to; i++) {
+                            if (!keys.next()) throw new SQLException("Database did not return all new record IDs.");
+                            ids[i] = keys.getInt(1);
+                        }
+                    }
+                }
+            }
+
+            // 4. One current-stock upsert per product (batched)
+            Map<String, double[]> perProduct = new LinkedHashMap<>(); // {qtyDelta, lastId, importedQty, importedValue}
+            for (int i = 0; i < batch.size(); i++) {
+                Product p = batch.get(i);
+                double[] agg = perProduct.computeIfAbsent(p.getName(), k -> new double[4]);
+                agg[0] += p.getimpQuantity() - p.getexpQuantity();
+                agg[1] = Math.max(agg[1], ids[i]);
+                agg[2] += p.getimpQuantity();
+                agg[3] += p.getimpQuantity() * p.getimpPrice();
+            }
+            try (PreparedStatement ps = conn.prepareStatement(h.stockUpsert)) {
+                for (Map.Entry<String, double[]> e : perProduct.entrySet()) {
+                    double[] agg = e.getValue();
+                    ps.setString(1, e.getKey());
+                    ps.setInt(2, (int) agg[0]);
+                    ps.setInt(3, (int) agg[1]);
+                    ps.setInt(4, (int) agg[2]);
+                    ps.setDouble(5, agg[3]);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+
+            // 5. Daily rollup, once per (product, day)
+            Map<String, RollupDAO.Change> rollup = new TreeMap<>();
+            for (Product p : batch) RollupDAO.collect(rollup, p, +1);
+            RollupDAO.apply(conn, h, rollup);
+
+            WarehouseDAO.updateLastActivity(h);
+            for (int i = 0; i < batch.size(); i++) {
+                Product p = batch.get(i);
+                indexAfterCommit(h, p, ids[i], p.getimpQuantity() - p.getexpQuantity());
+            }
+            uow.commit();
+        }
+    }
+
+    // Locks the current-stock rows of these products for the rest of the transaction
+    // and returns their quantities. Missing rows are created first (quantity 0), so the
+    // locking read never has to lock a gap.
+    private static Map<String, Integer> lockStockRows(Connection conn, WarehouseHandle h, Set<String> products) throws SQLException {
+        StockLocks.lockAll(h, products);
+        List<String> names = new ArrayList<>(products);
+        Collections.sort(names); // same row lock order for every writer
+
+        try (PreparedStatement ps = conn.prepareStatement(h.stockUpsert)) {
+            for (String name : names) {
+                ps.setString(1, name);
+                ps.setInt(2, 0);
+                ps.setInt(3, 0);
+                ps.setInt(4, 0);
+                ps.setDouble(5, 0.0);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+
+        Map<String, Integer> stock = new TreeMap<>(String.CASE_INSENSITIVE_ORDER); // stored spelling may differ
+        for (String name : names) stock.put(name, 0);
+        for (int from = 0; from < names.size(); from += BULK_CHUNK) {
+            int to = Math.min(from + BULK_CHUNK, names.size());
+            try (PreparedStatement ps = conn.prepareStatement(h.stockQuantitiesForUpdate(to - from))) {
+                for (int i = from; i < to; i++) ps.setString(i - from + 1, names.get(i));
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) stock.put(rs.getString(1), rs.getInt(2));
+                }
+            }
+        }
+        checkLayout(conn, h);
+        return stock;
+    }
+
+    // Called with the stock rows locked. Another client may have moved a TABLE warehouse to
+    // the shared store while this write waited (RecordsStoreMigrator switches the layout while
+    // holding every stock row of the warehouse); its SQL would then hit the retired tables.
+    private static void checkLayout(Connection conn, WarehouseHandle h) throws SQLException {
+        if (h.getLayout() != WarehouseHandle.Layout.TABLE || h.getWarehouseId() == 0) return;
+        try (PreparedStatement ps = conn.prepareStatement(h.layoutCheck)) {
+            ps.setInt(1, h.getWarehouseId());
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next() && !WarehouseHandle.Layout.TABLE.name().equals(rs.getString(1))) {
+                    WarehouseHandle.invalidate(h.getWarehouseName());
+                    throw new SQLException("Warehouse " + h.getWarehouseName()
+                            + " was moved to another records store; please retry.");
+                }
+            }
+        }
+    }
+
+    // Same, on the connection of a caller's unit of work (batch shifts of future trades validate against it)
+    static Map<String, Integer> lockCurrentStock(Connection conn, WarehouseHandle h, Set<String> products) throws SQLException {
+        return lockStockRows(conn, h, products);
+    }
+
+    // The product's StockIndex, checked against the rows locked by lockStockRows: the cache
+    // only sees this process's commits, so it is reloaded (under the lock) when the locked
+    // current stock or the locked record's stored total disagree with it.
+    private static StockIndex lockedIndex(Connection conn, WarehouseHandle h, String product, int lockedQuantity,
+                                          Product record) throws SQLException {
+        StockIndex idx = StockIndex.get(conn, h, product);
+        boolean stale = idx.currentStock() != lockedQuantity
+                || (record != null && idx.stockAt(record.getId()) != record.gettotQuantity());
+        if (stale) {
+            StockIndex.invalidate(h, product);
+            idx = StockIndex.get(conn, h, product);
+        }
+        return idx;
+    }
+
     // --------------------------------------------------------
     // Update existing record by ID (Point 5, 12: Recalculate history)
+    // The negative-stock check is answered by the StockIndex in O(log n); the later
+    // running totals are then shifted by the change in one set-based statement per
+    // product (still O(n) rows on the database side).
     // --------------------------------------------------------
     public static void updateProduct(Product p) throws SQLException {
-        String table = getTableName();
-        Connection conn = null;
+        updateProduct(getHandle(), p);
+    }
 
-        try {
-            conn = DBConnection.getConnection();
-            conn.setAutoCommit(false); // Start transaction
+    public static void updateProduct(WarehouseHandle h, Product p) throws SQLException {
+        for (int attempt = 1; !tryUpdateProduct(h, p); attempt++) {
+            if (attempt == LOCK_ATTEMPTS) throw changedConcurrently(p.getId());
+        }
+    }
 
-            // 1. Update the record itself
-            // FIX: New column order (date after product)
-            String sql = "UPDATE " + table + " SET product=?, date=?, supplier=?, customer=?, "
-                    + "import_quantity=?, import_price=?, export_quantity=?, export_price=? "
-                    + "WHERE id=?";
-            try (PreparedStatement ps = conn.prepareStatement(sql)) {
-                ps.setString(1, p.getName());
-                ps.setDate(2, Date.valueOf(p.getDateAdded())); // MOVED DATE
-                ps.setString(3, p.getSupplier());
-                ps.setString(4, p.getCustomer());
-                ps.setInt(5, p.getimpQuantity());
-                ps.setDouble(6, p.getimpPrice());
-                ps.setInt(7, p.getexpQuantity());
-                ps.setDouble(8, p.getexpPrice());
-                ps.setInt(9, p.getId());
-                ps.executeUpdate();
-            }
+    // One attempt; false (nothing written) if the record moved to a product that was not locked
+    private static boolean tryUpdateProduct(WarehouseHandle h, Product p) throws SQLException {
+        // Read before the transaction starts, so its first plain read happens under the lock
+        Product before = getProductById(h, p.getId());
+        if (before == null) return true; // Nothing to update
 
-            // 2. Recalculate the history from this point forward (Point 12)
-            recalculateHistory(conn, table, p.getId(), p.getName());
+        try (UnitOfWork uow = UnitOfWork.begin()) {
+            Connection conn = uow.getConnection();
+            // Serialize with other writers of both products, then re-read under the lock
+            Map<String, Integer> locked = lockStockRows(conn, h, new HashSet<>(Arrays.asList(before.getName(), p.getName())));
+            before = getProductById(h, p.getId());
+            if (before == null) return true;
+            if (!locked.containsKey(before.getName())) {
+                uow.commit(); // nothing written; keeps an enclosing unit usable
+                return false;
+            }
 
-            conn.commit();
-            WarehouseDAO.updateLastActivity(currentWarehouse);
+            int id = p.getId();
+            int oldDelta = before.getimpQuantity() - before.getexpQuantity();
+            int newDelta = p.getimpQuantity() - p.getexpQuantity();
+            double oldImportValue = before.getimpQuantity() * before.getimpPrice();
+            double newImportValue = p.getimpQuantity() * p.getimpPrice();
+            StockIndex oldIdx = lockedIndex(conn, h, before.getName(), locked.get(before.getName()), before);
+            Product old = before;
+            long newTotal;
 
-        } catch (SQLException ex) {
-            if (conn != null) conn.rollback();
-            throw ex; // Re-throw for GUI to handle integrity warning
-        } finally {
-            if (conn != null) {
-                conn.setAutoCommit(true);
-                conn.close();
+            if (before.getName().equalsIgnoreCase(p.getName())) {
+                int diff = newDelta - oldDelta;
+                // Point 12: every running total from this record on moves by diff
+                if (diff < 0 && oldIdx.minStockFrom(id) + diff < 0) {
+                    throw new SQLException("Negative stock detected in history (Update aborted).");
+                }
+                newTotal = (long) before.gettotQuantity() + diff; // stored total, read under the lock
+                writeRecord(conn, h, p, newTotal);
+                if (diff != 0) shiftLaterTotals(conn, h, p.getName(), id, diff);
+                applyStockChange(conn, h, p.getName(), diff, id,
+                        p.getimpQuantity() - before.getimpQuantity(), newImportValue - oldImportValue);
+                UnitOfWork.afterCommit(() -> {
+                    oldIdx.put(id, newDelta);
+                    InventoryValuation.invalidate(h);
+                });
+            } else {
+                // The record moves to another product: it leaves one history and joins another
+                StockIndex newIdx = lockedIndex(conn, h, p.getName(), locked.get(p.getName()), null);
+                if (oldDelta > 0 && oldIdx.minStockFrom(id) - oldDelta < 0) {
+                    throw new SQLException("Negative stock detected in history of " + before.getName() + " (Update aborted).");
+                }
+                newTotal = newIdx.stockBefore(id) + newDelta;
+                long laterMin = newIdx.minStockFrom(id);
+                if (newTotal < 0 || (laterMin != Long.MAX_VALUE && laterMin + newDelta < 0)) {
+                    throw new SQLException("Negative stock detected in history of " + p.getName() + " (Update aborted).");
+                }
+                writeRecord(conn, h, p, newTotal);
+                if (oldDelta != 0) shiftLaterTotals(conn, h, before.getName(), id, -oldDelta);
+                if (newDelta != 0) shiftLaterTotals(conn, h, p.getName(), id, newDelta);
+                applyStockChange(conn, h, before.getName(), -oldDelta, 0, -before.getimpQuantity(), -oldImportValue);
+                refreshLastRecordId(conn, h, before.getName());
+                applyStockChange(conn, h, p.getName(), newDelta, id, p.getimpQuantity(), newImportValue);
+                UnitOfWork.afterCommit(() -> {
+                    oldIdx.remove(id);
+                    newIdx.put(id, newDelta);
+                    InventoryValuation.invalidate(h);
+                });
             }
+
+            Map<String, RollupDAO.Change> rollup = new TreeMap<>();
+            RollupDAO.collect(rollup, old, -1);
+            RollupDAO.collect(rollup, p, +1);
+            RollupDAO.apply(conn, h, rollup);
+
+            WarehouseDAO.updateLastActivity(h);
+            uow.commit();
+            return true;
+        } // Not committed (e.g. negative stock) -> rolled back; exception goes to the GUI
+    }
+
+    // A record renamed by another writer between the unlocked read and the lock
+    private static SQLException changedConcurrently(int id) {
+        return new SQLException("Record " + id + " keeps being changed by another user; please retry.");
+    }
+
+    // Writes all editable columns of a record plus its recomputed running total
+    private static void writeRecord(Connection conn, WarehouseHandle h, Product p, long total) throws SQLException {
+        // FIX: New column order (date after product)
+        try (PreparedStatement ps = conn.prepareStatement(h.updateRecord)) {
+            ps.setString(1, p.getName());
+            ps.setDate(2, Date.valueOf(p.getDateAdded())); // MOVED DATE
+            ps.setString(3, p.getSupplier());
+            ps.setString(4, p.getCustomer());
+            ps.setInt(5, p.getimpQuantity());
+            ps.setDouble(6, p.getimpPrice());
+            ps.setInt(7, p.getexpQuantity());
+            ps.setDouble(8, p.getexpPrice());
+            ps.setInt(9, p.getId());
+            ps.executeUpdate();
+        }
+        try (PreparedStatement ps = conn.prepareStatement(h.updateTotal)) {
+            ps.setInt(1, (int) total);
+            ps.setInt(2, p.getId());
+            ps.executeUpdate();
+        }
+    }
+
+    // total_quantity += delta for every later record of the product (one statement, no read-back)
+    private static void shiftLaterTotals(Connection conn, WarehouseHandle h, String product, int afterId, int delta) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(h.shiftLaterTotals)) {
+            ps.setInt(1, delta);
+            ps.setString(2, product);
+            ps.setInt(3, afterId);
+            ps.executeUpdate();
         }
     }
 
     // --------------------------------------------------------
     // Delete record by ID (Point 4, 12: Recalculate history)
+    // A failed integrity check aborts before anything is written.
     // --------------------------------------------------------
     public static void deleteProduct(int id) throws SQLException {
-        String table = getTableName();
-        Connection conn = null;
-        Product productToDelete = getProductById(id);
-        if (productToDelete == null) return; // Nothing to delete
+        deleteProduct(getHandle(), id);
+    }
 
-        try {
-            conn = DBConnection.getConnection();
-            conn.setAutoCommit(false); // Start transaction
+    public static void deleteProduct(WarehouseHandle h, int id) throws SQLException {
+        for (int attempt = 1; !tryDeleteProduct(h, id); attempt++) {
+            if (attempt == LOCK_ATTEMPTS) throw changedConcurrently(id);
+        }
+    }
+
+    // One attempt; false (nothing written) if the record moved to a product that was not locked
+    private static boolean tryDeleteProduct(WarehouseHandle h, int id) throws SQLException {
+        // Read before the transaction starts, so its first plain read happens under the lock
+        Product productToDelete = getProductById(h, id);
+        if (productToDelete == null) return true; // Nothing to delete
+
+        try (UnitOfWork uow = UnitOfWork.begin()) {
+            Connection conn = uow.getConnection();
+            // Serialize with other writers of this product, then re-read under the lock
+            Map<String, Integer> locked = lockStockRows(conn, h, Collections.singleton(productToDelete.getName()));
+            productToDelete = getProductById(h, id);
+            if (productToDelete == null) return true;
+            if (!locked.containsKey(productToDelete.getName())) {
+                uow.commit(); // nothing written; keeps an enclosing unit usable
+                return false;
+            }
+
+            String product = productToDelete.getName();
+            int delta = productToDelete.getimpQuantity() - productToDelete.getexpQuantity();
+            StockIndex idx = lockedIndex(conn, h, product, locked.get(product), productToDelete);
+
+            // Point 12: removing an import lowers every later running total
+            if (delta > 0 && idx.minStockFrom(id + 1) - delta < 0) {
+                throw new SQLException("Negative stock detected in history. Deletion aborted.");
+            }
 
             // 1. Delete the record
-            String sql = "DELETE FROM " + table + " WHERE id=?";
-            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            try (PreparedStatement ps = conn.prepareStatement(h.deleteById)) {
                 ps.setInt(1, id);
                 ps.executeUpdate();
             }
 
-            // 2. Recalculate the history from the deleted point forward (Point 12)
-            // We start recalculating from the ID immediately following the deleted one (id + 1)
-            recalculateHistory(conn, table, id + 1, productToDelete.getName());
+            // 2. Shift the later history of this product by the removed quantity
+            if (delta != 0) shiftLaterTotals(conn, h, product, id, -delta);
+            applyStockChange(conn, h, product, -delta, 0, -productToDelete.getimpQuantity(),
+                    -productToDelete.getimpQuantity() * productToDelete.getimpPrice());
+            refreshLastRecordId(conn, h, product);
+            Map<String, RollupDAO.Change> rollup = new TreeMap<>();
+            RollupDAO.collect(rollup, productToDelete, -1);
+            RollupDAO.apply(conn, h, rollup);
+
+            WarehouseDAO.updateLastActivity(h);
+            UnitOfWork.afterCommit(() -> {
+                idx.remove(id);
+                InventoryValuation.invalidate(h);
+            });
+            uow.commit();
+            return true;
+        }
+    }
+
+    // --------------------------------------------------------
+    // Bulk corrections: many records edited/deleted in one transaction.
+    // All row changes are applied first; each affected product's running totals are
+    // then recalculated once, from its earliest affected id (not once per record).
+    // Returns the number of records changed; ids that do not exist are ignored.
+    // --------------------------------------------------------
+    public static int updateRecords(List<Product> changes) throws SQLException {
+        return applyBulk(getHandle(), changes, new ArrayList<>());
+    }
 
-            conn.commit();
-            WarehouseDAO.updateLastActivity(currentWarehouse);
+    public static int deleteRecords(List<Integer> ids) throws SQLException {
+        return deleteRecords(getHandle(), ids);
+    }
 
-        } catch (SQLException ex) {
-            if (conn != null) conn.rollback();
-            // Point 12: Use specific message if integrity is violated
-            if (ex.getMessage().contains("Negative stock detected")) {
-                // Re-insert the record to maintain transactional integrity before throwing
-                try {
-                    insertDeletedProductBack(conn, table, productToDelete);
-                    conn.commit(); // Commit the re-insertion
-                } catch (Exception reinsertEx) {
-                    // If re-insertion fails, log the failure but maintain the original error context
-                    reinsertEx.printStackTrace();
+    public static int deleteRecords(WarehouseHandle h, List<Integer> ids) throws SQLException {
+        return applyBulk(h, new ArrayList<>(), ids);
+    }
+
+    public static int deleteRecordsBetween(LocalDate from, LocalDate to) throws SQLException {
+        return deleteRecords(findRecordIds(from, to));
+    }
+
+    public static int deleteRecordsOfProduct(String product) throws SQLException {
+        return deleteRecords(findRecordIds(product));
+    }
+
+    // Ids of the records dated from..to (inclusive), e.g. to build an updateRecords list
+    public static List<Integer> findRecordIds(LocalDate from, LocalDate to) throws SQLException {
+        WarehouseHandle h = getHandle();
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(h.idsInDateRange)) {
+            ps.setDate(1, Date.valueOf(from));
+            ps.setDate(2, Date.valueOf(to));
+            return readIds(ps);
+        }
+    }
+
+    public static List<Integer> findRecordIds(String product) throws SQLException {
+        WarehouseHandle h = getHandle();
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(h.idsOfProduct)) {
+            ps.setString(1, product);
+            return readIds(ps);
+        }
+    }
+
+    private static List<Integer> readIds(PreparedStatement ps) throws SQLException {
+        List<Integer> ids = new ArrayList<>();
+        try (ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) ids.add(rs.getInt(1));
+        }
+        return ids;
+    }
+
+    private static int applyBulk(WarehouseHandle h, List<Product> updates, List<Integer> deletes) throws SQLException {
+        Set<Integer> deleteIds = new HashSet<>(deletes);
+        List<Integer> ids = new ArrayList<>(deleteIds);
+        for (Product p : updates) {
+            if (!deleteIds.contains(p.getId())) ids.add(p.getId()); // a deleted id is not also updated
+        }
+        if (ids.isEmpty()) return 0;
+
+        for (int attempt = 1; ; attempt++) {
+            int changed = tryApplyBulk(h, updates, deleteIds, ids);
+            if (changed >= 0) return changed;
+            if (attempt == LOCK_ATTEMPTS) throw new SQLException("Records keep being changed by another user; please retry.");
+        }
+    }
+
+    // One attempt; -1 (nothing written) if a record moved to a product that was not locked
+    private static int tryApplyBulk(WarehouseHandle h, List<Product> updates, Set<Integer> deleteIds,
+                                    List<Integer> ids) throws SQLException {
+        // Read before the transaction starts, so its first plain read happens under the locks
+        Map<Integer, Product> before;
+        try (Connection conn = DBConnection.getConnection()) {
+            before = getProductsByIds(conn, h, ids);
+        }
+
+        try (UnitOfWork uow = UnitOfWork.begin()) {
+            Connection conn = uow.getConnection();
+            // Serialize with other writers of every affected product, then re-read under the locks
+            Set<String> names = new HashSet<>();
+            for (Product b : before.values()) names.add(b.getName());
+            for (Product p : updates) names.add(p.getName());
+            Map<String, Integer> locked = lockStockRows(conn, h, names);
+            before = getProductsByIds(conn, h, ids);
+            for (Product b : before.values()) {
+                if (!locked.containsKey(b.getName())) {
+                    uow.commit(); // nothing written; keeps an enclosing unit usable
+                    return -1;
+                }
+            }
+
+            // Per product: earliest affected id and {quantity, imported quantity, imported value} deltas
+            Map<String, Integer> fromId = new HashMap<>();
+            Map<String, double[]> stockDelta = new LinkedHashMap<>();
+            Map<String, RollupDAO.Change> rollup = new TreeMap<>();
+            int changed = 0;
+
+            // 1. Row changes (running totals are fixed up in step 2)
+            try (PreparedStatement ps = conn.prepareStatement(h.updateRecord)) {
+                for (Product p : updates) {
+                    Product b = before.get(p.getId());
+                    if (b == null || deleteIds.contains(p.getId())) continue;
+                    ps.setString(1, p.getName());
+                    ps.setDate(2, Date.valueOf(p.getDateAdded()));
+                    ps.setString(3, p.getSupplier());
+                    ps.setString(4, p.getCustomer());
+                    ps.setInt(5, p.getimpQuantity());
+                    ps.setDouble(6, p.getimpPrice());
+                    ps.setInt(7, p.getexpQuantity());
+                    ps.setDouble(8, p.getexpPrice());
+                    ps.setInt(9, p.getId());
+                    ps.addBatch();
+                    trackChange(fromId, stockDelta, b, -1);
+                    trackChange(fromId, stockDelta, p, +1);
+                    RollupDAO.collect(rollup, b, -1);
+                    RollupDAO.collect(rollup, p, +1);
+                    changed++;
+                }
+                if (changed > 0) ps.executeBatch();
+            }
+            try (PreparedStatement ps = conn.prepareStatement(h.deleteById)) {
+                int deleted = 0;
+                for (int id : deleteIds) {
+                    Product b = before.get(id);
+                    if (b == null) continue;
+                    ps.setInt(1, id);
+                    ps.addBatch();
+                    trackChange(fromId, stockDelta, b, -1);
+                    RollupDAO.collect(rollup, b, -1);
+                    deleted++;
                 }
-                throw new SQLException("Negative stock detected in history. Deletion aborted.", ex);
+                if (deleted > 0) ps.executeBatch();
+                changed += deleted;
             }
-            throw ex; // Re-throw general errors
-        } finally {
-            if (conn != null) {
-                conn.setAutoCommit(true);
-                conn.close();
+            if (changed == 0) return 0;
+
+            // 2. One recalculation pass per affected product, then its current-stock row
+            for (Map.Entry<String, double[]> e : stockDelta.entrySet()) {
+                String product = e.getKey();
+                double[] d = e.getValue();
+                recalculateHistory(conn, h, fromId.get(product), product);
+                applyStockChange(conn, h, product, (int) d[0], 0, (int) d[1], d[2]);
+                refreshLastRecordId(conn, h, product);
             }
+            RollupDAO.apply(conn, h, rollup);
+
+            WarehouseDAO.updateLastActivity(h);
+            List<String> products = new ArrayList<>(stockDelta.keySet());
+            UnitOfWork.afterCommit(() -> {
+                products.forEach(name -> StockIndex.invalidate(h, name));
+                InventoryValuation.invalidate(h);
+            });
+            uow.commit();
+            return changed;
         }
     }
 
-    // Helper method to insert a product back into the database (used if deletion fails due to stock check)
-    private static void insertDeletedProductBack(Connection conn, String table, Product p) throws SQLException {
-        // We assume the caller handles the transaction context (autoCommit=false).
+    // Adds (sign = +1) or removes (sign = -1) a record's contribution to its product
+    private static void trackChange(Map<String, Integer> fromId, Map<String, double[]> stockDelta, Product p, int sign) {
+        fromId.merge(p.getName(), p.getId(), Math::min);
+        double[] d = stockDelta.computeIfAbsent(p.getName(), k -> new double[3]);
+        d[0] += sign * (p.getimpQuantity() - p.getexpQuantity());
+        d[1] += sign * p.getimpQuantity();
+        d[2] += sign * p.getimpQuantity() * p.getimpPrice();
+    }
 
-        String sql = "INSERT INTO " + table + " (product, date, supplier, customer, total_quantity, "
-                + "import_quantity, import_price, export_quantity, export_price, id) "
-                + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, p.getName());
-            ps.setDate(2, Date.valueOf(p.getDateAdded()));
-            ps.setString(3, p.getSupplier());
-            ps.setString(4, p.getCustomer());
-            ps.setInt(5, p.gettotQuantity()); // Use old total_quantity placeholder
-            ps.setInt(6, p.getimpQuantity());
-            ps.setDouble(7, p.getimpPrice());
-            ps.setInt(8, p.getexpQuantity());
-            ps.setDouble(9, p.getexpPrice());
-            ps.setInt(10, p.getId()); // Force the original ID back for consistency
+    private static Map<Integer, Product> getProductsByIds(Connection conn, WarehouseHandle h, List<Integer> ids) throws SQLException {
+        Map<Integer, Product> found = new HashMap<>();
+        for (int from = 0; from < ids.size(); from += BULK_CHUNK) {
+            int to = Math.min(from + BULK_CHUNK, ids.size());
+            try (PreparedStatement ps = conn.prepareStatement(h.selectByIds(to - from))) {
+                for (int i = from; i < to; i++) ps.setInt(i - from + 1, ids.get(i));
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        Product p = readProduct(rs);
+                        found.put(p.getId(), p);
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    // --------------------------------------------------------
+    // Current-stock table maintenance (always inside the caller's transaction)
+    // --------------------------------------------------------
+    private static void applyStockChange(Connection conn, WarehouseHandle h, String product, int quantityDelta,
+                                         int recordId, int importedQuantityDelta, double importedValueDelta) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(h.stockUpsert)) {
+            ps.setString(1, product);
+            ps.setInt(2, quantityDelta);
+            ps.setInt(3, recordId);
+            ps.setInt(4, importedQuantityDelta);
+            ps.setDouble(5, importedValueDelta);
+            ps.executeUpdate();
+        }
+    }
+
+    // After a record leaves a product's history its last_record_id may point at it
+    private static void refreshLastRecordId(Connection conn, WarehouseHandle h, String product) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(h.stockRefreshLastId)) {
+            ps.setString(1, product);
+            ps.setString(2, product);
             ps.executeUpdate();
         }
-        // Re-run the recalculation from the product's ID to fix the history once it's back in the table.
-        recalculateHistory(conn, table, p.getId(), p.getName());
+    }
+
+    // --------------------------------------------------------
+    // Current stock of every product in the selected warehouse (one indexed read)
+    // --------------------------------------------------------
+    public static List<StockLevel> getCurrentStock() throws SQLException {
+        return getCurrentStock(getHandle());
+    }
+
+    public static List<StockLevel> getCurrentStock(WarehouseHandle h) throws SQLException {
+        List<StockLevel> list = new ArrayList<>();
+
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(h.stockAll);
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) list.add(readStockLevel(rs));
+        }
+        return list;
+    }
+
+    // Current stock of several UNIFIED-layout warehouses in one query, by warehouse id
+    public static Map<Integer, List<StockLevel>> getCurrentStockUnified(List<WarehouseHandle> handles) throws SQLException {
+        Map<Integer, List<StockLevel>> byWarehouse = new HashMap<>();
+        if (handles.isEmpty()) return byWarehouse;
+
+        StringBuilder sql = new StringBuilder("SELECT warehouse_id, product, quantity, last_record_id, imported_quantity, imported_value FROM ")
+                .append(WarehouseHandle.UNIFIED_STOCK).append(" WHERE warehouse_id IN (");
+        for (int i = 0; i < handles.size(); i++) sql.append(i == 0 ? "?" : ", ?");
+        sql.append(") ORDER BY warehouse_id, product");
+
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql.toString())) {
+            for (int i = 0; i < handles.size(); i++) ps.setInt(i + 1, handles.get(i).getWarehouseId());
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    byWarehouse.computeIfAbsent(rs.getInt("warehouse_id"), k -> new ArrayList<>()).add(readStockLevel(rs));
+                }
+            }
+        }
+        return byWarehouse;
+    }
+
+    private static StockLevel readStockLevel(ResultSet rs) throws SQLException {
+        long importedQty = rs.getLong("imported_quantity");
+        double avgCost = importedQty > 0 ? rs.getDouble("imported_value") / importedQty : 0.0;
+        return new StockLevel(
+                rs.getString("product"),
+                rs.getInt("quantity"),
+                rs.getInt("last_record_id"),
+                avgCost
+        );
+    }
+
+    // Id assigned by AUTO_INCREMENT to the row just inserted
+    private static int generatedId(PreparedStatement ps) throws SQLException {
+        try (ResultSet keys = ps.getGeneratedKeys()) {
+            if (keys.next()) return keys.getInt(1);
+        }
+        throw new SQLException("Database did not return the new record ID.");
+    }
+
+    // Keeps an already-loaded StockIndex in step with a committed insert
+    private static void indexAfterCommit(WarehouseHandle h, Product p, int id, int delta) {
+        UnitOfWork.afterCommit(() -> {
+            StockIndex idx = StockIndex.peek(h, p.getName());
+            if (idx != null) idx.put(id, delta);
+            InventoryValuation.recordCommitted(h, id);
+        });
     }
 
 
     // --------------------------------------------------------
-    // Helper: get current total quantity of a product (at the end of history)
+    // Helper: get current total quantity of a product (primary-key lookup in the current-stock table)
+    // and lock it until the transaction ends: striped lock in this process, row lock in the
+    // database. With create=true a missing row is created first so the read never locks a gap.
     // --------------------------------------------------------
-    private static int getCurrentTotalQuantity(String productName, Connection conn, String table) throws SQLException {
-        String sql = "SELECT total_quantity FROM " + table + " WHERE product=? ORDER BY id DESC LIMIT 1";
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+    private static int lockCurrentTotalQuantity(String productName, Connection conn, WarehouseHandle h,
+                                                boolean create) throws SQLException {
+        StockLocks.lock(h, productName);
+        if (create) applyStockChange(conn, h, productName, 0, 0, 0, 0.0);
+        int quantity = 0;
+        try (PreparedStatement ps = conn.prepareStatement(h.stockLock)) {
             ps.setString(1, productName);
             try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) return rs.getInt("total_quantity");
+                if (rs.next()) quantity = rs.getInt("quantity");
             }
         }
-        return 0;
+        checkLayout(conn, h);
+        return quantity;
     }
 
     // --------------------------------------------------------
     // Helper: get current total quantity of a product just before a specific ID
     // --------------------------------------------------------
-    private static int getCurrentTotalQuantityPreId(String productName, Connection conn, String table, int id) throws SQLException {
-        String sql = "SELECT total_quantity FROM " + table + " WHERE product=? AND id < ? ORDER BY id DESC LIMIT 1";
-        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+    private static int getCurrentTotalQuantityPreId(String productName, Connection conn, WarehouseHandle h, int id) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(h.latestTotalBefore)) {
             ps.setString(1, productName);
             ps.setInt(2, id);
             try (ResultSet rs = ps.executeQuery()) {
@@ -0,0 +1,170 @@
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * RecordColumns
+ * -------------------------------------------
+ * Compact in-memory copy of warehouse records, held column by column: one primitive
+ * array per field instead of a Product (plus boxed values, a LocalDate and three
+ * Strings) per row. Dates are stored as epoch days; product, supplier and customer
+ * names are dictionary-encoded, so each distinct name is kept once and a row only
+ * holds its int code. A row costs 48 bytes plus its share of the dictionary.
+ *
+ * ProductDAO fills it straight from a result set (readColumns); the records table
+ * models read cells from it. Not thread-safe: filled by one thread, then handed over.
+ */
+public class RecordColumns {
+
+    // Table columns of a record, in the order getValue() answers them
+    public static final String[] COLUMNS = {"ID", "Product", "Date", "Supplier", "Customer",
+            "Total_Quantity", "Import_Quantity", "Import_Price", "Export_Quantity", "Export_Price"};
+    private static final Class<?>[] COLUMN_CLASSES = {Integer.class, String.class, LocalDate.class, String.class,
+            String.class, Integer.class, Integer.class, Double.class, Integer.class, Double.class};
+
+    private int size = 0;
+    private int[] ids;
+    private int[] days;
+    private int[] products;
+    private int[] suppliers;
+    private int[] customers;
+    private int[] totalQuantities;
+    private int[] importQuantities;
+    private double[] importPrices;
+    private int[] exportQuantities;
+    private double[] exportPrices;
+
+    // Dictionary shared by the three name columns (code -1 = null)
+    private final List<String> names = new ArrayList<>();
+    private final HashMap<String, Integer> codes = new HashMap<>();
+
+    public RecordColumns(int capacity) {
+        int n = Math.max(capacity, 16);
+        ids = new int[n];
+        days = new int[n];
+        products = new int[n];
+        suppliers = new int[n];
+        customers = new int[n];
+        totalQuantities = new int[n];
+        importQuantities = new int[n];
+        importPrices = new double[n];
+        exportQuantities = new int[n];
+        exportPrices = new double[n];
+    }
+
+    // --------------------------------------------------------
+    // Appending
+    // --------------------------------------------------------
+    public void add(int id, String product, int epochDay, String supplier, String customer, int totalQuantity,
+                    int importQuantity, double importPrice, int exportQuantity, double exportPrice) {
+        if (size == ids.length) grow();
+        ids[size] = id;
+        days[size] = epochDay;
+        products[size] = code(product);
+        suppliers[size] = code(supplier);
+        customers[size] = code(customer);
+        totalQuantities[size] = totalQuantity;
+        importQuantities[size] = importQuantity;
+        importPrices[size] = importPrice;
+        exportQuantities[size] = exportQuantity;
+        exportPrices[size] = exportPrice;
+        size++;
+    }
+
+    public void add(Product p) {
+        add(p.getId(), p.getName(), (int) p.getDateAdded().toEpochDay(), p.getSupplier(), p.getCustomer(),
+                p.gettotQuantity(), p.getimpQuantity(), p.getimpPrice(), p.getexpQuantity(), p.getexpPrice());
+    }
+
+    private int code(String name) {
+        if (name == null) return -1;
+        Integer c = codes.get(name);
+        if (c == null) {
+            c = names.size();
+            names.add(name);
+            codes.put(name, c);
+        }
+        return c;
+    }
+
+    private void grow() {
+        int n = ids.length * 2;
+        ids = Arrays.copyOf(ids, n);
+        days = Arrays.copyOf(days, n);
+        products = Arrays.copyOf(products, n);
+        suppliers = Arrays.copyOf(suppliers, n);
+        customers = Arrays.copyOf(customers, n);
+        totalQuantities = Arrays.copyOf(totalQuantities, n);
+        importQuantities = Arrays.copyOf(importQuantities, n);
+        importPrices = Arrays.copyOf(importPrices, n);
+        exportQuantities = Arrays.copyOf(exportQuantities, n);
+        exportPrices = Arrays.copyOf(exportPrices, n);
+    }
+
+    // --------------------------------------------------------
+    // Reading
+    // --------------------------------------------------------
+    public int size() {
+        return size;
+    }
+
+    public int getId(int row) {
+        return ids[row];
+    }
+
+    public String getProduct(int row) {
+        return name(products[row]);
+    }
+
+    public LocalDate getDate(int row) {
+        return LocalDate.ofEpochDay(days[row]);
+    }
+
+    private String name(int code) {
+        return code < 0 ? null : names.get(code);
+    }
+
+    // Cell of the records table (COLUMNS order)
+    public Object getValue(int row, int col) {
+        switch (col) {
+            case 0: return ids[row];
+            case 1: return name(products[row]);
+            case 2: return LocalDate.ofEpochDay(days[row]);
+            case 3: return name(suppliers[row]);
+            case 4: return name(customers[row]);
+            case 5: return totalQuantities[row];
+            case 6: return importQuantities[row];
+            case 7: return importPrices[row];
+            case 8: return exportQuantities[row];
+            default: return exportPrices[row];
+        }
+    }
+
+    public static Class<?> getColumnClass(int col) {
+        return COLUMN_CLASSES[col];
+    }
+
+    public Product toProduct(int row) {
+        return new Product(ids[row], name(products[row]), name(suppliers[row]), name(customers[row]),
+                totalQuantities[row], importQuantities[row], importPrices[row],
+                exportQuantities[row], exportPrices[row], LocalDate.ofEpochDay(days[row]));
+    }
+
+    // Table cells of a single record (streamed exports and searches)
+    public static Object[] toRow(Product p) {
+        return new Object[]{
+                p.getId(),
+                p.getName(),
+                p.getDateAdded(),
+                p.getSupplier(),
+                p.getCustomer(),
+                p.gettotQuantity(),
+                p.getimpQuantity(),
+                p.getimpPrice(),
+                p.getexpQuantity(),
+                p.getexpPrice()
+        };
+    }
+}
@@ -0,0 +1,415 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * RecordImporter
+ * -------------------------------------------
+ * Streaming CSV/TSV import of warehouse records or future trades.
+ * The file layout is the one the GUI shows (and exportTable writes): a header
+ * row naming the columns, then one row per record. Columns are matched by header
+ * name, so order does not matter; ID and Total_Quantity are ignored because new
+ * ids are assigned and running totals are recomputed on insert.
+ *
+ * A worker thread reads and parses the file into batches handed over through a
+ * small bounded queue, so at most a few batches are ever in memory. The calling
+ * thread writes each batch with ProductDAO.addRecords / FutureTradeDAO.addFutureTrades.
+ *
+ *   - Rows that cannot be parsed, or that the DAO rejects (e.g. negative stock),
+ *     go to "<file>.rejects": the header, then each rejected line preceded by a
+ *     "# line N: reason" comment. Comment lines are skipped on import, so the
+ *     reject file can be corrected and imported as is.
+ *   - After every committed batch the number of data lines done is written to
+ *     "<file>.checkpoint"; an interrupted import can be resumed from there
+ *     (setStartLine). The checkpoint is removed when the import finishes.
+ */
+public class RecordImporter {
+
+    public enum Target {WAREHOUSE_RECORDS, FUTURE_TRADES}
+
+    public interface ProgressListener {
+        void onProgress(long linesDone, long bytesRead, long totalBytes, int imported, int rejected);
+    }
+
+    public static class ImportResult {
+        public long linesDone;
+        public int imported;
+        public int rejected;
+        public boolean cancelled;
+        public File rejectFile; // null when nothing was rejected
+    }
+
+    private static final int BATCH_SIZE = 1000;
+    private static final int QUEUE_DEPTH = 4;
+
+    private final File source;
+    private final Target target;
+    private final String warehouseName; // records target only
+    private long startLine = 0;
+    private ProgressListener listener;
+    private volatile boolean cancelled = false;
+
+    // One parsed batch: rows ready for the DAO plus the lines that failed to parse
+    private static class Chunk {
+        final List<Object> rows = new ArrayList<>();
+        final List<String[]> rowLines = new ArrayList<>(); // {line number, raw line} per row
+        final List<String[]> rejects = new ArrayList<>();  // {line number, raw line, reason}
+        long lastLine;
+        long bytesRead;
+        IOException error;
+        boolean end;
+    }
+
+    public RecordImporter(File source, Target target, String warehouseName) {
+        this.source = source;
+        this.target = target;
+        this.warehouseName = warehouseName;
+    }
+
+    // Skip this many data lines (e.g. the value of readCheckpoint)
+    public void setStartLine(long startLine) { this.startLine = Math.max(0, startLine); }
+
+    public void setProgressListener(ProgressListener listener) { this.listener = listener; }
+
+    // Stops after the batch being written; the checkpoint is kept for a later resume
+    public void cancel() { cancelled = true; }
+
+    // --------------------------------------------------------
+    // Checkpoint / reject file locations
+    // --------------------------------------------------------
+    public static File checkpointFile(File source) {
+        return new File(source.getPath() + ".checkpoint");
+    }
+
+    public static File rejectFile(File source) {
+        return new File(source.getPath() + ".rejects");
+    }
+
+    // Data lines committed by an earlier, unfinished import of this file (0 if none)
+    public static long readCheckpoint(File source) {
+        File f = checkpointFile(source);
+        if (!f.isFile()) return 0;
+        try {
+            return Long.parseLong(new String(Files.readAllBytes(f.toPath()), StandardCharsets.UTF_8).trim());
+        } catch (IOException | NumberFormatException ex) {
+            ex.printStackTrace();
+            return 0;
+        }
+    }
+
+    // --------------------------------------------------------
+    // Run the import on the calling thread (parsing runs on a worker thread)
+    // --------------------------------------------------------
+    public ImportResult run() throws IOException, SQLException {
+        WarehouseHandle h = target == Target.WAREHOUSE_RECORDS ? WarehouseHandle.of(warehouseName) : null;
+        ImportResult result = new ImportResult();
+        result.linesDone = startLine;
+        long totalBytes = source.length();
+
+        BlockingQueue<Chunk> queue = new ArrayBlockingQueue<>(QUEUE_DEPTH);
+        String[] header = new String[1];
+        Thread parser = new Thread(() -> parse(queue, header), "record-import-parser");
+        parser.setDaemon(true);
+        parser.start();
+
+        BufferedWriter rejects = null;
+        try {
+            while (true) {
+                Chunk chunk = queue.take();
+                if (chunk.error != null) throw chunk.error;
+
+                for (String[] r : chunk.rejects) {
+                    rejects = writeReject(rejects, header[0], r[0], r[1], r[2]);
+                    result.rejected++;
+                }
+                if (!chunk.rows.isEmpty()) {
+                    List<String[]> failed = write(h, chunk);
+                    for (String[] r : failed) rejects = writeReject(rejects, header[0], r[0], r[1], r[2]);
+                    result.rejected += failed.size();
+                    result.imported += chunk.rows.size() - failed.size();
+                }
+                if (rejects != null) rejects.flush();
+
+                if (chunk.lastLine > result.linesDone) {
+                    result.linesDone = chunk.lastLine;
+                    saveCheckpoint(result.linesDone);
+                }
+                if (listener != null) {
+                    listener.onProgress(result.linesDone, chunk.bytesRead, totalBytes, result.imported, result.rejected);
+                }
+                if (chunk.end) break;
+                if (cancelled) {
+                    result.cancelled = true;
+                    break;
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            result.cancelled = true;
+        } finally {
+            parser.interrupt();
+            if (rejects != null) rejects.close();
+        }
+
+        if (!result.cancelled) Files.deleteIfExists(checkpointFile(source).toPath());
+        if (result.rejected > 0) result.rejectFile = rejectFile(source);
+        return result;
+    }
+
+    // --------------------------------------------------------
+    // Writer side: one transaction per batch; if the batch is refused, retry it
+    // row by row so only the offending rows end up in the reject file
+    // --------------------------------------------------------
+    private List<String[]> write(WarehouseHandle h, Chunk chunk) throws SQLException {
+        try {
+            insert(h, chunk.rows);
+            return Collections.emptyList();
+        } catch (SQLException ex) {
+            if (isConnectionFailure(ex)) throw ex;
+        }
+
+        List<String[]> failed = new ArrayList<>();
+        for (int i = 0; i < chunk.rows.size(); i++) {
+            try {
+                insert(h, Collections.singletonList(chunk.rows.get(i)));
+            } catch (SQLException ex) {
+                if (isConnectionFailure(ex)) throw ex;
+                String[] line = chunk.rowLines.get(i);
+                failed.add(new String[]{line[0], line[1], ex.getMessage()});
+            }
+        }
+        return failed;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void insert(WarehouseHandle h, List<?> rows) throws SQLException {
+        if (target == Target.WAREHOUSE_RECORDS) {
+            ProductDAO.addRecords(h, (List<Product>) rows);
+        } else {
+            FutureTradeDAO.addFutureTrades((List<FutureTrade>) rows);
+        }
+    }
+
+    // SQLState class 08 = connection exception: nothing row-specific, so abort instead of rejecting
+    private static boolean isConnectionFailure(SQLException ex) {
+        return ex.getSQLState() != null && ex.getSQLState().startsWith("08");
+    }
+
+    private BufferedWriter writeReject(BufferedWriter out, String header, String line, String raw, String reason) throws IOException {
+        if (out == null) {
+            File f = rejectFile(source);
+            boolean append = startLine > 0 && f.isFile(); // resumed import: keep earlier rejects
+            out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(f, append), StandardCharsets.UTF_8));
+            if (!append && header != null) {
+                out.write(header);
+                out.newLine();
+            }
+        }
+        out.write("# line " + line + ": " + (reason == null ? "rejected" : reason.replace('\n', ' ')));
+        out.newLine();
+        out.write(raw);
+        out.newLine();
+        return out;
+    }
+
+    private void saveCheckpoint(long lines) throws IOException {
+        Files.write(checkpointFile(source).toPath(), Long.toString(lines).getBytes(StandardCharsets.UTF_8));
+    }
+
+    // ============================================================
+    // Parser side (worker thread)
+    // ============================================================
+    private void parse(BlockingQueue<Chunk> queue, String[] headerOut) {
+        Chunk chunk = new Chunk();
+        try (CountingInputStream in = new CountingInputStream(new FileInputStream(source));
+             BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+
+            String headerLine = reader.readLine();
+            while (headerLine != null && (headerLine.trim().isEmpty() || headerLine.startsWith("#"))) {
+                headerLine = reader.readLine();
+            }
+            if (headerLine == null) {
+                chunk.end = true;
+                queue.put(chunk);
+                return;
+            }
+            if (headerLine.startsWith("\uFEFF")) headerLine = headerLine.substring(1);
+            headerOut[0] = headerLine;
+            char delimiter = headerLine.indexOf('\t') >= 0 ? '\t' : ',';
+            Map<String, Integer> columns = mapColumns(split(headerLine, delimiter));
+            checkRequiredColumns(columns);
+
+            long lineNo = 0; // data lines, the unit of startLine and the checkpoint
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty() || line.startsWith("#")) continue;
+                lineNo++;
+                if (lineNo <= startLine) continue;
+
+                try {
+                    chunk.rows.add(parseRow(split(line, delimiter), columns));
+                    chunk.rowLines.add(new String[]{Long.toString(lineNo), line});
+                } catch (IllegalArgumentException | DateTimeParseException ex) {
+                    chunk.rejects.add(new String[]{Long.toString(lineNo), line, ex.getMessage()});
+                }
+                chunk.lastLine = lineNo;
+
+                if (chunk.rows.size() + chunk.rejects.size() >= BATCH_SIZE) {
+                    chunk.bytesRead = in.count;
+                    queue.put(chunk);
+                    chunk = new Chunk();
+                }
+            }
+            chunk.bytesRead = in.count;
+            chunk.end = true;
+            queue.put(chunk);
+        } catch (InterruptedException ex) {
+            // Writer stopped (cancelled or failed): nothing left to hand over
+        } catch (IOException ex) {
+            Chunk failed = new Chunk();
+            failed.error = ex;
+            try {
+                queue.clear();
+                queue.put(failed);
+            } catch (InterruptedException ignored) {
+                // Writer already gone
+            }
+        }
+    }
+
+    private Object parseRow(String[] f, Map<String, Integer> columns) {
+        String product = text(f, columns, "product");
+        if (product.isEmpty()) throw new IllegalArgumentException("Product is empty.");
+        LocalDate date = LocalDate.parse(text(f, columns, "date"));
+        String supplier = text(f, columns, "supplier");
+        String customer = text(f, columns, "customer");
+        int impQty = intValue(f, columns, "importquantity");
+        double impPrice = doubleValue(f, columns, "importprice");
+        int expQty = intValue(f, columns, "exportquantity");
+        double expPrice = doubleValue(f, columns, "exportprice");
+
+        if (impQty < 0 || expQty < 0) throw new IllegalArgumentException("Quantities cannot be negative.");
+        if (impQty == 0 && expQty == 0) throw new IllegalArgumentException("Row has neither an import nor an export quantity.");
+
+        if (target == Target.WAREHOUSE_RECORDS) {
+            return new Product(0, product, supplier, customer, 0, impQty, impPrice, expQty, expPrice, date);
+        }
+        String warehouse = text(f, columns, "warehousename");
+        if (warehouse.isEmpty()) throw new IllegalArgumentException("Warehouse_Name is empty.");
+        return new FutureTrade(0, warehouse, product, supplier, customer, impQty, impPrice, expQty, expPrice, date);
+    }
+
+    // --------------------------------------------------------
+    // Column handling: header names are compared without case, spaces or underscores,
+    // so both the GUI headers (Import_Quantity) and column names (import_quantity) work
+    // --------------------------------------------------------
+    private static Map<String, Integer> mapColumns(String[] header) {
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < header.length; i++) {
+            columns.putIfAbsent(normalize(header[i]), i);
+        }
+        return columns;
+    }
+
+    private void checkRequiredColumns(Map<String, Integer> columns) throws IOException {
+        List<String> required = new ArrayList<>(List.of("product", "date"));
+        if (target == Target.FUTURE_TRADES) required.add("warehousename");
+        for (String c : required) {
+            if (!columns.containsKey(c)) throw new IOException("Missing column in header: " + c);
+        }
+        if (!columns.containsKey("importquantity") && !columns.containsKey("exportquantity")) {
+            throw new IOException("Header needs an Import_Quantity or Export_Quantity column.");
+        }
+    }
+
+    private static String normalize(String name) {
+        return name.trim().replace("_", "").replace(" ", "").toLowerCase(Locale.ROOT);
+    }
+
+    private static String text(String[] f, Map<String, Integer> columns, String column) {
+        Integer i = columns.get(column);
+        return i == null || i >= f.length ? "" : f[i].trim();
+    }
+
+    private static int intValue(String[] f, Map<String, Integer> columns, String column) {
+        String s = text(f, columns, column);
+        try {
+            return s.isEmpty() ? 0 : Integer.parseInt(s);
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Invalid " + column + ": " + s);
+        }
+    }
+
+    private static double doubleValue(String[] f, Map<String, Integer> columns, String column) {
+        String s = text(f, columns, column);
+        try {
+            return s.isEmpty() ? 0.0 : Double.parseDouble(s);
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Invalid " + column + ": " + s);
+        }
+    }
+
+    // Splits one line; CSV fields may be quoted ("a, b" and "" for a literal quote)
+    static String[] split(String line, char delimiter) {
+        if (delimiter == '\t' || line.indexOf('"') < 0) {
+            return line.split(delimiter == '\t' ? "\t" : ",", -1);
+        }
+        List<String> fields = new ArrayList<>();
+        StringBuilder sb = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    sb.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    sb.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == delimiter) {
+                fields.add(sb.toString());
+                sb.setLength(0);
+            } else {
+                sb.append(c);
+            }
+        }
+        fields.add(sb.toString());
+        return fields.toArray(new String[0]);
+    }
+
+    // Byte counter under the reader, for progress against the file size
+    private static class CountingInputStream extends FilterInputStream {
+        volatile long count = 0;
+
+        CountingInputStream(InputStream in) { super(in); }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) count += n;
+            return n;
+        }
+    }
+}
@@ -0,0 +1,191 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * RecordsStoreMigrator
+ * -------------------------------------------
+ * Moves warehouses of the logged-in user from their own records/stock tables
+ * (WarehouseHandle.Layout.TABLE) into the shared, warehouse-partitioned
+ * warehouse_records / warehouse_stock tables (Layout.UNIFIED), one warehouse at a time.
+ *
+ * The application stays usable while it runs. Rows are first copied in committed
+ * chunks in id order (ids are kept, so history order and running totals carry over)
+ * while writers carry on; reads keep using the old table until the switch, and every
+ * other warehouse is untouched. The copy is then brought up to date in one short
+ * transaction that holds the warehouse's writers off in every process: the in-process
+ * gate (StockLocks.lockWarehouseExclusive) plus a row lock on every current-stock row of
+ * the old tables, which each ProductDAO write locks before it changes anything. Inside
+ * it, copies of rows changed or deleted since they were copied are replaced, missing rows
+ * are added, the copy is verified and the warehouse is switched. A write that waited on
+ * those locks re-reads the layout (ProductDAO.checkLayout) and fails instead of writing
+ * to the retired tables, which are dropped last - after checking nothing was added to
+ * them. An interrupted run leaves the warehouse on its old tables; the partial copy is
+ * discarded by the next run.
+ */
+public class RecordsStoreMigrator {
+
+    private static final int COPY_CHUNK = 5000;
+
+    private static final String RECORD_COLUMNS = "id, product, supplier, customer, total_quantity, "
+            + "import_quantity, import_price, export_quantity, export_price, date";
+    private static final String STOCK_COLUMNS = "product, quantity, last_record_id, imported_quantity, imported_value";
+
+    public interface ProgressListener {
+        void onProgress(String warehouseName, long rowsCopied, long rowsTotal);
+    }
+
+    // --------------------------------------------------------
+    // Move every warehouse of the current user still on its own tables
+    // --------------------------------------------------------
+    public static int migrateAll(ProgressListener listener) throws SQLException {
+        int moved = 0;
+        List<WarehouseDAO.WarehouseInfo> warehouses = WarehouseDAO.getAllWarehouses();
+        for (WarehouseDAO.WarehouseInfo w : warehouses) {
+            if (migrate(w.name, listener)) moved++;
+        }
+        return moved;
+    }
+
+    // Returns false if the warehouse already uses the unified store
+    public static boolean migrate(String warehouseName, ProgressListener listener) throws SQLException {
+        WarehouseHandle h = WarehouseHandle.of(warehouseName);
+        if (h.getLayout() == WarehouseHandle.Layout.UNIFIED) return false;
+        if (h.getWarehouseId() == 0) throw new SQLException("Warehouse not found: " + warehouseName);
+
+        int wid = h.getWarehouseId();
+        String records = h.getTable();
+        String stock = h.getStockTable();
+        String unifiedOfWarehouse = " WHERE warehouse_id=" + wid;
+
+        try (Connection conn = DBConnection.getPooledConnection()) {
+            // 1. Discard a partial copy left by an interrupted run
+            deleteWarehouseRows(conn, wid);
+
+            // 2. Records, in committed chunks of ascending id (writers keep going meanwhile)
+            long estimate = count(conn, "SELECT COUNT(*) FROM " + records);
+            String copySql = "INSERT INTO " + WarehouseHandle.UNIFIED_RECORDS + " (warehouse_id, " + RECORD_COLUMNS + ") "
+                    + "SELECT " + wid + ", " + RECORD_COLUMNS + " FROM " + records
+                    + " WHERE id > ? ORDER BY id ASC LIMIT " + COPY_CHUNK;
+            long copied = 0;
+            int lastId = 0;
+            while (true) {
+                int n;
+                try (PreparedStatement ps = conn.prepareStatement(copySql)) {
+                    ps.setInt(1, lastId);
+                    n = ps.executeUpdate();
+                }
+                if (n == 0) break;
+                copied += n;
+                lastId = (int) count(conn, "SELECT MAX(id) FROM " + WarehouseHandle.UNIFIED_RECORDS + unifiedOfWarehouse);
+                if (listener != null) listener.onProgress(warehouseName, copied, Math.max(copied, estimate));
+            }
+
+            // 3. Catch up and switch, with every writer of the warehouse held off
+            long total;
+            long maxId;
+            Lock exclusive = StockLocks.lockWarehouseExclusive(h);
+            try {
+                conn.setAutoCommit(false);
+                try {
+                    // Lock every current-stock row (and the gaps between them): each write locks its row first
+                    try (Statement st = conn.createStatement();
+                         ResultSet rs = st.executeQuery("SELECT product FROM " + stock + " FOR UPDATE")) {
+                        while (rs.next()) rs.getString(1);
+                    }
+                    try (Statement st = conn.createStatement()) {
+                        // Copies of rows changed or deleted since they were copied
+                        st.executeUpdate("DELETE FROM " + WarehouseHandle.UNIFIED_RECORDS + unifiedOfWarehouse
+                                + " AND id <= " + lastId + " AND NOT EXISTS (SELECT 1 FROM " + records + " r"
+                                + " WHERE r.id = " + WarehouseHandle.UNIFIED_RECORDS + ".id"
+                                + sameRecord("r", WarehouseHandle.UNIFIED_RECORDS) + ")");
+                        // Rows added (or re-copied) since
+                        st.executeUpdate("INSERT INTO " + WarehouseHandle.UNIFIED_RECORDS + " (warehouse_id, " + RECORD_COLUMNS + ") "
+                                + "SELECT " + wid + ", " + RECORD_COLUMNS + " FROM " + records + " r"
+                                + " WHERE NOT EXISTS (SELECT 1 FROM " + WarehouseHandle.UNIFIED_RECORDS + " u"
+                                + " WHERE u.warehouse_id=" + wid + " AND u.id = r.id)");
+                        // Current-stock rows
+                        st.executeUpdate("DELETE FROM " + WarehouseHandle.UNIFIED_STOCK + unifiedOfWarehouse);
+                        st.executeUpdate("INSERT INTO " + WarehouseHandle.UNIFIED_STOCK + " (warehouse_id, " + STOCK_COLUMNS + ") "
+                                + "SELECT " + wid + ", " + STOCK_COLUMNS + " FROM " + stock);
+                    }
+
+                    // 4. Verify before switching: same rows, same net stock
+                    total = count(conn, "SELECT COUNT(*) FROM " + records);
+                    maxId = count(conn, "SELECT COALESCE(MAX(id), 0) FROM " + records);
+                    String net = "SELECT COALESCE(SUM(import_quantity - export_quantity), 0) FROM ";
+                    if (count(conn, "SELECT COUNT(*) FROM " + WarehouseHandle.UNIFIED_RECORDS + unifiedOfWarehouse) != total
+                            || count(conn, net + WarehouseHandle.UNIFIED_RECORDS + unifiedOfWarehouse)
+                            != count(conn, net + records)) {
+                        throw new SQLException("Copy of warehouse " + warehouseName + " does not match its table; nothing was switched.");
+                    }
+
+                    // 5. Switch (releases the held-off writers, which then see the new layout)
+                    try (PreparedStatement ps = conn.prepareStatement(
+                            "UPDATE warehouses SET records_layout=? WHERE warehouse_id=?")) {
+                        ps.setString(1, WarehouseHandle.Layout.UNIFIED.name());
+                        ps.setInt(2, wid);
+                        ps.executeUpdate();
+                    }
+                    conn.commit();
+                } catch (SQLException ex) {
+                    conn.rollback();
+                    conn.setAutoCommit(true);
+                    deleteWarehouseRows(conn, wid);
+                    throw ex;
+                } finally {
+                    conn.setAutoCommit(true);
+                }
+                WarehouseHandle.invalidate(warehouseName);
+            } finally {
+                exclusive.unlock();
+            }
+            if (listener != null) listener.onProgress(warehouseName, total, total);
+
+            // 6. Drop the old tables, unless something still wrote to them after the switch
+            if (count(conn, "SELECT COUNT(*) FROM " + records) != total
+                    || count(conn, "SELECT COALESCE(MAX(id), 0) FROM " + records) != maxId) {
+                throw new SQLException("Table " + records + " changed after warehouse " + warehouseName
+                        + " was switched; it was kept for inspection.");
+            }
+            try (Statement st = conn.createStatement()) {
+                st.execute("DROP TABLE IF EXISTS " + records);
+                st.execute("DROP TABLE IF EXISTS " + stock);
+            }
+            return true;
+        }
+    }
+
+    // Column-by-column equality of a record and its copy (names may be NULL)
+    private static String sameRecord(String a, String b) {
+        StringBuilder sb = new StringBuilder();
+        for (String column : RECORD_COLUMNS.split(", ")) {
+            if (column.equals("id")) continue;
+            if (column.equals("supplier") || column.equals("customer")) {
+                sb.append(" AND COALESCE(").append(a).append('.').append(column).append(", '') = COALESCE(")
+                        .append(b).append('.').append(column).append(", '')");
+            } else {
+                sb.append(" AND ").append(a).append('.').append(column).append(" = ").append(b).append('.').append(column);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static void deleteWarehouseRows(Connection conn, int wid) throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            st.executeUpdate("DELETE FROM " + WarehouseHandle.UNIFIED_RECORDS + " WHERE warehouse_id=" + wid);
+            st.executeUpdate("DELETE FROM " + WarehouseHandle.UNIFIED_STOCK + " WHERE warehouse_id=" + wid);
+        }
+    }
+
+    private static long count(Connection conn, String sql) throws SQLException {
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery(sql)) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+}
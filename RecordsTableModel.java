@@ -0,0 +1,57 @@
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * RecordsTableModel
+ * -------------------------------------------
+ * Read-only table model over records held in a RecordColumns (a whole warehouse of
+ * moderate size, or the matches of a search). Cells are produced from the column
+ * arrays when the table asks for them; nothing is copied into per-row objects.
+ * Column classes are typed, so sorting compares numbers and dates, not their text.
+ *
+ * Event dispatch thread only.
+ */
+public class RecordsTableModel extends AbstractTableModel {
+
+    private static final long serialVersionUID = 1L;
+    private final RecordColumns records;
+
+    public RecordsTableModel(RecordColumns records) {
+        this.records = records;
+    }
+
+    // Appends a record (search results arriving while the search runs)
+    public void add(Product p) {
+        records.add(p);
+        fireTableRowsInserted(records.size() - 1, records.size() - 1);
+    }
+
+    @Override
+    public int getRowCount() {
+        return records.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return RecordColumns.COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return RecordColumns.COLUMNS[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return RecordColumns.getColumnClass(column);
+    }
+
+    @Override
+    public boolean isCellEditable(int row, int col) {
+        return false;
+    }
+
+    @Override
+    public Object getValueAt(int row, int col) {
+        return records.getValue(row, col);
+    }
+}
@@ -0,0 +1,371 @@
+import java.sql.*;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * RollupDAO
+ * -------------------------------------------
+ * Daily movement summary per warehouse, product and day (product_daily_rollup):
+ * imported/exported quantity, import/export value and the closing stock of the day.
+ * ProductDAO keeps it current inside each write's transaction (under the product's
+ * stock lock), so week/month/year summaries read the rollup rows instead of the
+ * records table. rebuild() recomputes a warehouse's rows from its records.
+ *
+ * closing_stock is the product's stock after every record dated on or before that day.
+ */
+public class RollupDAO {
+
+    public static final String TABLE = "product_daily_rollup";
+
+    public enum Period {DAY, WEEK, MONTH, YEAR}
+
+    // -----------------------------
+    // Movements of one product over one period
+    // -----------------------------
+    public static class Summary {
+        public String product;
+        public LocalDate periodStart;
+        public long importedQuantity;
+        public long exportedQuantity;
+        public double importValue;
+        public double exportValue;
+        public long closingStock;
+
+        public Summary(String product, LocalDate periodStart) {
+            this.product = product;
+            this.periodStart = periodStart;
+        }
+    }
+
+    // Net change of one (product, day) cell collected from one or more records
+    static class Change {
+        final String product;
+        final LocalDate date;
+        long importedQuantity;
+        long exportedQuantity;
+        double importValue;
+        double exportValue;
+
+        Change(String product, LocalDate date) {
+            this.product = product;
+            this.date = date;
+        }
+    }
+
+    private static final int UPSERT_CHUNK = 500;
+
+    private static final String LAST_DAY_SQL = "SELECT rollup_date, closing_stock FROM " + TABLE
+            + " WHERE warehouse_id=? AND product=? AND rollup_date <= ? ORDER BY rollup_date DESC LIMIT 1";
+    private static final String SHIFT_LATER_SQL = "UPDATE " + TABLE
+            + " SET closing_stock = closing_stock + ? WHERE warehouse_id=? AND product=? AND rollup_date > ?";
+
+    // Multi-row upsert of day rows, cached per row count (same shape as WarehouseHandle.stockUpsert)
+    private static final ConcurrentHashMap<Integer, String> UPSERT_SQL = new ConcurrentHashMap<>();
+
+    // ============================================================
+    // Maintenance (inside ProductDAO's transaction)
+    // ============================================================
+
+    // Adds (sign = +1) or removes (sign = -1) a record's movements in the collected changes
+    static void collect(Map<String, Change> changes, Product p, int sign) {
+        collect(changes, p.getName(), p.getDateAdded(), p.getimpQuantity(), p.getimpPrice(),
+                p.getexpQuantity(), p.getexpPrice(), sign);
+    }
+
+    static void collect(Map<String, Change> changes, String product, LocalDate date, int importQuantity,
+                        double importPrice, int exportQuantity, double exportPrice, int sign) {
+        String key = product.toLowerCase() + '\u0000' + date; // products compare case-insensitively
+        Change c = changes.computeIfAbsent(key, k -> new Change(product, date));
+        c.importedQuantity += sign * importQuantity;
+        c.exportedQuantity += sign * exportQuantity;
+        c.importValue += sign * importQuantity * importPrice;
+        c.exportValue += sign * exportQuantity * exportPrice;
+    }
+
+    // One new record (import and/or export movement)
+    static void recordAdded(Connection conn, WarehouseHandle h, String product, LocalDate date, int importQuantity,
+                            double importPrice, int exportQuantity, double exportPrice) throws SQLException {
+        Map<String, Change> changes = new TreeMap<>();
+        collect(changes, product, date, importQuantity, importPrice, exportQuantity, exportPrice, +1);
+        apply(conn, h, changes);
+    }
+
+    // Applies collected changes. Called after the caller has applied the same movements to the
+    // product's current-stock row (locked until commit), which gives the stock the changes start from.
+    static void apply(Connection conn, WarehouseHandle h, Map<String, Change> changes) throws SQLException {
+        int wid = h.getWarehouseId();
+        if (wid == 0) return; // warehouse without a warehouses row: nothing to summarize under
+
+        // (product, day) order: products compare case-insensitively, days in ascending order
+        List<Change> cells = new ArrayList<>();
+        for (Change c : new TreeMap<>(changes).values()) {
+            if (c.importedQuantity != 0 || c.exportedQuantity != 0 || c.importValue != 0 || c.exportValue != 0) cells.add(c);
+        }
+        if (cells.isEmpty()) return;
+
+        // 1. Stock of each product before these changes: its locked current-stock row minus them
+        Map<String, Long> changed = new HashMap<>();
+        List<String> products = new ArrayList<>();
+        for (Change c : cells) {
+            if (!changed.containsKey(key(c.product))) products.add(c.product);
+            changed.merge(key(c.product), delta(c), Long::sum);
+        }
+        Map<String, Long> current = new HashMap<>();
+        for (int from = 0; from < products.size(); from += UPSERT_CHUNK) {
+            int to = Math.min(from + UPSERT_CHUNK, products.size());
+            try (PreparedStatement ps = conn.prepareStatement(h.stockQuantitiesForUpdate(to - from))) {
+                for (int i = from; i < to; i++) ps.setString(i - from + 1, products.get(i));
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) current.put(key(rs.getString(1)), rs.getLong(2));
+                }
+            }
+        }
+
+        // 2. A back-dated movement also moves the closing stock of every later day (one batch)
+        int[] laterDays = new int[cells.size()];
+        Arrays.fill(laterDays, -1); // unknown
+        List<Integer> shifted = new ArrayList<>();
+        try (PreparedStatement ps = conn.prepareStatement(SHIFT_LATER_SQL)) {
+            for (int i = 0; i < cells.size(); i++) {
+                Change c = cells.get(i);
+                if (delta(c) == 0) continue;
+                ps.setLong(1, delta(c));
+                ps.setInt(2, wid);
+                ps.setString(3, c.product);
+                ps.setDate(4, Date.valueOf(c.date));
+                ps.addBatch();
+                shifted.add(i);
+            }
+            if (!shifted.isEmpty()) {
+                int[] counts = ps.executeBatch();
+                for (int k = 0; k < counts.length && k < shifted.size(); k++) {
+                    if (counts[k] >= 0) laterDays[shifted.get(k)] = counts[k];
+                }
+            }
+        }
+
+        // 3. Closing stock of each day: its stock before the changes plus the product's changes up to that day.
+        //    Without later days that is the stock before the changes; otherwise (rare: a new
+        //    back-dated day) it comes from the closest earlier day.
+        long[] closing = new long[cells.size()];
+        String product = null;
+        long upToDay = 0; // the product's changes dated up to the current cell
+        for (int i = 0; i < cells.size(); i++) {
+            Change c = cells.get(i);
+            if (!key(c.product).equals(product)) {
+                product = key(c.product);
+                upToDay = 0;
+            }
+            upToDay += delta(c);
+            Long stock = current.get(product);
+            if (laterDays[i] == 0 && stock != null) {
+                closing[i] = stock - changed.get(product) + upToDay;
+            } else {
+                closing[i] = closingFromEarlierDay(conn, wid, cells, i);
+            }
+        }
+
+        // 4. One multi-row upsert of the day rows
+        for (int from = 0; from < cells.size(); from += UPSERT_CHUNK) {
+            int to = Math.min(from + UPSERT_CHUNK, cells.size());
+            try (PreparedStatement ps = conn.prepareStatement(upsertSql(to - from))) {
+                int k = 1;
+                for (int i = from; i < to; i++) {
+                    Change c = cells.get(i);
+                    ps.setInt(k++, wid);
+                    ps.setString(k++, c.product);
+                    ps.setDate(k++, Date.valueOf(c.date));
+                    ps.setLong(k++, c.importedQuantity);
+                    ps.setLong(k++, c.exportedQuantity);
+                    ps.setDouble(k++, c.importValue);
+                    ps.setDouble(k++, c.exportValue);
+                    ps.setLong(k++, closing[i]);
+                }
+                ps.executeUpdate();
+            }
+        }
+    }
+
+    // Closing stock of a day that may have no row yet: the closest earlier day's row (already
+    // shifted by the changes before it) plus the changes from that day on. Unused if the day exists.
+    private static long closingFromEarlierDay(Connection conn, int wid, List<Change> cells, int index) throws SQLException {
+        Change c = cells.get(index);
+        LocalDate earlierDay = null;
+        long earlierClosing = 0;
+        try (PreparedStatement ps = conn.prepareStatement(LAST_DAY_SQL)) {
+            ps.setInt(1, wid);
+            ps.setString(2, c.product);
+            ps.setDate(3, Date.valueOf(c.date));
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    earlierDay = rs.getDate(1).toLocalDate();
+                    earlierClosing = rs.getLong(2);
+                }
+            }
+        }
+        if (c.date.equals(earlierDay)) return 0; // the day exists: the upsert adds to its closing stock
+        long closing = earlierClosing;
+        for (int i = index; i >= 0 && key(cells.get(i).product).equals(key(c.product)); i--) {
+            if (earlierDay != null && cells.get(i).date.isBefore(earlierDay)) break;
+            closing += delta(cells.get(i));
+        }
+        return closing;
+    }
+
+    private static String upsertSql(int rows) {
+        return UPSERT_SQL.computeIfAbsent(rows, n -> {
+            StringBuilder sb = new StringBuilder("INSERT INTO ").append(TABLE)
+                    .append(" (warehouse_id, product, rollup_date, imported_quantity, exported_quantity,")
+                    .append(" import_value, export_value, closing_stock) VALUES ");
+            for (int i = 0; i < n; i++) sb.append(i == 0 ? "" : ", ").append("(?, ?, ?, ?, ?, ?, ?, ?)");
+            return sb.append(" ON DUPLICATE KEY UPDATE")
+                    .append(" imported_quantity = imported_quantity + VALUES(imported_quantity),")
+                    .append(" exported_quantity = exported_quantity + VALUES(exported_quantity),")
+                    .append(" import_value = import_value + VALUES(import_value),")
+                    .append(" export_value = export_value + VALUES(export_value),")
+                    .append(" closing_stock = closing_stock + VALUES(imported_quantity) - VALUES(exported_quantity)")
+                    .toString();
+        });
+    }
+
+    private static long delta(Change c) {
+        return c.importedQuantity - c.exportedQuantity;
+    }
+
+    // Products compare case-insensitively
+    private static String key(String product) {
+        return product.toLowerCase();
+    }
+
+    // ============================================================
+    // Rebuild from the records (also used by the v6 schema migration)
+    // ============================================================
+    public static void rebuild(WarehouseHandle h) throws SQLException {
+        if (h.getWarehouseId() == 0) throw new SQLException("Warehouse not found: " + h.getWarehouseName());
+        Lock exclusive = StockLocks.lockWarehouseExclusive(h); // no record writes while recomputing
+        try (UnitOfWork uow = UnitOfWork.begin()) {
+            Connection conn = uow.getConnection();
+            try (PreparedStatement ps = conn.prepareStatement("DELETE FROM " + TABLE + " WHERE warehouse_id=?")) {
+                ps.setInt(1, h.getWarehouseId());
+                ps.executeUpdate();
+            }
+            try (Statement st = conn.createStatement()) {
+                st.executeUpdate(populateSql(h.getWarehouseId(), h.getTable(), h.getLayout() == WarehouseHandle.Layout.UNIFIED));
+            }
+            uow.commit();
+        } finally {
+            exclusive.unlock();
+        }
+    }
+
+    // INSERT ... SELECT summarizing one warehouse's records per product and day
+    static String populateSql(int warehouseId, String recordsTable, boolean unified) {
+        return "INSERT INTO " + TABLE
+                + " (warehouse_id, product, rollup_date, imported_quantity, exported_quantity, import_value, export_value, closing_stock)"
+                + " SELECT " + warehouseId + ", product, date, SUM(import_quantity), SUM(export_quantity),"
+                + " SUM(import_quantity * import_price), SUM(export_quantity * export_price),"
+                + " SUM(SUM(import_quantity - export_quantity)) OVER (PARTITION BY product ORDER BY date)"
+                + " FROM " + recordsTable + (unified ? " WHERE warehouse_id=" + warehouseId : "")
+                + " GROUP BY product, date";
+    }
+
+    static void deleteWarehouse(Connection conn, int warehouseId) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("DELETE FROM " + TABLE + " WHERE warehouse_id=?")) {
+            ps.setInt(1, warehouseId);
+            ps.executeUpdate();
+        }
+    }
+
+    // ============================================================
+    // Queries
+    // ============================================================
+
+    // Movements per product and period between two dates (inclusive); product null = all products
+    public static List<Summary> summarize(WarehouseHandle h, String product, LocalDate from, LocalDate to,
+                                          Period period) throws SQLException {
+        String sql = "SELECT product, rollup_date, imported_quantity, exported_quantity, import_value, export_value, closing_stock"
+                + " FROM " + TABLE + " WHERE warehouse_id=?" + (product != null ? " AND product=?" : "")
+                + " AND rollup_date >= ? AND rollup_date <= ? ORDER BY product, rollup_date";
+        List<Summary> list = new ArrayList<>();
+
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            int i = 1;
+            ps.setInt(i++, h.getWarehouseId());
+            if (product != null) ps.setString(i++, product);
+            ps.setDate(i++, Date.valueOf(from));
+            ps.setDate(i, Date.valueOf(to));
+
+            Summary current = null;
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    String name = rs.getString(1);
+                    LocalDate start = periodStart(rs.getDate(2).toLocalDate(), period);
+                    if (current == null || !current.product.equalsIgnoreCase(name) || !current.periodStart.equals(start)) {
+                        current = new Summary(name, start);
+                        list.add(current);
+                    }
+                    current.importedQuantity += rs.getLong(3);
+                    current.exportedQuantity += rs.getLong(4);
+                    current.importValue += rs.getDouble(5);
+                    current.exportValue += rs.getDouble(6);
+                    current.closingStock = rs.getLong(7); // last day of the period seen so far
+                }
+            }
+        }
+        return list;
+    }
+
+    // Stock of one product at the end of a date: closing stock of its last rollup day on or before it
+    public static long stockAsOf(WarehouseHandle h, String product, LocalDate date) throws SQLException {
+        String sql = "SELECT closing_stock FROM " + TABLE
+                + " WHERE warehouse_id=? AND product=? AND rollup_date <= ? ORDER BY rollup_date DESC LIMIT 1";
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, h.getWarehouseId());
+            ps.setString(2, product);
+            ps.setDate(3, Date.valueOf(date));
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0;
+            }
+        }
+    }
+
+    // Stock of every product with movements up to the date (product order)
+    public static Map<String, Long> stockAsOf(WarehouseHandle h, LocalDate date) throws SQLException {
+        String sql = "SELECT r.product, r.closing_stock FROM " + TABLE + " r JOIN ("
+                + "SELECT product, MAX(rollup_date) AS last_day FROM " + TABLE
+                + " WHERE warehouse_id=? AND rollup_date <= ? GROUP BY product) d"
+                + " ON r.product = d.product AND r.rollup_date = d.last_day"
+                + " WHERE r.warehouse_id=? ORDER BY r.product";
+        Map<String, Long> stock = new LinkedHashMap<>();
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, h.getWarehouseId());
+            ps.setDate(2, Date.valueOf(date));
+            ps.setInt(3, h.getWarehouseId());
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) stock.put(rs.getString(1), rs.getLong(2));
+            }
+        }
+        return stock;
+    }
+
+    public static LocalDate periodStart(LocalDate date, Period period) {
+        switch (period) {
+            case WEEK: return date.with(DayOfWeek.MONDAY);
+            case MONTH: return date.withDayOfMonth(1);
+            case YEAR: return date.withDayOfYear(1);
+            default: return date;
+        }
+    }
+}
@@ -0,0 +1,405 @@
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * SchemaBootstrapper
+ * -------------------------------------------
+ * Versioned schema provisioning, run once at startup (DBConnection.useStorageEngine).
+ * Applied versions are recorded in schema_version; every migration is idempotent
+ * because DDL is not transactional on MySQL and a run may be interrupted.
+ *
+ * Also owns the DDL of the per-warehouse tables so new warehouses are created
+ * with the same columns and indexes the migrations retrofit onto old ones.
+ *
+ * Two clients starting at once may both run a migration; the second one's
+ * schema_version insert then hits the primary key and counts as already applied.
+ */
+public class SchemaBootstrapper {
+
+    private static final Logger LOG = Logger.getLogger(SchemaBootstrapper.class.getName());
+
+    private interface Migration {
+        void apply(Connection conn, StorageEngine engine) throws SQLException;
+    }
+
+    // Ordered list of migrations: index + 1 = schema version
+    private static final List<Migration> MIGRATIONS = Arrays.asList(
+            SchemaBootstrapper::createBaseTables,        // 1
+            SchemaBootstrapper::indexFutureTrades,       // 2
+            SchemaBootstrapper::dropLegacyTrigger,       // 3
+            SchemaBootstrapper::retrofitWarehouseTables, // 4
+            SchemaBootstrapper::createUnifiedStore,      // 5
+            SchemaBootstrapper::createDailyRollup,       // 6
+            SchemaBootstrapper::indexFutureTradesByWarehouse, // 7
+            SchemaBootstrapper::createFutureTradeSequences,  // 8
+            SchemaBootstrapper::ignoreCaseOfProductNames     // 9
+    );
+
+    // --------------------------------------------------------
+    // Bring the database up to the latest version
+    // --------------------------------------------------------
+    public static void migrate(Connection conn, StorageEngine engine) throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            st.execute("CREATE TABLE IF NOT EXISTS schema_version ("
+                    + "version INT PRIMARY KEY,"
+                    + "applied_at TIMESTAMP NOT NULL)");
+        }
+
+        int current = 0;
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT COALESCE(MAX(version), 0) FROM schema_version")) {
+            if (rs.next()) current = rs.getInt(1);
+        }
+
+        for (int v = current + 1; v <= MIGRATIONS.size(); v++) {
+            MIGRATIONS.get(v - 1).apply(conn, engine);
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "INSERT INTO schema_version (version, applied_at) VALUES (?, CURRENT_TIMESTAMP)")) {
+                ps.setInt(1, v);
+                ps.executeUpdate();
+            } catch (SQLException ex) {
+                // Another client recorded this version first (its migration ran as well)
+                if (ex.getSQLState() == null || !ex.getSQLState().startsWith("23")) throw ex;
+                LOG.info("Schema version " + v + " was applied by another client");
+                continue;
+            }
+            LOG.info("Schema migrated to version " + v);
+        }
+    }
+
+    // --------------------------------------------------------
+    // v1: shared tables (MySQL installs usually have them from warehouse_db.sql already)
+    // --------------------------------------------------------
+    private static void createBaseTables(Connection conn, StorageEngine engine) throws SQLException {
+        String price = engine.priceColumnType();
+        try (Statement st = conn.createStatement()) {
+            st.execute("CREATE TABLE IF NOT EXISTS users ("
+                    + "username VARCHAR(100) PRIMARY KEY,"
+                    + "password VARCHAR(100) NOT NULL,"
+                    + "email VARCHAR(150))");
+            st.execute("CREATE TABLE IF NOT EXISTS warehouses ("
+                    + "warehouse_id INT AUTO_INCREMENT PRIMARY KEY,"
+                    + "username VARCHAR(100) NOT NULL,"
+                    + "warehouse_name VARCHAR(100) NOT NULL,"
+                    + "city VARCHAR(100),"
+                    + "address VARCHAR(255),"
+                    + "inauguration_date DATE,"
+                    + "last_activity_date TIMESTAMP NULL,"
+                    + "notes VARCHAR(1000),"
+                    + "UNIQUE (username, warehouse_name))");
+            st.execute("CREATE TABLE IF NOT EXISTS future_trades ("
+                    + "id INT NOT NULL,"
+                    + "username VARCHAR(100) NOT NULL,"
+                    + "warehouse_name VARCHAR(100) NOT NULL,"
+                    + "product VARCHAR(100) NOT NULL,"
+                    + "supplier VARCHAR(100),"
+                    + "customer VARCHAR(100),"
+                    + "import_quantity INT DEFAULT 0,"
+                    + "import_price " + price + " DEFAULT 0.00,"
+                    + "export_quantity INT DEFAULT 0,"
+                    + "export_price " + price + " DEFAULT 0.00,"
+                    + "date DATE NOT NULL,"
+                    + "PRIMARY KEY (username, id))");
+        }
+    }
+
+    // --------------------------------------------------------
+    // v2: future_trades is always filtered by username, then by id (MAX, lookups) or date
+    // --------------------------------------------------------
+    private static void indexFutureTrades(Connection conn, StorageEngine engine) throws SQLException {
+        createIndexIfMissing(conn, engine, "future_trades", "idx_ft_user_id", "username", "id");
+        createIndexIfMissing(conn, engine, "future_trades", "idx_ft_user_date", "username", "date");
+    }
+
+    // --------------------------------------------------------
+    // v3: the legacy trigger re-summed a product's whole history on every insert
+    // --------------------------------------------------------
+    private static void dropLegacyTrigger(Connection conn, StorageEngine engine) throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            st.execute("DROP TRIGGER IF EXISTS update_total_quantity");
+        }
+    }
+
+    // --------------------------------------------------------
+    // v4: index every existing warehouse records table and give it a current-stock table
+    // --------------------------------------------------------
+    private static void retrofitWarehouseTables(Connection conn, StorageEngine engine) throws SQLException {
+        List<String[]> warehouses = new ArrayList<>();
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT username, warehouse_name FROM warehouses")) {
+            while (rs.next()) warehouses.add(new String[]{rs.getString(1), rs.getString(2)});
+        }
+
+        for (String[] w : warehouses) {
+            String records = WarehouseHandle.tableNameFor(w[0], w[1]);
+            if (!tableExists(conn, records)) continue; // metadata row without a table: nothing to retrofit
+            indexRecordsTable(conn, engine, records);
+
+            String stock = WarehouseHandle.stockTableNameFor(w[0], w[1]);
+            try (Statement st = conn.createStatement()) {
+                createStockTable(st, stock);
+                try (ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM " + stock)) {
+                    if (rs.next() && rs.getInt(1) == 0) {
+                        st.executeUpdate("INSERT INTO " + stock
+                                + " (product, quantity, last_record_id, imported_quantity, imported_value) "
+                                + "SELECT product, SUM(import_quantity - export_quantity), MAX(id), "
+                                + "SUM(import_quantity), SUM(import_quantity * import_price) FROM " + records
+                                + " GROUP BY product");
+                    }
+                }
+            }
+        }
+    }
+
+    // --------------------------------------------------------
+    // v5: shared records/stock tables keyed by warehouse_id (WarehouseHandle.Layout.UNIFIED);
+    // existing warehouses keep their own tables until RecordsStoreMigrator moves them
+    // --------------------------------------------------------
+    private static void createUnifiedStore(Connection conn, StorageEngine engine) throws SQLException {
+        if (!columnExists(conn, "warehouses", "records_layout")) {
+            try (Statement st = conn.createStatement()) {
+                st.execute("ALTER TABLE warehouses ADD COLUMN records_layout VARCHAR(16) NOT NULL DEFAULT 'TABLE'");
+            }
+        }
+
+        String price = engine.priceColumnType();
+        String records = WarehouseHandle.UNIFIED_RECORDS;
+        String stock = WarehouseHandle.UNIFIED_STOCK;
+        try (Statement st = conn.createStatement()) {
+            // id stays globally increasing so it keeps ordering each warehouse's history
+            st.execute("CREATE TABLE IF NOT EXISTS " + records + " ("
+                    + "warehouse_id INT NOT NULL,"
+                    + "id INT NOT NULL AUTO_INCREMENT,"
+                    + "product VARCHAR(100) NOT NULL,"
+                    + "supplier VARCHAR(100),"
+                    + "customer VARCHAR(100),"
+                    + "total_quantity INT DEFAULT 0,"
+                    + "import_quantity INT DEFAULT 0,"
+                    + "import_price " + price + " DEFAULT 0.00,"
+                    + "export_quantity INT DEFAULT 0,"
+                    + "export_price " + price + " DEFAULT 0.00,"
+                    + "date DATE NOT NULL,"
+                    + "PRIMARY KEY (warehouse_id, id),"
+                    + "KEY idx_wr_id (id))"
+                    + engine.partitionByWarehouseClause("warehouse_id"));
+            st.execute("CREATE TABLE IF NOT EXISTS " + stock + " ("
+                    + "warehouse_id INT NOT NULL,"
+                    + "product VARCHAR(100) NOT NULL,"
+                    + "quantity INT NOT NULL DEFAULT 0,"
+                    + "last_record_id INT NOT NULL DEFAULT 0,"
+                    + "imported_quantity BIGINT NOT NULL DEFAULT 0,"
+                    + "imported_value DOUBLE NOT NULL DEFAULT 0,"
+                    + "PRIMARY KEY (warehouse_id, product))"
+                    + engine.partitionByWarehouseClause("warehouse_id"));
+        }
+        // Same hot paths as the per-warehouse tables, led by the warehouse
+        createIndexIfMissing(conn, engine, records, "idx_wr_product_id", "warehouse_id", "product", "id");
+        createIndexIfMissing(conn, engine, records, "idx_wr_date", "warehouse_id", "date");
+        // Cross-warehouse questions about one product
+        createIndexIfMissing(conn, engine, stock, "idx_ws_product", "product");
+    }
+
+    // --------------------------------------------------------
+    // v6: per-product daily movement summary (RollupDAO), filled from every warehouse's records
+    // --------------------------------------------------------
+    private static void createDailyRollup(Connection conn, StorageEngine engine) throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            st.execute("CREATE TABLE IF NOT EXISTS " + RollupDAO.TABLE + " ("
+                    + "warehouse_id INT NOT NULL,"
+                    + "product VARCHAR(100) NOT NULL,"
+                    + "rollup_date DATE NOT NULL,"
+                    + "imported_quantity BIGINT NOT NULL DEFAULT 0,"
+                    + "exported_quantity BIGINT NOT NULL DEFAULT 0,"
+                    + "import_value DOUBLE NOT NULL DEFAULT 0,"
+                    + "export_value DOUBLE NOT NULL DEFAULT 0,"
+                    + "closing_stock BIGINT NOT NULL DEFAULT 0,"
+                    + "PRIMARY KEY (warehouse_id, product, rollup_date))"
+                    + engine.partitionByWarehouseClause("warehouse_id"));
+        }
+        // All products of a warehouse over a date range
+        createIndexIfMissing(conn, engine, RollupDAO.TABLE, "idx_rollup_date", "warehouse_id", "rollup_date");
+
+        List<Object[]> warehouses = new ArrayList<>();
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT warehouse_id, username, warehouse_name, records_layout FROM warehouses")) {
+            while (rs.next()) {
+                warehouses.add(new Object[]{rs.getInt(1), rs.getString(2), rs.getString(3), rs.getString(4)});
+            }
+        }
+        for (Object[] w : warehouses) {
+            int wid = (Integer) w[0];
+            boolean unified = WarehouseHandle.Layout.UNIFIED.name().equals(w[3]);
+            String records = unified ? WarehouseHandle.UNIFIED_RECORDS : WarehouseHandle.tableNameFor((String) w[1], (String) w[2]);
+            if (!unified && !tableExists(conn, records)) continue;
+            try (Statement st = conn.createStatement()) {
+                // A rerun after an interruption starts the warehouse over
+                st.executeUpdate("DELETE FROM " + RollupDAO.TABLE + " WHERE warehouse_id=" + wid);
+                st.executeUpdate(RollupDAO.populateSql(wid, records, unified));
+            }
+        }
+    }
+
+    // --------------------------------------------------------
+    // v7: stock projections read one warehouse's future trades per product and date
+    // --------------------------------------------------------
+    private static void indexFutureTradesByWarehouse(Connection conn, StorageEngine engine) throws SQLException {
+        createIndexIfMissing(conn, engine, "future_trades", "idx_ft_user_warehouse",
+                "username", "warehouse_name", "product", "date");
+    }
+
+    // --------------------------------------------------------
+    // v8: per-user future_trades id sequence (FutureTradeIdSequence), continuing after existing ids
+    // --------------------------------------------------------
+    private static void createFutureTradeSequences(Connection conn, StorageEngine engine) throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            st.execute("CREATE TABLE IF NOT EXISTS " + FutureTradeIdSequence.TABLE + " ("
+                    + "username VARCHAR(100) PRIMARY KEY,"
+                    + "next_id INT NOT NULL)");
+            st.executeUpdate("INSERT INTO " + FutureTradeIdSequence.TABLE + " (username, next_id) "
+                    + "SELECT f.username, MAX(f.id) + 1 FROM future_trades f "
+                    + "WHERE NOT EXISTS (SELECT 1 FROM " + FutureTradeIdSequence.TABLE + " s WHERE s.username = f.username) "
+                    + "GROUP BY f.username");
+        }
+    }
+
+    // --------------------------------------------------------
+    // v9: product names compare case-insensitively on every engine. The DAOs rely on it
+    // (one stock row, lock stripe and rollup cell per name whatever its spelling); MySQL's
+    // default collation already does, H2 columns created before IGNORECASE=TRUE do not.
+    // --------------------------------------------------------
+    private static void ignoreCaseOfProductNames(Connection conn, StorageEngine engine) throws SQLException {
+        Map<String, Integer> columns = new TreeMap<>();
+        try (ResultSet rs = conn.getMetaData().getColumns(conn.getCatalog(), null, "%", "product")) {
+            while (rs.next()) {
+                if (rs.getInt("DATA_TYPE") == Types.VARCHAR) columns.put(rs.getString("TABLE_NAME"), rs.getInt("COLUMN_SIZE"));
+            }
+        }
+        for (Map.Entry<String, Integer> c : columns.entrySet()) {
+            String sql = engine.ignoreCaseColumnSql(c.getKey(), "product", c.getValue());
+            if (sql == null) return;
+            try (Statement st = conn.createStatement()) {
+                st.execute(sql);
+            } catch (SQLException ex) {
+                // e.g. a stock table already holding two spellings of one product: left as it is
+                LOG.log(Level.WARNING, "Product names of " + c.getKey() + " stay case-sensitive: " + ex.getMessage(), ex);
+            }
+        }
+    }
+
+    // ============================================================
+    // Per-warehouse DDL (used by WarehouseDAO.createWarehouse and the migrations)
+    // ============================================================
+    public static void createWarehouseTables(Connection conn, String recordsTable, String stockTable) throws SQLException {
+        StorageEngine engine = DBConnection.getStorageEngine();
+        String price = engine.priceColumnType();
+        try (Statement st = conn.createStatement()) {
+            st.execute("CREATE TABLE IF NOT EXISTS " + recordsTable + " ("
+                    + "id INT AUTO_INCREMENT PRIMARY KEY,"
+                    + "product VARCHAR(100) NOT NULL,"
+                    + "supplier VARCHAR(100),"
+                    + "customer VARCHAR(100),"
+                    + "total_quantity INT DEFAULT 0,"
+                    + "import_quantity INT DEFAULT 0,"
+                    + "import_price " + price + " DEFAULT 0.00,"
+                    + "export_quantity INT DEFAULT 0,"
+                    + "export_price " + price + " DEFAULT 0.00,"
+                    + "date DATE NOT NULL)");
+            createStockTable(st, stockTable);
+        }
+        indexRecordsTable(conn, engine, recordsTable);
+    }
+
+    // Current-stock table: one row per product, kept in sync by ProductDAO writes
+    public static void createStockTable(Statement st, String stockTable) throws SQLException {
+        st.execute("CREATE TABLE IF NOT EXISTS " + stockTable + " ("
+                + "product VARCHAR(100) NOT NULL PRIMARY KEY,"
+                + "quantity INT NOT NULL DEFAULT 0,"
+                + "last_record_id INT NOT NULL DEFAULT 0,"
+                + "imported_quantity BIGINT NOT NULL DEFAULT 0,"
+                + "imported_value DOUBLE NOT NULL DEFAULT 0)");
+    }
+
+    // Hot paths: per-product history in id order, and date-range reads
+    private static void indexRecordsTable(Connection conn, StorageEngine engine, String table) throws SQLException {
+        createIndexIfMissing(conn, engine, table, "idx_product_id", "product", "id");
+        createIndexIfMissing(conn, engine, table, "idx_date", "date");
+    }
+
+    // ============================================================
+    // Metadata helpers
+    // ============================================================
+
+    // Creates the index unless one with exactly these leading columns already exists
+    static void createIndexIfMissing(Connection conn, StorageEngine engine, String table,
+                                     String name, String... columns) throws SQLException {
+        if (hasIndexOn(conn, table, columns)) return;
+        try (Statement st = conn.createStatement()) {
+            st.execute(engine.createIndexSql(table, name, columns));
+        }
+    }
+
+    private static boolean hasIndexOn(Connection conn, String table, String... columns) throws SQLException {
+        DatabaseMetaData md = conn.getMetaData();
+        for (String candidate : new String[]{table, table.toLowerCase(), table.toUpperCase()}) {
+            Map<String, TreeMap<Integer, String>> indexes = new TreeMap<>();
+            try (ResultSet rs = md.getIndexInfo(conn.getCatalog(), null, candidate, false, true)) {
+                while (rs.next()) {
+                    String index = rs.getString("INDEX_NAME");
+                    String column = rs.getString("COLUMN_NAME");
+                    if (index == null || column == null) continue;
+                    indexes.computeIfAbsent(index, k -> new TreeMap<>())
+                            .put((int) rs.getShort("ORDINAL_POSITION"), column);
+                }
+            }
+            if (indexes.isEmpty()) continue; // try another spelling of the table name
+            for (TreeMap<Integer, String> cols : indexes.values()) {
+                List<String> actual = new ArrayList<>(cols.values());
+                if (actual.size() < columns.length) continue;
+                boolean match = true;
+                for (int i = 0; i < columns.length; i++) {
+                    if (!actual.get(i).equalsIgnoreCase(columns[i])) {
+                        match = false;
+                        break;
+                    }
+                }
+                if (match) return true;
+            }
+            return false;
+        }
+        return false;
+    }
+
+    static boolean columnExists(Connection conn, String table, String column) throws SQLException {
+        DatabaseMetaData md = conn.getMetaData();
+        for (String candidate : new String[]{table, table.toLowerCase(), table.toUpperCase()}) {
+            try (ResultSet rs = md.getColumns(conn.getCatalog(), null, candidate, null)) {
+                while (rs.next()) {
+                    if (column.equalsIgnoreCase(rs.getString("COLUMN_NAME"))) return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    static boolean tableExists(Connection conn, String table) throws SQLException {
+        DatabaseMetaData md = conn.getMetaData();
+        for (String candidate : new String[]{table, table.toLowerCase(), table.toUpperCase()}) {
+            try (ResultSet rs = md.getTables(conn.getCatalog(), null, candidate, new String[]{"TABLE"})) {
+                if (rs.next()) return true;
+            }
+        }
+        return false;
+    }
+}
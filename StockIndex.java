@@ -0,0 +1,248 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * StockIndex
+ * -------------------------------------------
+ * In-memory stock position index for one product of one warehouse.
+ * Each record contributes delta = import_quantity - export_quantity at its id;
+ * the index is a prefix-sum segment tree over the product's record ids where
+ * every node stores (sum, minimum prefix sum). That answers, in O(log n):
+ *   - stockAt(id)        : stock after all records with id <= id
+ *   - currentStock()     : stock after the last record
+ *   - minStockFrom(id)   : lowest running stock among records with id >= id
+ * and applies a changed/removed record in O(log n), which is what update/delete
+ * need to validate the "no negative stock" rule (Point 12) without replaying history.
+ *
+ * Indexes are cached per (warehouse scope, product) for this process and are only
+ * mutated after a successful commit (see UnitOfWork.afterCommit).
+ */
+public class StockIndex {
+
+    private static final ConcurrentHashMap<String, StockIndex> CACHE = new ConcurrentHashMap<>();
+
+    private int[] ids;      // record ids in ascending order; positions never move
+    private int size;       // used positions
+    private int capacity;   // leaves in the tree (power of two)
+    private long[] sum;     // node sums
+    private long[] minPref; // node minimum prefix sums
+
+    private StockIndex(int[] sortedIds, int[] deltas, int count) {
+        build(sortedIds, deltas, count, Math.max(16, Integer.highestOneBit(Math.max(1, count)) << 1));
+    }
+
+    // --------------------------------------------------------
+    // Cache access: load the product's history once, then serve from memory
+    // --------------------------------------------------------
+    public static StockIndex get(Connection conn, WarehouseHandle h, String product) throws SQLException {
+        String key = key(h.getScopeKey(), product);
+        StockIndex idx = CACHE.get(key);
+        if (idx != null) return idx;
+
+        idx = load(conn, h, product);
+        StockIndex raced = CACHE.putIfAbsent(key, idx);
+        return raced != null ? raced : idx;
+    }
+
+    // Cached index or null (used to keep already-loaded indexes current without loading new ones)
+    public static StockIndex peek(WarehouseHandle h, String product) {
+        return CACHE.get(key(h.getScopeKey(), product));
+    }
+
+    public static void invalidate(WarehouseHandle h, String product) {
+        CACHE.remove(key(h.getScopeKey(), product));
+    }
+
+    // Drop every index of a warehouse (renamed, deleted or moved to another layout)
+    public static void invalidateScope(String scopeKey) {
+        String prefix = scopeKey + '\u0000';
+        CACHE.keySet().removeIf(k -> k.startsWith(prefix));
+    }
+
+    // Products compare case-insensitively in the database, so every spelling shares one index
+    private static String key(String table, String product) {
+        return table + '\u0000' + product.toLowerCase();
+    }
+
+    private static StockIndex load(Connection conn, WarehouseHandle h, String product) throws SQLException {
+        int[] ids = new int[64];
+        int[] deltas = new int[64];
+        int n = 0;
+        try (PreparedStatement ps = conn.prepareStatement(h.productDeltas)) {
+            ps.setString(1, product);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    if (n == ids.length) {
+                        ids = Arrays.copyOf(ids, n * 2);
+                        deltas = Arrays.copyOf(deltas, n * 2);
+                    }
+                    ids[n] = rs.getInt(1);
+                    deltas[n] = rs.getInt(2);
+                    n++;
+                }
+            }
+        }
+        return new StockIndex(ids, deltas, n);
+    }
+
+    // --------------------------------------------------------
+    // Queries
+    // --------------------------------------------------------
+    public synchronized long currentStock() {
+        return sum[1];
+    }
+
+    public synchronized long stockAt(int id) {
+        int pos = upperBound(id); // positions [0, pos) have ids <= id
+        return prefix(pos);
+    }
+
+    // Stock just before the record with this id (all records with smaller ids)
+    public synchronized long stockBefore(int id) {
+        return prefix(lowerBound(id));
+    }
+
+    /**
+     * Lowest running stock over the records with id >= id, or Long.MAX_VALUE if there are none.
+     */
+    public synchronized long minStockFrom(int id) {
+        int from = lowerBound(id);
+        if (from >= size) return Long.MAX_VALUE;
+        long[] r = query(1, 0, capacity, from, size);
+        return prefix(from) + r[1];
+    }
+
+    public synchronized boolean contains(int id) {
+        int pos = lowerBound(id);
+        return pos < size && ids[pos] == id;
+    }
+
+    // --------------------------------------------------------
+    // Mutations (call only with committed data)
+    // --------------------------------------------------------
+    public synchronized void put(int id, int delta) {
+        int pos = lowerBound(id);
+        if (pos < size && ids[pos] == id) {
+            setLeaf(pos, delta);
+        } else if (pos == size) {
+            append(id, delta);
+        } else {
+            insertMiddle(pos, id, delta);
+        }
+    }
+
+    // Removed records keep their slot with delta 0, which leaves every prefix unchanged
+    public synchronized void remove(int id) {
+        int pos = lowerBound(id);
+        if (pos < size && ids[pos] == id) setLeaf(pos, 0);
+    }
+
+    private void append(int id, int delta) {
+        if (size == capacity) {
+            rebuildWith(size, id, delta, capacity * 2);
+            return;
+        }
+        ids[size] = id;
+        size++;
+        setLeaf(size - 1, delta);
+    }
+
+    // Rare (a record re-assigned to this product in the middle of its history): O(n) rebuild
+    private void insertMiddle(int pos, int id, int delta) {
+        rebuildWith(pos, id, delta, size + 1 > capacity ? capacity * 2 : capacity);
+    }
+
+    private void rebuildWith(int pos, int id, int delta, int newCapacity) {
+        int[] newIds = new int[size + 1];
+        int[] newDeltas = new int[size + 1];
+        for (int i = 0, j = 0; i <= size; i++) {
+            if (i == pos) {
+                newIds[i] = id;
+                newDeltas[i] = delta;
+            } else {
+                newIds[i] = ids[j];
+                newDeltas[i] = (int) sum[capacity + j];
+                j++;
+            }
+        }
+        build(newIds, newDeltas, size + 1, newCapacity);
+    }
+
+    // --------------------------------------------------------
+    // Segment tree internals (node 1 = root, leaves at [capacity, 2*capacity))
+    // --------------------------------------------------------
+    private void build(int[] sortedIds, int[] deltas, int count, int cap) {
+        capacity = cap;
+        size = count;
+        ids = Arrays.copyOf(sortedIds, cap);
+        sum = new long[2 * cap];
+        minPref = new long[2 * cap];
+        for (int i = 0; i < cap; i++) {
+            long d = i < count ? deltas[i] : 0;
+            sum[cap + i] = d;
+            minPref[cap + i] = d;
+        }
+        for (int node = cap - 1; node >= 1; node--) pull(node);
+    }
+
+    private void setLeaf(int pos, long delta) {
+        int node = capacity + pos;
+        sum[node] = delta;
+        minPref[node] = delta;
+        for (node >>= 1; node >= 1; node >>= 1) pull(node);
+    }
+
+    private void pull(int node) {
+        int l = node << 1, r = l | 1;
+        sum[node] = sum[l] + sum[r];
+        minPref[node] = Math.min(minPref[l], sum[l] + minPref[r]);
+    }
+
+    // Sum of leaves [0, pos)
+    private long prefix(int pos) {
+        long total = 0;
+        int lo = capacity, hi = capacity + pos;
+        while (lo < hi) {
+            if ((lo & 1) == 1) total += sum[lo++];
+            if ((hi & 1) == 1) total += sum[--hi];
+            lo >>= 1;
+            hi >>= 1;
+        }
+        return total;
+    }
+
+    // {sum, minPrefix} of leaves [from, to) within node covering [nodeLo, nodeHi)
+    private long[] query(int node, int nodeLo, int nodeHi, int from, int to) {
+        if (from <= nodeLo && nodeHi <= to) return new long[]{sum[node], minPref[node]};
+        int mid = (nodeLo + nodeHi) >>> 1;
+        if (to <= mid) return query(node << 1, nodeLo, mid, from, to);
+        if (from >= mid) return query((node << 1) | 1, mid, nodeHi, from, to);
+        long[] l = query(node << 1, nodeLo, mid, from, to);
+        long[] r = query((node << 1) | 1, mid, nodeHi, from, to);
+        return new long[]{l[0] + r[0], Math.min(l[1], l[0] + r[1])};
+    }
+
+    // First position with ids[pos] >= id
+    private int lowerBound(int id) {
+        int lo = 0, hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (ids[mid] < id) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+
+    // First position with ids[pos] > id
+    private int upperBound(int id) {
+        int lo = 0, hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (ids[mid] <= id) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+}
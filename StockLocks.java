@@ -0,0 +1,105 @@
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * StockLocks
+ * -------------------------------------------
+ * Striped in-process locks over (records table, product). Every ProductDAO write
+ * takes the stripe of each product it touches before reading that product's stock,
+ * and keeps it until the enclosing UnitOfWork ends (commit or rollback). Writes to
+ * the same product of a warehouse are therefore strictly ordered, while other
+ * products (almost always on other stripes) proceed in parallel.
+ *
+ * The database row lock on the product's current-stock row (SELECT ... FOR UPDATE
+ * in ProductDAO) gives the same ordering across processes; the striped lock makes
+ * threads of this process queue here instead of holding a pooled connection while
+ * they wait on the database. Writers take their stripes before the unit's first
+ * statement, and UnitOfWork only borrows its connection at that first statement.
+ * A writer that read the product name before locking re-reads it under the lock
+ * and retries if the record was renamed to a product it does not hold.
+ *
+ * Writes also hold their warehouse's gate in shared mode; RecordsStoreMigrator takes
+ * it exclusively while it catches up and switches the warehouse to another table.
+ */
+public class StockLocks {
+
+    private static final int STRIPES = 64;
+    private static final long WAIT_SECONDS = 30;
+
+    private static final ReentrantLock[] LOCKS = new ReentrantLock[STRIPES];
+    private static final ConcurrentHashMap<String, ReentrantReadWriteLock> GATES = new ConcurrentHashMap<>();
+
+    static {
+        for (int i = 0; i < STRIPES; i++) LOCKS[i] = new ReentrantLock();
+    }
+
+    // --------------------------------------------------------
+    // Lock one product until the active unit of work closes
+    // --------------------------------------------------------
+    public static void lock(WarehouseHandle h, String product) throws SQLException {
+        enterWarehouse(h);
+        acquire(LOCKS[stripe(h, product)]);
+    }
+
+    // Several products: stripes are taken in ascending order so two bulk writers cannot deadlock
+    public static void lockAll(WarehouseHandle h, Collection<String> products) throws SQLException {
+        TreeSet<Integer> stripes = new TreeSet<>();
+        for (String product : products) stripes.add(stripe(h, product));
+        enterWarehouse(h);
+        for (int s : stripes) acquire(LOCKS[s]);
+    }
+
+    // --------------------------------------------------------
+    // Exclusive use of a warehouse (no writes until the returned lock is unlocked)
+    // --------------------------------------------------------
+    public static Lock lockWarehouseExclusive(WarehouseHandle h) throws SQLException {
+        Lock lock = gate(h).writeLock();
+        try {
+            if (!lock.tryLock(WAIT_SECONDS, TimeUnit.SECONDS)) {
+                throw new SQLException("Timed out waiting for writes to warehouse " + h.getWarehouseName() + " to finish.");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for warehouse " + h.getWarehouseName() + ".", ex);
+        }
+        return lock;
+    }
+
+    private static void enterWarehouse(WarehouseHandle h) throws SQLException {
+        acquire(gate(h).readLock());
+        if (h.isRetired()) {
+            // The warehouse moved while this write waited: its SQL points at the old tables
+            throw new SQLException("Warehouse " + h.getWarehouseName() + " was moved to another records store; please retry.");
+        }
+    }
+
+    private static ReentrantReadWriteLock gate(WarehouseHandle h) {
+        return GATES.computeIfAbsent(h.getScopeKey(), k -> new ReentrantReadWriteLock());
+    }
+
+    private static void acquire(Lock lock) throws SQLException {
+        if (!UnitOfWork.isActive()) {
+            throw new IllegalStateException("Stock locks are only taken inside a unit of work.");
+        }
+        try {
+            if (!lock.tryLock(WAIT_SECONDS, TimeUnit.SECONDS)) {
+                throw new SQLException("Timed out waiting for a concurrent stock operation.");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a stock lock.", ex);
+        }
+        UnitOfWork.onClose(lock::unlock);
+    }
+
+    // Products compare case-insensitively in the database, so they must share a stripe too
+    private static int stripe(WarehouseHandle h, String product) {
+        return Math.floorMod((h.getScopeKey() + '\u0000' + product.toLowerCase()).hashCode(), STRIPES);
+    }
+}
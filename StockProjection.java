@@ -0,0 +1,131 @@
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * StockProjection
+ * -------------------------------------------
+ * Projected stock of every product of a warehouse: the current stock (current-stock
+ * table) rolled forward through the warehouse's scheduled future trades in date order.
+ * The trades are read once, grouped per product and day and ordered by product, date,
+ * so the whole warehouse is projected in a single pass; each product's timeline holds
+ * one point per day on which a trade is scheduled, and the balance between points is
+ * that of the point before.
+ *
+ * Trades dated in the past (not shifted yet) are applied at their own date.
+ */
+public class StockProjection {
+
+    // -----------------------------
+    // Projected balance at the end of one day with scheduled trades
+    // -----------------------------
+    public static class Point {
+        public LocalDate date;
+        public long imports;
+        public long exports;
+        public long balance;
+
+        public Point(LocalDate date, long imports, long exports, long balance) {
+            this.date = date;
+            this.imports = imports;
+            this.exports = exports;
+            this.balance = balance;
+        }
+    }
+
+    // -----------------------------
+    // Timeline of one product
+    // -----------------------------
+    public static class ProductProjection {
+        public String product;
+        public long currentStock;
+        public List<Point> timeline = new ArrayList<>();
+        public LocalDate firstNegativeDate; // null if stock never goes negative
+        public long lowestBalance;
+
+        public ProductProjection(String product, long currentStock) {
+            this.product = product;
+            this.currentStock = currentStock;
+            this.lowestBalance = currentStock;
+        }
+
+        // Projected stock at the end of the given date
+        public long balanceOn(LocalDate date) {
+            int lo = 0, hi = timeline.size() - 1;
+            long balance = currentStock;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                if (timeline.get(mid).date.isAfter(date)) {
+                    hi = mid - 1;
+                } else {
+                    balance = timeline.get(mid).balance;
+                    lo = mid + 1;
+                }
+            }
+            return balance;
+        }
+
+        private void add(LocalDate date, long imports, long exports) {
+            long before = timeline.isEmpty() ? currentStock : timeline.get(timeline.size() - 1).balance;
+            Point p = new Point(date, imports, exports, before + imports - exports);
+            timeline.add(p);
+            if (p.balance < lowestBalance) lowestBalance = p.balance;
+            if (p.balance < 0 && firstNegativeDate == null) firstNegativeDate = date;
+        }
+    }
+
+    // The product column compares case-insensitively on every engine (MySQL collation, H2 IGNORECASE),
+    // so grouping on it directly merges spellings and can use the index
+    private static final String TRADES_SQL = "SELECT product, date, SUM(import_quantity), SUM(export_quantity) "
+            + "FROM future_trades WHERE username=? AND warehouse_name=? "
+            + "GROUP BY product, date ORDER BY product, date";
+
+    // --------------------------------------------------------
+    // Project every product of a warehouse of the logged-in user (product order)
+    // --------------------------------------------------------
+    public static List<ProductProjection> projectWarehouse(String warehouseName) throws SQLException {
+        WarehouseHandle h = WarehouseHandle.of(warehouseName);
+
+        Map<String, ProductProjection> products = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (ProductDAO.StockLevel s : ProductDAO.getCurrentStock(h)) {
+            products.put(s.product, new ProductProjection(s.product, s.quantity));
+        }
+
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(TRADES_SQL)) {
+            ps.setString(1, h.getUsername());
+            ps.setString(2, warehouseName);
+            try (ResultSet rs = ps.executeQuery()) {
+                ProductProjection current = null;
+                while (rs.next()) {
+                    String product = rs.getString(1);
+                    if (current == null || !current.product.equalsIgnoreCase(product)) {
+                        // Trades of a product the warehouse has never stocked start from zero
+                        current = products.computeIfAbsent(product, k -> new ProductProjection(product, 0));
+                    }
+                    Date date = rs.getDate(2);
+                    current.add(date.toLocalDate(), rs.getLong(3), rs.getLong(4));
+                }
+            }
+        }
+        return new ArrayList<>(products.values());
+    }
+
+    // Only the products whose projected stock goes negative, earliest first
+    public static List<ProductProjection> shortages(List<ProductProjection> projections) {
+        List<ProductProjection> list = new ArrayList<>();
+        for (ProductProjection p : projections) {
+            if (p.firstNegativeDate != null) list.add(p);
+        }
+        Collections.sort(list, (a, b) -> a.firstNegativeDate.compareTo(b.firstNegativeDate));
+        return list;
+    }
+}
@@ -0,0 +1,57 @@
+/**
+ * StorageEngine
+ * -------------------------------------------
+ * Pluggable persistence backend selected at startup (see MainProject).
+ * The DAOs speak plain JDBC; an engine supplies where the connections come
+ * from and covers the few SQL statements whose syntax differs between backends.
+ * The schema itself is provisioned by SchemaBootstrapper.
+ *
+ * Implementations: MySqlStorageEngine (networked server, default) and
+ * EmbeddedStorageEngine (in-process H2 database stored in a local file).
+ */
+public interface StorageEngine {
+
+    String getName();
+
+    String getJdbcUrl();
+
+    String getUser();
+
+    String getPassword();
+
+    // ---------- Dialect ----------
+
+    // Column type for prices in the per-warehouse records tables
+    String priceColumnType();
+
+    // Statement renaming a table (used when a warehouse is renamed)
+    String renameTableSql(String oldTable, String newTable);
+
+    // Statement creating a secondary index (see SchemaBootstrapper)
+    String createIndexSql(String table, String indexName, String... columns);
+
+    // Statement making an existing text column compare case-insensitively (null where it already does)
+    String ignoreCaseColumnSql(String table, String column, int length);
+
+    // Table-option suffix partitioning a shared table by warehouse ("" where unsupported)
+    String partitionByWarehouseClause(String column);
+
+    // Fetch size that makes a forward-only read-only query stream its rows instead of buffering them all
+    int streamingFetchSize();
+
+    // Suffix making a SELECT read the latest committed row under a shared lock ("" where one process owns the database)
+    String sharedLockSuffix();
+
+    // --------------------------------------------------------
+    // Resolve an engine from its configured name ("mysql" or "embedded")
+    // --------------------------------------------------------
+    static StorageEngine fromName(String name) {
+        if (name == null || name.isBlank() || name.equalsIgnoreCase("mysql")) {
+            return new MySqlStorageEngine();
+        }
+        if (name.equalsIgnoreCase("embedded") || name.equalsIgnoreCase("h2")) {
+            return new EmbeddedStorageEngine(EmbeddedStorageEngine.DEFAULT_PATH);
+        }
+        throw new IllegalArgumentException("Unknown storage engine: " + name + " (expected mysql or embedded)");
+    }
+}
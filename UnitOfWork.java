@@ -0,0 +1,209 @@
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * UnitOfWork
+ * -------------------------------------------
+ * Thread-bound transaction context. The outermost begin() opens a transaction on one
+ * pooled connection, borrowed when the unit first uses it (so a write that first
+ * waits on an in-process lock, see StockLocks, holds no connection while it waits);
+ * while it is open, every
+ * DBConnection.getConnection() on the same thread joins it (closing the joined
+ * connection is a no-op), so a whole DAO call chain runs on one connection and
+ * ends with a single commit.
+ *
+ * Usage:
+ *   try (UnitOfWork uow = UnitOfWork.begin()) {
+ *       ... DAO calls ...
+ *       uow.commit();
+ *   } // not committed -> rolled back
+ *
+ * Nested begin() calls join the outer unit: their commit() is deferred to the
+ * outermost one, and closing a nested unit without committing marks the whole
+ * transaction rollback-only.
+ */
+public class UnitOfWork implements AutoCloseable {
+
+    private static final ThreadLocal<Transaction> CURRENT = new ThreadLocal<>();
+
+    // -----------------------------
+    // Shared state of the outermost unit
+    // -----------------------------
+    private static class Transaction {
+        Connection connection; // null until first used
+        final Connection joined;
+        final List<Runnable> afterCommit = new ArrayList<>();
+        final List<Runnable> onClose = new ArrayList<>();
+        boolean rollbackOnly = false;
+
+        Transaction() {
+            this.joined = joinedView(this);
+        }
+
+        Connection connection() throws SQLException {
+            if (connection == null) {
+                Connection conn = DBConnection.getPooledConnection();
+                try {
+                    conn.setAutoCommit(false);
+                } catch (SQLException ex) {
+                    conn.close();
+                    throw ex;
+                }
+                connection = conn;
+            }
+            return connection;
+        }
+    }
+
+    private final Transaction tx;
+    private final boolean owner;
+    private boolean completed = false;
+
+    private UnitOfWork(Transaction tx, boolean owner) {
+        this.tx = tx;
+        this.owner = owner;
+    }
+
+    // --------------------------------------------------------
+    // Start a new unit of work, or join the one already active on this thread
+    // --------------------------------------------------------
+    public static UnitOfWork begin() throws SQLException {
+        Transaction current = CURRENT.get();
+        if (current != null) {
+            return new UnitOfWork(current, false);
+        }
+        Transaction tx = new Transaction();
+        CURRENT.set(tx);
+        return new UnitOfWork(tx, true);
+    }
+
+    // Connection of the active unit on this thread (close() on it is ignored), or null
+    static Connection currentConnection() {
+        Transaction tx = CURRENT.get();
+        return tx == null ? null : tx.joined;
+    }
+
+    public static boolean isActive() {
+        return CURRENT.get() != null;
+    }
+
+    /**
+     * Runs the action after the outermost unit commits (immediately when no unit is active).
+     * Used for in-memory state that must only reflect committed data.
+     */
+    public static void afterCommit(Runnable action) {
+        Transaction tx = CURRENT.get();
+        if (tx == null) {
+            action.run();
+        } else {
+            tx.afterCommit.add(action);
+        }
+    }
+
+    /**
+     * Runs the action when the outermost unit closes, after commit or rollback
+     * (used to release locks held for the whole transaction, see StockLocks).
+     */
+    static void onClose(Runnable action) {
+        Transaction tx = CURRENT.get();
+        if (tx == null) throw new IllegalStateException("No active unit of work.");
+        tx.onClose.add(action);
+    }
+
+    public Connection getConnection() {
+        return tx.joined;
+    }
+
+    // --------------------------------------------------------
+    // Commit (only the outermost unit talks to the database)
+    // --------------------------------------------------------
+    public void commit() throws SQLException {
+        if (completed) throw new IllegalStateException("Unit of work already completed.");
+        if (!owner) {
+            completed = true;
+            return;
+        }
+
+        if (tx.rollbackOnly) {
+            throw new SQLException("Transaction was marked rollback-only by a nested operation.");
+        }
+        if (tx.connection != null) tx.connection.commit();
+        completed = true; // only now: a failed commit is rolled back by close()
+        for (Runnable r : tx.afterCommit) {
+            try {
+                r.run();
+            } catch (RuntimeException ex) {
+                ex.printStackTrace();
+            }
+        }
+        tx.afterCommit.clear();
+    }
+
+    @Override
+    public void close() throws SQLException {
+        if (!owner) {
+            if (!completed) tx.rollbackOnly = true;
+            return;
+        }
+        CURRENT.remove();
+        try {
+            if (tx.connection != null) {
+                if (!completed || tx.rollbackOnly) tx.connection.rollback();
+                tx.connection.setAutoCommit(true);
+            }
+        } finally {
+            tx.afterCommit.clear();
+            try {
+                if (tx.connection != null) tx.connection.close(); // back to the pool
+            } finally {
+                for (Runnable r : tx.onClose) {
+                    try {
+                        r.run();
+                    } catch (RuntimeException ex) {
+                        ex.printStackTrace();
+                    }
+                }
+            }
+        }
+    }
+
+    // --------------------------------------------------------
+    // View of the transaction's connection handed to joined DAO calls:
+    // close/commit/autocommit changes are owned by the outermost unit
+    // --------------------------------------------------------
+    private static Connection joinedView(Transaction tx) {
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "close":
+                        case "commit":
+                        case "setAutoCommit":
+                            return null;
+                        case "rollback":
+                            if (args == null) {
+                                tx.rollbackOnly = true;
+                                return null;
+                            }
+                            break; // rollback to a savepoint is the caller's business
+                        case "getAutoCommit":
+                            return false;
+                        case "equals":
+                            return proxy == args[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        default:
+                            break;
+                    }
+                    try {
+                        return method.invoke(tx.connection(), args);
+                    } catch (InvocationTargetException ite) {
+                        throw ite.getCause();
+                    }
+                });
+    }
+}
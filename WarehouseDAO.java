@@ -32,6 +32,13 @@ public class WarehouseDAO {
         }
     }
 
+    // Records layout given to newly created warehouses (see WarehouseHandle.Layout)
+    private static volatile WarehouseHandle.Layout newWarehouseLayout = WarehouseHandle.Layout.TABLE;
+
+    public static void setNewWarehouseLayout(WarehouseHandle.Layout layout) {
+        newWarehouseLayout = layout;
+    }
+
     // -----------------------------
     // Sanitize table-safe names
     // -----------------------------
@@ -50,10 +57,11 @@ public class WarehouseDAO {
         String username = SessionManager.getCurrentUser();
         String master = "warehouses";
 
+        WarehouseHandle.Layout layout = newWarehouseLayout;
         try (Connection conn = DBConnection.getConnection()) {
             // Insert warehouse metadata
-            String sql = "INSERT INTO " + master + " (username, warehouse_name, city, address, inauguration_date, last_activity_date, notes) "
-                    + "VALUES (?, ?, ?, ?, ?, NOW(), ?)";
+            String sql = "INSERT INTO " + master + " (username, warehouse_name, city, address, inauguration_date, last_activity_date, notes, records_layout) "
+                    + "VALUES (?, ?, ?, ?, ?, NOW(), ?, ?)";
             try (PreparedStatement ps = conn.prepareStatement(sql)) {
                 ps.setString(1, username);
                 ps.setString(2, name);
@@ -61,28 +69,18 @@ public class WarehouseDAO {
                 ps.setString(4, address);
                 ps.setDate(5, inaugurationDate);
                 ps.setString(6, notes);
+                ps.setString(7, layout.name());
                 ps.executeUpdate();
             }
 
-            // Create user-specific records table for this warehouse
-            String safeName = sanitizeName(name);
-            String tableName = SessionManager.prefixTable("records_" + safeName);
-            String createTableSQL =
-                    "CREATE TABLE IF NOT EXISTS " + tableName + " ("
-                            + "id INT AUTO_INCREMENT PRIMARY KEY,"
-                            + "product VARCHAR(100) NOT NULL,"
-                            + "supplier VARCHAR(100),"
-                            + "customer VARCHAR(100),"
-                            + "total_quantity INT DEFAULT 0,"
-                            + "import_quantity INT DEFAULT 0,"
-                            + "import_price DOUBLE(10,2) DEFAULT 0.00,"
-                            + "export_quantity INT DEFAULT 0,"
-                            + "export_price DOUBLE(10,2) DEFAULT 0.00,"
-                            + "date DATE NOT NULL)";
-            try (Statement st = conn.createStatement()) {
-                st.execute(createTableSQL);
+            // Create user-specific records + current-stock tables (with indexes) for this warehouse;
+            // a UNIFIED warehouse just starts adding rows to the shared tables
+            if (layout == WarehouseHandle.Layout.TABLE) {
+                SchemaBootstrapper.createWarehouseTables(conn,
+                        WarehouseHandle.tableNameFor(name), WarehouseHandle.stockTableNameFor(name));
             }
         }
+        WarehouseHandle.invalidate(name); // a handle may have been resolved before the warehouse existed
     }
 
     // -----------------------------
@@ -96,6 +94,7 @@ public class WarehouseDAO {
         String username = SessionManager.getCurrentUser();
         String master = "warehouses";
 
+        WarehouseHandle h = WarehouseHandle.of(oldName);
         try (Connection conn = DBConnection.getConnection()) {
             String sql = "UPDATE " + master
                     + " SET warehouse_name=?, city=?, address=?, inauguration_date=?, notes=?, last_activity_date=NOW() "
@@ -111,15 +110,23 @@ public class WarehouseDAO {
                 ps.executeUpdate();
             }
 
-            // If name changed, rename records table too
+            // If name changed, rename records table too (UNIFIED rows are keyed by warehouse_id and stay put)
             if (!oldName.equals(newName)) {
-                String oldTable = SessionManager.prefixTable("records_" + sanitizeName(oldName));
-                String newTable = SessionManager.prefixTable("records_" + sanitizeName(newName));
-                try (Statement st = conn.createStatement()) {
-                    st.execute("RENAME TABLE " + oldTable + " TO " + newTable);
+                if (h.getLayout() == WarehouseHandle.Layout.TABLE) {
+                    String oldTable = WarehouseHandle.tableNameFor(oldName);
+                    String newTable = WarehouseHandle.tableNameFor(newName);
+                    StorageEngine engine = DBConnection.getStorageEngine();
+                    try (Statement st = conn.createStatement()) {
+                        st.execute(engine.renameTableSql(oldTable, newTable));
+                        st.execute(engine.renameTableSql(WarehouseHandle.stockTableNameFor(oldName),
+                                WarehouseHandle.stockTableNameFor(newName)));
+                    }
                 }
+                WarehouseHandle.invalidate(oldName); // cached SQL still points at the old table
+                WarehouseHandle.invalidate(newName);
             }
         }
+        LastActivityBuffer.discard(username, oldName); // the edit itself stamped last_activity_date
     }
 
     // -----------------------------
@@ -132,6 +139,7 @@ public class WarehouseDAO {
         String username = SessionManager.getCurrentUser();
         String master = "warehouses";
 
+        WarehouseHandle h = WarehouseHandle.of(name);
         try (Connection conn = DBConnection.getConnection()) {
             // Delete from master
             String sql = "DELETE FROM " + master + " WHERE username=? AND warehouse_name=?";
@@ -141,13 +149,29 @@ public class WarehouseDAO {
                 ps.executeUpdate();
             }
 
-            // Drop associated records table
-            String safeName = sanitizeName(name);
-            String table = SessionManager.prefixTable("records_" + safeName);
-            try (Statement st = conn.createStatement()) {
-                st.execute("DROP TABLE IF EXISTS " + table);
+            // Drop associated records table (or the warehouse's rows of the shared tables)
+            if (h.getLayout() == WarehouseHandle.Layout.UNIFIED) {
+                try (PreparedStatement ps = conn.prepareStatement(
+                        "DELETE FROM " + WarehouseHandle.UNIFIED_RECORDS + " WHERE warehouse_id=?")) {
+                    ps.setInt(1, h.getWarehouseId());
+                    ps.executeUpdate();
+                }
+                try (PreparedStatement ps = conn.prepareStatement(
+                        "DELETE FROM " + WarehouseHandle.UNIFIED_STOCK + " WHERE warehouse_id=?")) {
+                    ps.setInt(1, h.getWarehouseId());
+                    ps.executeUpdate();
+                }
+            } else {
+                String table = WarehouseHandle.tableNameFor(name);
+                try (Statement st = conn.createStatement()) {
+                    st.execute("DROP TABLE IF EXISTS " + table);
+                    st.execute("DROP TABLE IF EXISTS " + WarehouseHandle.stockTableNameFor(name));
+                }
             }
+            RollupDAO.deleteWarehouse(conn, h.getWarehouseId());
+            WarehouseHandle.invalidate(name);
         }
+        LastActivityBuffer.discard(username, name);
     }
 
     // -----------------------------
@@ -171,7 +195,7 @@ public class WarehouseDAO {
                             rs.getString("city"),
                             rs.getString("address"),
                             rs.getDate("inauguration_date"),
-                            rs.getTimestamp("last_activity_date"),
+                            lastActivity(username, rs),
                             rs.getString("notes")
                     );
                 }
@@ -206,7 +230,7 @@ public class WarehouseDAO {
                             rs.getString("city"),
                             rs.getString("address"),
                             rs.getDate("inauguration_date"),
-                            rs.getTimestamp("last_activity_date"),
+                            lastActivity(username, rs),
                             rs.getString("notes")
                     ));
                 }
@@ -220,18 +244,20 @@ public class WarehouseDAO {
 
     // -----------------------------
     // Update last activity timestamp
+    // Buffered (LastActivityBuffer) and written behind in coalesced batches; inside a
+    // UnitOfWork it is only noted once the transaction commits. The owner comes from
+    // the handle, not the session, so background writers record the right warehouse.
     // -----------------------------
-    public static void updateLastActivity(String warehouseName) {
-        if (!SessionManager.isLoggedIn()) return;
-        String username = SessionManager.getCurrentUser();
-        String sql = "UPDATE warehouses SET last_activity_date=NOW() WHERE username=? AND warehouse_name=?";
-        try (Connection conn = DBConnection.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setString(1, username);
-            ps.setString(2, warehouseName);
-            ps.executeUpdate();
-        } catch (SQLException ex) {
-            ex.printStackTrace();
-        }
+    public static void updateLastActivity(WarehouseHandle h) {
+        String username = h.getUsername();
+        String warehouseName = h.getWarehouseName();
+        UnitOfWork.afterCommit(() -> LastActivityBuffer.touch(username, warehouseName));
+    }
+
+    // Stored last activity, or the newer value still waiting in the write-behind buffer
+    private static Timestamp lastActivity(String username, ResultSet rs) throws SQLException {
+        Timestamp stored = rs.getTimestamp("last_activity_date");
+        Timestamp pending = LastActivityBuffer.pending(username, rs.getString("warehouse_name"));
+        return pending != null && (stored == null || pending.after(stored)) ? pending : stored;
     }
 }
\ No newline at end of file
@@ -8,7 +8,11 @@ import java.sql.SQLException;
 import java.time.LocalDate;
 import java.time.ZoneId;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 // NOTE: JDateChooser and JTextFieldDateEditor imports are removed
 
@@ -27,10 +31,25 @@ public class WarehouseGUI extends JFrame {
     private JTable centerTable;
     private DefaultTableModel centerTableModel;
     private TableRowSorter<DefaultTableModel> rowSorter;
+    private LazyRecordsTableModel lazyModel = null; // set while a large warehouse is shown page by page
+    private RecordsTableModel recordsModel = null;  // set while records are shown from a RecordColumns
+    private boolean showingSearchResults = false;   // recordsModel holds the matches of a page-by-page Find
+
+    // Warehouses with more records than this are shown through LazyRecordsTableModel
+    private static final int LAZY_THRESHOLD = 5000;
+
+    // Most record IDs one delete/shift may name (ranges included)
+    private static final int MAX_ID_LIST = 100_000;
 
     private enum Mode {WAREHOUSE_LIST, WAREHOUSE_RECORDS, FUTURE_TRADES}
     private Mode currentMode = Mode.WAREHOUSE_LIST;
     private String selectedWarehouse = null;
+    private CrossWarehouseReport activeReport = null; // running cross-warehouse stock report, if any
+
+    // Every database call of this window runs through here, off the event dispatch thread
+    private final BackgroundTasks tasks = new BackgroundTasks(this::showBusy);
+    private JLabel busyLabel;
+    private JProgressBar busyBar;
 
     public WarehouseGUI() {
         setTitle("Warehouse Management System - User: " + SessionManager.getCurrentUser());
@@ -41,6 +60,7 @@ public class WarehouseGUI extends JFrame {
         initTopPanel();
         initMainPanels();
         showWarehouseListView();
+        AutoShiftScheduler.start(); // no-op unless an auto-shift time is configured
 
         setLocationRelativeTo(null);
         setVisible(true);
@@ -60,7 +80,16 @@ public class WarehouseGUI extends JFrame {
         top.add(btnWarehouseList);
         top.add(btnFutureRecords);
 
+        // Loading indicator: shown while any background task runs
+        busyLabel = new JLabel();
+        busyBar = new JProgressBar();
+        busyBar.setIndeterminate(true);
+        busyBar.setPreferredSize(new Dimension(120, 16));
+        busyBar.setVisible(false);
+
         JPanel rightFlow = new JPanel(new FlowLayout(FlowLayout.RIGHT, 12, 10));
+        rightFlow.add(busyLabel);
+        rightFlow.add(busyBar);
         rightFlow.add(btnLogout);
 
         JPanel topContainer = new JPanel(new BorderLayout());
@@ -73,6 +102,9 @@ public class WarehouseGUI extends JFrame {
         btnFutureRecords.addActionListener(e -> showFutureTradesView());
 
         btnLogout.addActionListener(e -> {
+            AutoShiftScheduler.stop();
+            cancelCrossWarehouseStock();
+            tasks.newView();
             SessionManager.logout();
             dispose();
             new LoginFrame().setVisible(true);
@@ -150,7 +182,10 @@ public class WarehouseGUI extends JFrame {
     }
 
     // ---------------------- VIEW SWITCHERS ----------------------
+    // Each switch drops the loads still running for the previous view (BackgroundTasks)
     private void showWarehouseListView() {
+        cancelCrossWarehouseStock();
+        tasks.newView();
         currentMode = Mode.WAREHOUSE_LIST;
         selectedWarehouse = null;
         btnWarehouseList.setEnabled(false);
@@ -162,6 +197,8 @@ public class WarehouseGUI extends JFrame {
     }
 
     private void openWarehouseRecords(String warehouseName) {
+        cancelCrossWarehouseStock();
+        tasks.newView();
         currentMode = Mode.WAREHOUSE_RECORDS;
         selectedWarehouse = warehouseName;
         btnWarehouseList.setEnabled(true);
@@ -173,6 +210,8 @@ public class WarehouseGUI extends JFrame {
     }
 
     private void showFutureTradesView() {
+        cancelCrossWarehouseStock();
+        tasks.newView();
         currentMode = Mode.FUTURE_TRADES;
         selectedWarehouse = null;
         btnWarehouseList.setEnabled(true);
@@ -184,80 +223,355 @@ public class WarehouseGUI extends JFrame {
     }
 
     // ---------------------- DATA LOADERS ----------------------
+    // The table is emptied at once and filled when the background read answers
     private void loadWarehouseList() {
-        listModel.clear();
-        List<WarehouseDAO.WarehouseInfo> warehouses = WarehouseDAO.getAllWarehouses();
-        int idx = 1;
-        for (WarehouseDAO.WarehouseInfo w : warehouses)
-            listModel.addElement(idx++ + ". " + w.name);
+        tasks.load("Loading warehouses", WarehouseDAO::getAllWarehouses, warehouses -> {
+            listModel.clear();
+            int idx = 1;
+            for (WarehouseDAO.WarehouseInfo w : warehouses)
+                listModel.addElement(idx++ + ". " + w.name);
+        }, this::showDatabaseError);
     }
 
     private void loadMasterWarehouseTable() {
         // FIX: New Warehouse List Column Order (Date after ID)
         String[] cols = {"ID", "Inauguration_Date", "Warehouse_Name", "City", "Address", "Last_Activity_Date", "Notes"};
-        centerTableModel.setDataVector(new Object[][]{}, cols);
-        List<WarehouseDAO.WarehouseInfo> warehouses = WarehouseDAO.getAllWarehouses();
-        int idx = 1;
-        for (WarehouseDAO.WarehouseInfo w : warehouses)
-            // Note: The DAO returns columns in the old order, so we must map them correctly here:
-            // DAO: name, city, address, inauguration, lastActivity, notes
-            centerTableModel.addRow(new Object[]{
-                    idx++,
-                    w.inauguration, // New Col 1
-                    w.name,         // New Col 2
-                    w.city,
-                    w.address,
-                    w.lastActivity,
-                    w.notes
-            });
+        setTableColumns(cols);
         leftAlignAllColumns();
+        tasks.load("Loading warehouses", WarehouseDAO::getAllWarehouses, warehouses -> {
+            int idx = 1;
+            for (WarehouseDAO.WarehouseInfo w : warehouses)
+                // Note: The DAO returns columns in the old order, so we must map them correctly here:
+                // DAO: name, city, address, inauguration, lastActivity, notes
+                centerTableModel.addRow(new Object[]{
+                        idx++,
+                        w.inauguration, // New Col 1
+                        w.name,         // New Col 2
+                        w.city,
+                        w.address,
+                        w.lastActivity,
+                        w.notes
+                });
+        }, this::showDatabaseError);
+    }
+
+    // Result of the background read of a warehouse's records
+    private static class RecordsLoad {
+        WarehouseHandle handle;
+        int count;
+        RecordColumns records; // null when the warehouse is shown page by page
     }
 
     private void loadRecordsOfWarehouse(String warehouseName) {
         ProductDAO.setCurrentWarehouse(warehouseName);
-        ArrayList<Product> products = ProductDAO.getAllProducts();
         // FIX: New Record/Future Trade Column Order (Date after Product)
-        String[] cols = {"ID", "Product", "Date", "Supplier", "Customer",
-                "Total_Quantity", "Import_Quantity", "Import_Price", "Export_Quantity", "Export_Price"};
-        centerTableModel.setDataVector(new Object[][]{}, cols);
-        for (Product p : products)
-            centerTableModel.addRow(new Object[]{
-                    p.getId(),
-                    p.getName(),
-                    p.getDateAdded(), // New Col 2
-                    p.getSupplier(),
-                    p.getCustomer(),
-                    p.gettotQuantity(),
-                    p.getimpQuantity(),
-                    p.getimpPrice(),
-                    p.getexpQuantity(),
-                    p.getexpPrice()
+        setTableColumns(RecordColumns.COLUMNS);
+        leftAlignAllColumns();
+
+        tasks.load("Loading records of " + warehouseName, () -> {
+            RecordsLoad load = new RecordsLoad();
+            load.handle = WarehouseHandle.of(warehouseName);
+            load.count = ProductDAO.countRecords(load.handle);
+            // Large warehouses: only the rows on screen are read (no sorting; Find streams the matches)
+            if (load.count <= LAZY_THRESHOLD) load.records = ProductDAO.loadRecordColumns(load.handle, load.count);
+            return load;
+        }, load -> {
+            if (load.records == null) {
+                showLazyRecords(new LazyRecordsTableModel(load.handle, load.count));
+            } else {
+                showRecords(new RecordsTableModel(load.records), false);
+            }
+        }, this::showDatabaseError);
+    }
+
+    // Current stock per product, read from the warehouse's current-stock table
+    private void loadCurrentStock(String warehouseName) {
+        cancelCrossWarehouseStock();
+        tasks.newView();
+        clearBottomPanel();
+        String[] cols = {"Product", "Current_Quantity", "Avg_Import_Cost", "Stock_Value", "Last_Record_ID"};
+        setTableColumns(cols);
+        leftAlignAllColumns();
+        tasks.load("Reading current stock", () -> ProductDAO.getCurrentStock(WarehouseHandle.of(warehouseName)), levels -> {
+            for (ProductDAO.StockLevel s : levels)
+                centerTableModel.addRow(new Object[]{
+                        s.product,
+                        s.quantity,
+                        Math.round(s.averageImportCost * 100.0) / 100.0,
+                        Math.round(s.stockValue * 100.0) / 100.0,
+                        s.lastRecordId
+                });
+        }, this::showDatabaseError);
+    }
+
+    // FIFO and weighted-average valuation per product (see InventoryValuation)
+    private void loadValuation(String warehouseName) {
+        cancelCrossWarehouseStock();
+        tasks.newView();
+        clearBottomPanel();
+        String[] cols = {"Product", "Current_Quantity", "FIFO_Value", "FIFO_COGS", "FIFO_Margin",
+                "Avg_Cost", "Avg_Value", "Avg_COGS", "Avg_Margin", "Revenue"};
+        setTableColumns(cols);
+        leftAlignAllColumns();
+        tasks.load("Valuing stock", () -> InventoryValuation.valueWarehouse(warehouseName), rows -> {
+            for (InventoryValuation.ProductValuation v : rows)
+                centerTableModel.addRow(new Object[]{
+                        v.product,
+                        v.quantity,
+                        Math.round(v.fifoValue * 100.0) / 100.0,
+                        Math.round(v.fifoCogs * 100.0) / 100.0,
+                        Math.round(v.fifoMargin * 100.0) / 100.0,
+                        Math.round(v.averageCost * 100.0) / 100.0,
+                        Math.round(v.averageValue * 100.0) / 100.0,
+                        Math.round(v.averageCogs * 100.0) / 100.0,
+                        Math.round(v.averageMargin * 100.0) / 100.0,
+                        Math.round(v.revenue * 100.0) / 100.0
+                });
+        }, this::showDatabaseError);
+    }
+
+    // Stock at the end of a past date, for one product or (product left empty) the whole warehouse
+    private void showStockAsOfForm() {
+        clearBottomPanel();
+        JPanel form = new JPanel(new GridLayout(0, 2, 10, 8));
+        DateInputPanel dateChooser = new DateInputPanel();
+        normalizeFieldHeight(dateChooser);
+        JTextField tfProd = new JTextField();
+        JButton submit = new JButton("Show Stock");
+
+        form.add(new JLabel("Date:")); form.add(dateChooser);
+        form.add(new JLabel("Product (empty = all):")); form.add(tfProd);
+        bottomPanel.add(new JScrollPane(form), BorderLayout.CENTER);
+        bottomPanel.add(submit, BorderLayout.SOUTH);
+        bottomPanel.revalidate();
+
+        submit.addActionListener(e -> {
+            LocalDate date;
+            try {
+                date = dateChooser.getDate();
+            } catch (Exception ex) {
+                JOptionPane.showMessageDialog(this, "❌ Failed to compute stock: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            String product = tfProd.getText().trim();
+            String warehouse = selectedWarehouse;
+            cancelCrossWarehouseStock();
+            tasks.newView();
+            String[] cols = {"Product", "Stock_As_Of_" + date};
+            setTableColumns(cols);
+            leftAlignAllColumns();
+            tasks.load("Computing stock as of " + date, () -> {
+                WarehouseHandle h = WarehouseHandle.of(warehouse);
+                if (product.isEmpty()) return RollupDAO.stockAsOf(h, date);
+                Map<String, Long> stock = new LinkedHashMap<>();
+                stock.put(product, RollupDAO.stockAsOf(h, product, date));
+                return stock;
+            }, stock -> {
+                for (Map.Entry<String, Long> s : stock.entrySet())
+                    centerTableModel.addRow(new Object[]{s.getKey(), s.getValue()});
+            }, ex -> showTaskError(ex, "Failed to compute stock"));
+        });
+    }
+
+    // Imports, exports and closing stock per product and day/week/month/year (daily rollup table)
+    private void showMovementSummaryForm() {
+        clearBottomPanel();
+        JPanel form = new JPanel(new GridLayout(0, 2, 10, 8));
+        DateInputPanel dateFrom = new DateInputPanel();
+        DateInputPanel dateTo = new DateInputPanel();
+        normalizeFieldHeight(dateFrom);
+        normalizeFieldHeight(dateTo);
+        dateFrom.setDate(LocalDate.now().withDayOfYear(1));
+        JComboBox<RollupDAO.Period> cbPeriod = new JComboBox<>(RollupDAO.Period.values());
+        cbPeriod.setSelectedItem(RollupDAO.Period.MONTH);
+        JTextField tfProd = new JTextField();
+        JButton submit = new JButton("Show Summary");
+        JButton rebuild = new JButton("Rebuild Summary");
+
+        form.add(new JLabel("From:")); form.add(dateFrom);
+        form.add(new JLabel("To:")); form.add(dateTo);
+        form.add(new JLabel("Period:")); form.add(cbPeriod);
+        form.add(new JLabel("Product (empty = all):")); form.add(tfProd);
+        JPanel buttons = new JPanel(new GridLayout(1, 2, 10, 0));
+        buttons.add(submit); buttons.add(rebuild);
+        bottomPanel.add(new JScrollPane(form), BorderLayout.CENTER);
+        bottomPanel.add(buttons, BorderLayout.SOUTH);
+        bottomPanel.revalidate();
+
+        submit.addActionListener(e -> {
+            LocalDate from, to;
+            try {
+                from = dateFrom.getDate();
+                to = dateTo.getDate();
+            } catch (Exception ex) {
+                JOptionPane.showMessageDialog(this, "❌ Failed to load summary: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            String product = tfProd.getText().trim();
+            RollupDAO.Period period = (RollupDAO.Period) cbPeriod.getSelectedItem();
+            String warehouse = selectedWarehouse;
+            cancelCrossWarehouseStock();
+            tasks.newView();
+            String[] cols = {"Product", "Period_Start", "Imported", "Exported", "Import_Value", "Export_Value", "Closing_Stock"};
+            setTableColumns(cols);
+            leftAlignAllColumns();
+            tasks.load("Loading movement summary", () -> RollupDAO.summarize(WarehouseHandle.of(warehouse),
+                    product.isEmpty() ? null : product, from, to, period), rows -> {
+                for (RollupDAO.Summary r : rows)
+                    centerTableModel.addRow(new Object[]{
+                            r.product,
+                            r.periodStart,
+                            r.importedQuantity,
+                            r.exportedQuantity,
+                            Math.round(r.importValue * 100.0) / 100.0,
+                            Math.round(r.exportValue * 100.0) / 100.0,
+                            r.closingStock
+                    });
+            }, ex -> showTaskError(ex, "Failed to load summary"));
+        });
+
+        rebuild.addActionListener(e -> {
+            String warehouse = selectedWarehouse;
+            rebuild.setEnabled(false);
+            tasks.write("Rebuilding movement summary", () -> {
+                RollupDAO.rebuild(WarehouseHandle.of(warehouse));
+                return null;
+            }, done -> {
+                rebuild.setEnabled(true);
+                JOptionPane.showMessageDialog(this, "✅ Summary rebuilt from the records.");
+            }, ex -> {
+                rebuild.setEnabled(true);
+                showTaskError(ex, "Failed to rebuild summary");
             });
+        });
+    }
+
+    // Current stock rolled forward through the warehouse's future trades, one row per trade day
+    private void loadProjectedStock(String warehouseName) {
+        cancelCrossWarehouseStock();
+        tasks.newView();
+        clearBottomPanel();
+        String[] cols = {"Product", "Date", "Import_Quantity", "Export_Quantity", "Projected_Stock", "Status"};
+        setTableColumns(cols);
         leftAlignAllColumns();
+        tasks.load("Projecting stock", () -> StockProjection.projectWarehouse(warehouseName), projections -> {
+            for (StockProjection.ProductProjection p : projections) {
+                centerTableModel.addRow(new Object[]{p.product, LocalDate.now(), "", "", p.currentStock, "Current"});
+                for (StockProjection.Point pt : p.timeline) {
+                    String status = pt.date.equals(p.firstNegativeDate) ? "⚠ First negative"
+                            : pt.balance < 0 ? "Negative" : "";
+                    centerTableModel.addRow(new Object[]{p.product, pt.date, pt.imports, pt.exports, pt.balance, status});
+                }
+            }
+
+            List<StockProjection.ProductProjection> shortages = StockProjection.shortages(projections);
+            if (!shortages.isEmpty()) {
+                StringBuilder sb = new StringBuilder("⚠ Projected stock goes negative for:\n");
+                for (StockProjection.ProductProjection p : shortages)
+                    sb.append("  ").append(p.product).append(" on ").append(p.firstNegativeDate).append('\n');
+                JOptionPane.showMessageDialog(this, sb.toString(), "Projected Shortage", JOptionPane.WARNING_MESSAGE);
+            }
+        }, this::showDatabaseError);
+    }
+    // Stock of every product in every warehouse; rows appear as each warehouse answers,
+    // followed by per-product totals once all have reported
+    private void loadCrossWarehouseStock() {
+        tasks.newView();
+        cancelCrossWarehouseStock();
+        clearBottomPanel();
+        String[] cols = {"Warehouse_Name", "Product", "Current_Quantity", "Avg_Import_Cost", "Stock_Value"};
+        setTableColumns(cols);
+        leftAlignAllColumns();
+
+        CrossWarehouseReport report = new CrossWarehouseReport();
+        activeReport = report;
+        List<String> failed = new ArrayList<>();
+
+        SwingWorker<Void, Object[]> worker = new SwingWorker<>() {
+            @Override
+            protected Void doInBackground() throws Exception {
+                report.run(new CrossWarehouseReport.Listener() {
+                    @Override
+                    public void onWarehouse(String warehouseName, List<ProductDAO.StockLevel> levels) {
+                        for (ProductDAO.StockLevel s : levels)
+                            publish(new Object[]{
+                                    warehouseName,
+                                    s.product,
+                                    s.quantity,
+                                    Math.round(s.averageImportCost * 100.0) / 100.0,
+                                    Math.round(s.stockValue * 100.0) / 100.0
+                            });
+                    }
+
+                    @Override
+                    public void onError(String warehouseName, Exception ex) {
+                        ex.printStackTrace();
+                        synchronized (failed) {
+                            failed.add(warehouseName);
+                        }
+                    }
+                });
+                return null;
+            }
+
+            @Override
+            protected void process(List<Object[]> rows) {
+                if (activeReport != report) return; // user moved on
+                for (Object[] row : rows) centerTableModel.addRow(row);
+            }
+
+            @Override
+            protected void done() {
+                if (activeReport != report) return;
+                activeReport = null;
+                for (CrossWarehouseReport.ProductTotal t : report.getTotals())
+                    centerTableModel.addRow(new Object[]{
+                            "ALL (" + t.warehouses + ")",
+                            t.product,
+                            t.quantity,
+                            t.quantity > 0 ? Math.round(t.stockValue / t.quantity * 100.0) / 100.0 : 0.0,
+                            Math.round(t.stockValue * 100.0) / 100.0
+                    });
+                synchronized (failed) {
+                    if (!failed.isEmpty())
+                        JOptionPane.showMessageDialog(WarehouseGUI.this, "❌ Could not read: " + String.join(", ", failed),
+                                "Database Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        };
+        tasks.trackForView("Reading all warehouses", worker);
+        worker.execute();
+    }
+
+    private void cancelCrossWarehouseStock() {
+        if (activeReport != null) {
+            activeReport.cancel();
+            activeReport = null;
+        }
     }
 
     private void loadFutureTrades() {
-        ArrayList<FutureTrade> trades = FutureTradeDAO.getAllFutureTrades();
         // FIX: New Record/Future Trade Column Order (Date after Product)
         String[] cols = {"ID", "Warehouse_Name", "Product", "Date", "Supplier", "Customer",
                 "Import_Quantity", "Import_Price", "Export_Quantity", "Export_Price"};
-        centerTableModel.setDataVector(new Object[][]{}, cols);
-        for (FutureTrade t : trades)
-            centerTableModel.addRow(new Object[]{
-                    t.getId(),
-                    t.getWarehouse(),
-                    t.getName(),
-                    t.getDateAdded(), // New Col 3
-                    t.getSupplier(),
-                    t.getCustomer(),
-                    t.getimpQuantity(),
-                    t.getimpPrice(),
-                    t.getexpQuantity(),
-                    t.getexpPrice()
-            });
+        setTableColumns(cols);
         leftAlignAllColumns();
+        tasks.load("Loading future trades", FutureTradeDAO::getAllFutureTrades, trades -> {
+            for (FutureTrade t : trades)
+                centerTableModel.addRow(new Object[]{
+                        t.getId(),
+                        t.getWarehouse(),
+                        t.getName(),
+                        t.getDateAdded(), // New Col 3
+                        t.getSupplier(),
+                        t.getCustomer(),
+                        t.getimpQuantity(),
+                        t.getimpPrice(),
+                        t.getexpQuantity(),
+                        t.getexpPrice()
+                });
+        }, this::showDatabaseError);
     }
-
     // ---------------------- CONTROLS ----------------------
     private void showWarehouseControls() {
         resetRightPanel();
@@ -265,11 +579,15 @@ public class WarehouseGUI extends JFrame {
         JButton edit = new JButton("Edit Warehouse");
         JButton del = new JButton("Delete Warehouse");
         JButton exp = new JButton("Export Table to .txt");
+        JButton unify = new JButton("Move to Unified Store");
+        JButton allStock = new JButton("Stock Across Warehouses");
         add.addActionListener(e -> showNewWarehouseForm());
         edit.addActionListener(e -> showEditWarehouseForm());
         del.addActionListener(e -> showDeleteWarehouseForm());
         exp.addActionListener(e -> exportTable());
-        rightPanel.add(add); rightPanel.add(edit); rightPanel.add(del); rightPanel.add(exp);
+        unify.addActionListener(e -> migrateToUnifiedStore());
+        allStock.addActionListener(e -> loadCrossWarehouseStock());
+        rightPanel.add(add); rightPanel.add(edit); rightPanel.add(del); rightPanel.add(exp); rightPanel.add(allStock); rightPanel.add(unify);
         addFindBar();
         rightPanel.revalidate();
         rightPanel.repaint();
@@ -281,13 +599,25 @@ public class WarehouseGUI extends JFrame {
         JButton exp = new JButton("Record Export");
         JButton upd = new JButton("Update Record");
         JButton del = new JButton("Delete Record");
+        JButton stock = new JButton("Current Stock");
+        JButton value = new JButton("Stock Valuation");
+        JButton asOf = new JButton("Stock as of Date");
+        JButton summary = new JButton("Movement Summary");
+        JButton projected = new JButton("Projected Stock");
+        JButton imptxt = new JButton("Import from File");
         JButton exptxt = new JButton("Export Table to .txt");
         imp.addActionListener(e -> showRecordImportForm());
         exp.addActionListener(e -> showRecordExportForm());
         upd.addActionListener(e -> showRecordUpdateForm());
         del.addActionListener(e -> showRecordDeleteForm());
+        stock.addActionListener(e -> loadCurrentStock(selectedWarehouse));
+        value.addActionListener(e -> loadValuation(selectedWarehouse));
+        asOf.addActionListener(e -> showStockAsOfForm());
+        summary.addActionListener(e -> showMovementSummaryForm());
+        projected.addActionListener(e -> loadProjectedStock(selectedWarehouse));
+        imptxt.addActionListener(e -> importFromFile());
         exptxt.addActionListener(e -> exportTable());
-        rightPanel.add(imp); rightPanel.add(exp); rightPanel.add(upd); rightPanel.add(del); rightPanel.add(exptxt);
+        rightPanel.add(imp); rightPanel.add(exp); rightPanel.add(upd); rightPanel.add(del); rightPanel.add(stock); rightPanel.add(value); rightPanel.add(asOf); rightPanel.add(summary); rightPanel.add(projected); rightPanel.add(imptxt); rightPanel.add(exptxt);
         addFindBar();
         rightPanel.revalidate();
         rightPanel.repaint();
@@ -300,14 +630,16 @@ public class WarehouseGUI extends JFrame {
         JButton edit = new JButton("Edit Record");
         JButton del = new JButton("Delete Record");
         JButton shift = new JButton("Shift Record");
+        JButton imp = new JButton("Import from File");
         JButton exp = new JButton("Export Table to .txt");
         addImport.addActionListener(e -> showFutureImportForm());
         addExport.addActionListener(e -> showFutureExportForm());
         edit.addActionListener(e -> showFutureUpdateForm());
         del.addActionListener(e -> showFutureDeleteForm());
         shift.addActionListener(e -> showShiftForm());
+        imp.addActionListener(e -> importFromFile());
         exp.addActionListener(e -> exportTable());
-        rightPanel.add(addImport); rightPanel.add(addExport); rightPanel.add(edit); rightPanel.add(del); rightPanel.add(shift); rightPanel.add(exp);
+        rightPanel.add(addImport); rightPanel.add(addExport); rightPanel.add(edit); rightPanel.add(del); rightPanel.add(shift); rightPanel.add(imp); rightPanel.add(exp);
         addFindBar();
         rightPanel.revalidate();
         rightPanel.repaint();
@@ -318,6 +650,7 @@ public class WarehouseGUI extends JFrame {
     // ============================================================
 
     // ---------- WAREHOUSE FORMS ----------
+    // Form submits run through tasks.write(); the button stays disabled until the write answers
     private void showNewWarehouseForm() {
         clearBottomPanel();
         JPanel form = new JPanel(new GridLayout(0, 2, 10, 8));
@@ -348,35 +681,43 @@ public class WarehouseGUI extends JFrame {
         bottomPanel.revalidate();
 
         submit.addActionListener(e -> {
+            Date indate = null;
             try {
                 // Handle optional fields
                 // Only use the date if it's set to something other than the default "today" date logic in the panel
-                Date indate = null;
                 if (dateInaug.getDate() != null && !dateInaug.getDate().isEqual(LocalDate.now())) {
                     indate = dateInaug.getSqlDate();
                 } else if (tfName.getText().trim().isEmpty()) {
                     JOptionPane.showMessageDialog(this, "❌ Warehouse Name is required.");
                     return;
                 }
-
-                WarehouseDAO.createWarehouse(
-                        tfName.getText().trim(),
-                        tfCity.getText().trim().isEmpty() ? null : tfCity.getText().trim(),
-                        tfAddress.getText().trim().isEmpty() ? null : tfAddress.getText().trim(),
-                        indate,
-                        tfNotes.getText().trim().isEmpty() ? null : tfNotes.getText().trim()
-                );
-
-                loadWarehouseList();
-                loadMasterWarehouseTable();
-
-                JOptionPane.showMessageDialog(this, "✅ Warehouse created successfully.");
-                clearBottomPanel();
-            } catch (SQLException ex) {
-                JOptionPane.showMessageDialog(this, "❌ Database error: " + ex.getMessage());
             } catch (Exception ex) {
                 JOptionPane.showMessageDialog(this, "❌ Failed to create warehouse: " + ex.getMessage());
+                return;
             }
+            String name = tfName.getText().trim();
+            String city = tfCity.getText().trim().isEmpty() ? null : tfCity.getText().trim();
+            String address = tfAddress.getText().trim().isEmpty() ? null : tfAddress.getText().trim();
+            String notes = tfNotes.getText().trim().isEmpty() ? null : tfNotes.getText().trim();
+            Date inauguration = indate;
+
+            submit.setEnabled(false);
+            int view = tasks.currentView();
+            tasks.write("Creating warehouse " + name, () -> {
+                WarehouseDAO.createWarehouse(name, city, address, inauguration, notes);
+                return null;
+            }, done -> {
+                refreshWarehouses(view);
+                JOptionPane.showMessageDialog(this, "✅ Warehouse created successfully.");
+                closeForm(submit);
+            }, ex -> {
+                submit.setEnabled(true);
+                if (ex instanceof SQLException) {
+                    JOptionPane.showMessageDialog(this, "❌ Database error: " + ex.getMessage());
+                } else {
+                    JOptionPane.showMessageDialog(this, "❌ Failed to create warehouse: " + ex.getMessage());
+                }
+            });
         });
     }
 
@@ -384,7 +725,7 @@ public class WarehouseGUI extends JFrame {
         clearBottomPanel();
         JPanel inputPanel = new JPanel(new FlowLayout(FlowLayout.CENTER, 10, 10));
         JComboBox<String> cbWarehouse = new JComboBox<>();
-        WarehouseDAO.getAllWarehouses().forEach(w -> cbWarehouse.addItem(w.name));
+        fillWarehouseCombo(cbWarehouse, null);
         normalizeFieldHeight(cbWarehouse);
         JButton btnSelect = new JButton("Select Warehouse");
 
@@ -404,13 +745,17 @@ public class WarehouseGUI extends JFrame {
 
     private void showEditWarehouseDetailsForm(String oldName) {
         clearBottomPanel();
-        WarehouseDAO.WarehouseInfo info = WarehouseDAO.getWarehouseByName(oldName);
-        if (info == null) {
-            JOptionPane.showMessageDialog(this, "Warehouse data not found.", "Error", JOptionPane.ERROR_MESSAGE);
-            showWarehouseListView(); // Revert to list view
-            return;
-        }
+        tasks.load("Reading warehouse " + oldName, () -> WarehouseDAO.getWarehouseByName(oldName), info -> {
+            if (info == null) {
+                JOptionPane.showMessageDialog(this, "Warehouse data not found.", "Error", JOptionPane.ERROR_MESSAGE);
+                showWarehouseListView(); // Revert to list view
+                return;
+            }
+            buildEditWarehouseForm(oldName, info);
+        }, this::showDatabaseError);
+    }
 
+    private void buildEditWarehouseForm(String oldName, WarehouseDAO.WarehouseInfo info) {
         JPanel form = new JPanel(new GridLayout(0, 2, 10, 8));
         JTextField tfName = new JTextField(info.name);
         JTextField tfCity = new JTextField(info.city != null ? info.city : "");
@@ -442,32 +787,40 @@ public class WarehouseGUI extends JFrame {
         bottomPanel.revalidate();
 
         update.addActionListener(e -> {
+            if (tfName.getText().trim().isEmpty()) {
+                JOptionPane.showMessageDialog(this, "❌ Warehouse Name is required.");
+                return;
+            }
+            Date newDate;
             try {
-                if (tfName.getText().trim().isEmpty()) {
-                    JOptionPane.showMessageDialog(this, "❌ Warehouse Name is required.");
-                    return;
-                }
-
                 // Handle date conversion from the panel
-                Date newDate = dateInaug.getSqlDate();
-
-                WarehouseDAO.editWarehouse(
-                        oldName,
-                        tfName.getText().trim(),
-                        tfCity.getText().trim().isEmpty() ? null : tfCity.getText().trim(),
-                        tfAddress.getText().trim().isEmpty() ? null : tfAddress.getText().trim(),
-                        newDate,
-                        tfNotes.getText().trim().isEmpty() ? null : tfNotes.getText().trim()
-                );
-                loadWarehouseList();
-                loadMasterWarehouseTable();
-                JOptionPane.showMessageDialog(this, "✅ Warehouse updated successfully.");
-                clearBottomPanel();
-            } catch (SQLException ex) {
-                JOptionPane.showMessageDialog(this, "❌ Database error: " + ex.getMessage());
+                newDate = dateInaug.getSqlDate();
             } catch (Exception ex) {
                 JOptionPane.showMessageDialog(this, "❌ Failed to update warehouse: " + ex.getMessage());
+                return;
             }
+            String name = tfName.getText().trim();
+            String city = tfCity.getText().trim().isEmpty() ? null : tfCity.getText().trim();
+            String address = tfAddress.getText().trim().isEmpty() ? null : tfAddress.getText().trim();
+            String notes = tfNotes.getText().trim().isEmpty() ? null : tfNotes.getText().trim();
+
+            update.setEnabled(false);
+            int view = tasks.currentView();
+            tasks.write("Updating warehouse " + oldName, () -> {
+                WarehouseDAO.editWarehouse(oldName, name, city, address, newDate, notes);
+                return null;
+            }, done -> {
+                refreshWarehouses(view);
+                JOptionPane.showMessageDialog(this, "✅ Warehouse updated successfully.");
+                closeForm(update);
+            }, ex -> {
+                update.setEnabled(true);
+                if (ex instanceof SQLException) {
+                    JOptionPane.showMessageDialog(this, "❌ Database error: " + ex.getMessage());
+                } else {
+                    JOptionPane.showMessageDialog(this, "❌ Failed to update warehouse: " + ex.getMessage());
+                }
+            });
         });
     }
 
@@ -475,7 +828,7 @@ public class WarehouseGUI extends JFrame {
         clearBottomPanel();
         JPanel form = new JPanel(new FlowLayout(FlowLayout.CENTER, 10, 20));
         JComboBox<String> cbWarehouse = new JComboBox<>();
-        WarehouseDAO.getAllWarehouses().forEach(w -> cbWarehouse.addItem(w.name));
+        fillWarehouseCombo(cbWarehouse, null);
         normalizeFieldHeight(cbWarehouse);
         JButton del = new JButton("Delete");
 
@@ -492,37 +845,50 @@ public class WarehouseGUI extends JFrame {
                 return;
             }
 
-            try {
-                // Pre-check for history integrity (Point 12)
-                if (ProductDAO.hasNegativeStockHistory(name)) {
+            // Pre-check for history integrity (Point 12)
+            del.setEnabled(false);
+            tasks.load("Checking stock history of " + name, () -> ProductDAO.hasNegativeStockHistory(name), negative -> {
+                del.setEnabled(true);
+                if (negative) {
                     JOptionPane.showMessageDialog(this,
                             "❌ Cannot delete: Deleting this warehouse would violate stock integrity (negative stock detected in history).",
                             "Stock Integrity Warning",
                             JOptionPane.ERROR_MESSAGE);
                     return;
                 }
-            } catch (Exception ex) {
+                confirmDeleteWarehouse(name, del);
+            }, ex -> {
+                del.setEnabled(true);
                 // Handle cases where the records table doesn't exist yet (which is fine)
-                if (!ex.getMessage().contains("Table") && !ex.getMessage().contains("exist")) {
+                if (ex.getMessage() == null || (!ex.getMessage().contains("Table") && !ex.getMessage().contains("exist"))) {
                     JOptionPane.showMessageDialog(this, "❌ Pre-check failed: " + ex.getMessage());
                     return;
                 }
-            }
-
-            int confirm = JOptionPane.showConfirmDialog(this,
-                    "Are you sure you want to delete \"" + name + "\"? This action cannot be undone and will delete all associated records.", "Confirm Deletion",
-                    JOptionPane.YES_NO_OPTION, JOptionPane.WARNING_MESSAGE);
-            if (confirm != JOptionPane.YES_OPTION) return;
+                confirmDeleteWarehouse(name, del);
+            });
+        });
+    }
 
-            try {
-                WarehouseDAO.deleteWarehouse(name);
-                loadWarehouseList();
-                loadMasterWarehouseTable();
-                JOptionPane.showMessageDialog(this, "✅ Warehouse deleted successfully.");
-                clearBottomPanel();
-            } catch (SQLException ex) {
+    private void confirmDeleteWarehouse(String name, JButton del) {
+        int confirm = JOptionPane.showConfirmDialog(this,
+                "Are you sure you want to delete \"" + name + "\"? This action cannot be undone and will delete all associated records.", "Confirm Deletion",
+                JOptionPane.YES_NO_OPTION, JOptionPane.WARNING_MESSAGE);
+        if (confirm != JOptionPane.YES_OPTION) return;
+
+        del.setEnabled(false);
+        int view = tasks.currentView();
+        tasks.write("Deleting warehouse " + name, () -> {
+            WarehouseDAO.deleteWarehouse(name);
+            return null;
+        }, done -> {
+            refreshWarehouses(view);
+            JOptionPane.showMessageDialog(this, "✅ Warehouse deleted successfully.");
+            closeForm(del);
+        }, ex -> {
+            del.setEnabled(true);
+            if (ex instanceof SQLException) {
                 JOptionPane.showMessageDialog(this, "❌ Database error: " + ex.getMessage());
-            } catch (Exception ex) {
+            } else {
                 JOptionPane.showMessageDialog(this, "❌ Failed to delete warehouse: " + ex.getMessage());
             }
         });
@@ -551,29 +917,37 @@ public class WarehouseGUI extends JFrame {
         bottomPanel.revalidate();
 
         submit.addActionListener(e -> {
+            Product p;
             try {
-                Product p = new Product(0, tfProd.getText().trim(), tfSupp.getText().trim(),
+                p = new Product(0, tfProd.getText().trim(), tfSupp.getText().trim(),
                         tfCust.getText().trim(), 0, parseInt(tfQty),
                         parseDouble(tfPrice), 0, 0.0,
                         dateChooser.getDate()); // Uses getDate()
-                ProductDAO.setCurrentWarehouse(selectedWarehouse);
-                ProductDAO.addProduct(p);
-
+            } catch (Exception ex) {
+                JOptionPane.showMessageDialog(this, "❌ Failed to record import: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            String warehouse = selectedWarehouse;
+
+            submit.setEnabled(false);
+            int view = tasks.currentView();
+            tasks.write("Recording import", () -> {
+                ProductDAO.addProduct(WarehouseHandle.of(warehouse), p);
+                return null;
+            }, done -> {
                 // FIX Point 4: Refresh the table immediately
-                loadRecordsOfWarehouse(selectedWarehouse);
-
+                refreshRecords(warehouse, view);
                 JOptionPane.showMessageDialog(this, "✅ Import recorded successfully.");
-                clearBottomPanel();
-            } catch (SQLException ex) {
+                closeForm(submit);
+            }, ex -> {
+                submit.setEnabled(true);
                 // Handle stock warning or connection issue
-                if (ex.getMessage().contains("Negative stock detected") || ex.getMessage().contains("Import aborted")) {
+                if (ex instanceof SQLException && (ex.getMessage().contains("Negative stock detected") || ex.getMessage().contains("Import aborted"))) {
                     JOptionPane.showMessageDialog(this, "❌ Import aborted: " + ex.getMessage(), "Stock Integrity Warning", JOptionPane.ERROR_MESSAGE);
                 } else {
-                    JOptionPane.showMessageDialog(this, "❌ Database error: " + ex.getMessage(), "Database Error", JOptionPane.ERROR_MESSAGE);
+                    showTaskError(ex, "Failed to record import");
                 }
-            } catch (Exception ex) {
-                JOptionPane.showMessageDialog(this, "❌ Failed to record import: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
-            }
+            });
         });
     }
 
@@ -598,32 +972,39 @@ public class WarehouseGUI extends JFrame {
         bottomPanel.revalidate();
 
         submit.addActionListener(e -> {
+            Product p;
             try {
-                Product p = new Product(0, tfProd.getText().trim(), tfSupp.getText().trim(),
+                p = new Product(0, tfProd.getText().trim(), tfSupp.getText().trim(),
                         tfCust.getText().trim(), 0, 0, 0.0, parseInt(tfQty),
                         parseDouble(tfPrice),
                         dateChooser.getDate()); // Uses getDate()
-                ProductDAO.setCurrentWarehouse(selectedWarehouse);
-                boolean ok = ProductDAO.exportProduct(p);
+            } catch (Exception ex) {
+                JOptionPane.showMessageDialog(this, "❌ Failed to record export: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            String warehouse = selectedWarehouse;
 
+            submit.setEnabled(false);
+            int view = tasks.currentView();
+            tasks.write("Recording export", () -> ProductDAO.exportProduct(WarehouseHandle.of(warehouse), p), ok -> {
+                submit.setEnabled(true);
                 if (ok) {
                     // FIX Point 4: Refresh the table immediately
-                    loadRecordsOfWarehouse(selectedWarehouse);
+                    refreshRecords(warehouse, view);
                     JOptionPane.showMessageDialog(this, "✅ Export recorded successfully.");
-                    clearBottomPanel();
+                    closeForm(submit);
                 } else {
                     JOptionPane.showMessageDialog(this, "❌ Not enough stock for export.", "Stock Error", JOptionPane.WARNING_MESSAGE);
                 }
-            } catch (SQLException ex) {
+            }, ex -> {
+                submit.setEnabled(true);
                 // Handle stock warning or connection issue
-                if (ex.getMessage().contains("Negative stock detected") || ex.getMessage().contains("Export aborted")) {
+                if (ex instanceof SQLException && (ex.getMessage().contains("Negative stock detected") || ex.getMessage().contains("Export aborted"))) {
                     JOptionPane.showMessageDialog(this, "❌ Export aborted: " + ex.getMessage(), "Stock Integrity Warning", JOptionPane.ERROR_MESSAGE);
                 } else {
-                    JOptionPane.showMessageDialog(this, "❌ Database error: " + ex.getMessage(), "Database Error", JOptionPane.ERROR_MESSAGE);
+                    showTaskError(ex, "Failed to record export");
                 }
-            } catch (Exception ex) {
-                JOptionPane.showMessageDialog(this, "❌ Failed to record export: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
-            }
+            });
         });
     }
 
@@ -652,21 +1033,21 @@ public class WarehouseGUI extends JFrame {
 
     private void showRecordUpdateDetailsForm(int id) {
         clearBottomPanel();
-        ProductDAO.setCurrentWarehouse(selectedWarehouse);
-        Product p;
-        try {
-            p = ProductDAO.getProductById(id);
+        String warehouse = selectedWarehouse;
+        tasks.load("Reading record " + id, () -> ProductDAO.getProductById(WarehouseHandle.of(warehouse), id), p -> {
             if (p == null) {
                 JOptionPane.showMessageDialog(this, "❌ Record ID " + id + " not found.", "Error", JOptionPane.ERROR_MESSAGE);
                 showRecordControls();
                 return;
             }
-        } catch (SQLException ex) {
-            JOptionPane.showMessageDialog(this, "❌ Database error: " + ex.getMessage(), "Database Error", JOptionPane.ERROR_MESSAGE);
+            buildRecordUpdateForm(warehouse, p);
+        }, ex -> {
+            showDatabaseError(ex);
             showRecordControls();
-            return;
-        }
+        });
+    }
 
+    private void buildRecordUpdateForm(String warehouse, Product p) {
         JPanel form = new JPanel(new GridLayout(0, 2, 10, 8));
         JTextField tfID = new JTextField(String.valueOf(p.getId())); tfID.setEditable(false);
         JTextField tfProd = new JTextField(p.getName());
@@ -700,65 +1081,86 @@ public class WarehouseGUI extends JFrame {
         bottomPanel.revalidate();
 
         submit.addActionListener(e -> {
+            Product updatedP;
             try {
-                Product updatedP = new Product(Integer.parseInt(tfID.getText().trim()), tfProd.getText().trim(),
+                updatedP = new Product(Integer.parseInt(tfID.getText().trim()), tfProd.getText().trim(),
                         tfSupp.getText().trim(), tfCust.getText().trim(), 0,
                         parseInt(tfImpQ), parseDouble(tfImpP), parseInt(tfExpQ),
                         parseDouble(tfExpP),
                         dateChooser.getDate()); // Uses getDate()
-                ProductDAO.setCurrentWarehouse(selectedWarehouse);
-                ProductDAO.updateProduct(updatedP);
+            } catch (Exception ex) {
+                JOptionPane.showMessageDialog(this, "❌ Failed to update record: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
 
+            submit.setEnabled(false);
+            int view = tasks.currentView();
+            tasks.write("Updating record " + updatedP.getId(), () -> {
+                ProductDAO.updateProduct(WarehouseHandle.of(warehouse), updatedP);
+                return null;
+            }, done -> {
                 // FIX Point 6: Refresh the table immediately
-                loadRecordsOfWarehouse(selectedWarehouse);
-
+                refreshRecords(warehouse, view);
                 JOptionPane.showMessageDialog(this, "✅ Record updated successfully. Stock history recalculated.");
-                clearBottomPanel();
-            } catch (SQLException ex) {
+                closeForm(submit);
+            }, ex -> {
+                submit.setEnabled(true);
                 // FIX Point 6: Handle stock warning or connection issue
-                if (ex.getMessage().contains("Negative stock detected") || ex.getMessage().contains("Update aborted")) {
+                if (ex instanceof SQLException && (ex.getMessage().contains("Negative stock detected") || ex.getMessage().contains("Update aborted"))) {
                     JOptionPane.showMessageDialog(this, "❌ Update aborted: " + ex.getMessage(), "Stock Integrity Warning", JOptionPane.ERROR_MESSAGE);
                 } else {
-                    JOptionPane.showMessageDialog(this, "❌ Database error: " + ex.getMessage(), "Database Error", JOptionPane.ERROR_MESSAGE);
+                    showTaskError(ex, "Failed to update record");
                 }
-            } catch (Exception ex) {
-                JOptionPane.showMessageDialog(this, "❌ Failed to update record: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
-            }
+            });
         });
     }
 
     private void showRecordDeleteForm() {
         clearBottomPanel();
         JPanel form = new JPanel(new FlowLayout(FlowLayout.CENTER, 10, 20));
-        JTextField tfID = new JTextField(10);
+        JTextField tfID = new JTextField(16);
         normalizeFieldHeight(tfID);
         JButton del = new JButton("Delete Record");
 
-        form.add(new JLabel("Record ID to Delete:")); form.add(tfID); form.add(del);
+        // Several records at once: "5, 8, 12" or "20-45"
+        form.add(new JLabel("Record ID(s) to Delete:")); form.add(tfID); form.add(del);
         bottomPanel.add(form, BorderLayout.CENTER);
         bottomPanel.revalidate();
 
         del.addActionListener(e -> {
+            List<Integer> ids;
             try {
-                int id = Integer.parseInt(tfID.getText().trim());
-                ProductDAO.setCurrentWarehouse(selectedWarehouse);
-                ProductDAO.deleteProduct(id);
-
+                ids = parseIdList(tfID.getText());
+            } catch (Exception ex) {
+                JOptionPane.showMessageDialog(this, "❌ Failed to delete record: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            String warehouse = selectedWarehouse;
+
+            del.setEnabled(false);
+            int view = tasks.currentView();
+            tasks.write("Deleting records", () -> {
+                WarehouseHandle h = WarehouseHandle.of(warehouse);
+                if (ids.size() == 1) {
+                    ProductDAO.deleteProduct(h, ids.get(0));
+                    return 1;
+                }
+                return ProductDAO.deleteRecords(h, ids);
+            }, deleted -> {
                 // FIX Point 5: Refresh the table immediately
-                loadRecordsOfWarehouse(selectedWarehouse);
-
-                JOptionPane.showMessageDialog(this, "✅ Record deleted. Stock history recalculated.");
-                clearBottomPanel();
-            } catch (SQLException ex) {
+                refreshRecords(warehouse, view);
+                JOptionPane.showMessageDialog(this, deleted == 1 ? "✅ Record deleted. Stock history recalculated."
+                        : "✅ " + deleted + " records deleted. Stock history recalculated.");
+                closeForm(del);
+            }, ex -> {
+                del.setEnabled(true);
                 // FIX Point 5: Handle stock warning or connection issue
-                if (ex.getMessage().contains("Negative stock detected")) {
+                if (ex instanceof SQLException && ex.getMessage().contains("Negative stock detected")) {
                     JOptionPane.showMessageDialog(this, "❌ Deletion aborted: " + ex.getMessage(), "Stock Integrity Warning", JOptionPane.ERROR_MESSAGE);
                 } else {
-                    JOptionPane.showMessageDialog(this, "❌ Database error: " + ex.getMessage(), "Database Error", JOptionPane.ERROR_MESSAGE);
+                    showTaskError(ex, "Failed to delete record");
                 }
-            } catch (Exception ex) {
-                JOptionPane.showMessageDialog(this, "❌ Failed to delete record: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
-            }
+            });
         });
     }
 
@@ -768,7 +1170,7 @@ public class WarehouseGUI extends JFrame {
         clearBottomPanel();
         JPanel form = new JPanel(new GridLayout(0, 2, 10, 8));
         JComboBox<String> cbWarehouse = new JComboBox<>();
-        WarehouseDAO.getAllWarehouses().forEach(w -> cbWarehouse.addItem(w.name));
+        fillWarehouseCombo(cbWarehouse, null);
         normalizeFieldHeight(cbWarehouse);
         JTextField tfProd = new JTextField(), tfSupp = new JTextField(), tfCust = new JTextField(),
                 tfQty = new JTextField(), tfPrice = new JTextField();
@@ -789,21 +1191,31 @@ public class WarehouseGUI extends JFrame {
         bottomPanel.revalidate();
 
         submit.addActionListener(e -> {
+            FutureTrade f;
             try {
-                FutureTrade f = new FutureTrade(0, (String) cbWarehouse.getSelectedItem(), tfProd.getText().trim(),
+                f = new FutureTrade(0, (String) cbWarehouse.getSelectedItem(), tfProd.getText().trim(),
                         tfSupp.getText().trim(), tfCust.getText().trim(),
                         parseInt(tfQty), parseDouble(tfPrice),
                         0, 0.0,
                         dateChooser.getDate()); // Uses getDate()
-                FutureTradeDAO.addFutureImport(f);
-                loadFutureTrades();
-                JOptionPane.showMessageDialog(this, "✅ Future import added.");
-                clearBottomPanel();
-            } catch (SQLException ex) {
-                JOptionPane.showMessageDialog(this, "❌ Database error: " + ex.getMessage(), "Database Error", JOptionPane.ERROR_MESSAGE);
             } catch (Exception ex) {
                 JOptionPane.showMessageDialog(this, "❌ Failed to add future import: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                return;
             }
+
+            submit.setEnabled(false);
+            int view = tasks.currentView();
+            tasks.write("Adding future import", () -> {
+                FutureTradeDAO.addFutureImport(f);
+                return null;
+            }, done -> {
+                refreshFutureTrades(view);
+                JOptionPane.showMessageDialog(this, "✅ Future import added.");
+                closeForm(submit);
+            }, ex -> {
+                submit.setEnabled(true);
+                showTaskError(ex, "Failed to add future import");
+            });
         });
     }
 
@@ -811,7 +1223,7 @@ public class WarehouseGUI extends JFrame {
         clearBottomPanel();
         JPanel form = new JPanel(new GridLayout(0, 2, 10, 8));
         JComboBox<String> cbWarehouse = new JComboBox<>();
-        WarehouseDAO.getAllWarehouses().forEach(w -> cbWarehouse.addItem(w.name));
+        fillWarehouseCombo(cbWarehouse, null);
         normalizeFieldHeight(cbWarehouse);
         JTextField tfProd = new JTextField(), tfSupp = new JTextField(), tfCust = new JTextField(),
                 tfQty = new JTextField(), tfPrice = new JTextField();
@@ -832,21 +1244,31 @@ public class WarehouseGUI extends JFrame {
         bottomPanel.revalidate();
 
         submit.addActionListener(e -> {
+            FutureTrade f;
             try {
-                FutureTrade f = new FutureTrade(0, (String) cbWarehouse.getSelectedItem(), tfProd.getText().trim(),
+                f = new FutureTrade(0, (String) cbWarehouse.getSelectedItem(), tfProd.getText().trim(),
                         tfSupp.getText().trim(), tfCust.getText().trim(),
                         0, 0.0,
                         parseInt(tfQty), parseDouble(tfPrice),
                         dateChooser.getDate()); // Uses getDate()
-                FutureTradeDAO.addFutureExport(f);
-                loadFutureTrades();
-                JOptionPane.showMessageDialog(this, "✅ Future export added.");
-                clearBottomPanel();
-            } catch (SQLException ex) {
-                JOptionPane.showMessageDialog(this, "❌ Database error: " + ex.getMessage(), "Database Error", JOptionPane.ERROR_MESSAGE);
             } catch (Exception ex) {
                 JOptionPane.showMessageDialog(this, "❌ Failed to add future export: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                return;
             }
+
+            submit.setEnabled(false);
+            int view = tasks.currentView();
+            tasks.write("Adding future export", () -> {
+                FutureTradeDAO.addFutureExport(f);
+                return null;
+            }, done -> {
+                refreshFutureTrades(view);
+                JOptionPane.showMessageDialog(this, "✅ Future export added.");
+                closeForm(submit);
+            }, ex -> {
+                submit.setEnabled(true);
+                showTaskError(ex, "Failed to add future export");
+            });
         });
     }
 
@@ -875,25 +1297,24 @@ public class WarehouseGUI extends JFrame {
 
     private void showFutureUpdateDetailsForm(int id) {
         clearBottomPanel();
-        FutureTrade f;
-        try {
-            f = FutureTradeDAO.getFutureTradeById(id);
+        tasks.load("Reading future trade " + id, () -> FutureTradeDAO.getFutureTradeById(id), f -> {
             if (f == null) {
                 JOptionPane.showMessageDialog(this, "❌ Future Record ID " + id + " not found.", "Error", JOptionPane.ERROR_MESSAGE);
                 showFutureTradeControls();
                 return;
             }
-        } catch (SQLException ex) {
-            JOptionPane.showMessageDialog(this, "❌ Database error: " + ex.getMessage(), "Database Error", JOptionPane.ERROR_MESSAGE);
+            buildFutureUpdateForm(f);
+        }, ex -> {
+            showDatabaseError(ex);
             showFutureTradeControls();
-            return;
-        }
+        });
+    }
 
+    private void buildFutureUpdateForm(FutureTrade f) {
         JPanel form = new JPanel(new GridLayout(0, 2, 10, 8));
         JTextField tfID = new JTextField(String.valueOf(f.getId())); tfID.setEditable(false);
         JComboBox<String> cbWarehouse = new JComboBox<>();
-        WarehouseDAO.getAllWarehouses().forEach(w -> cbWarehouse.addItem(w.name));
-        cbWarehouse.setSelectedItem(f.getWarehouse());
+        fillWarehouseCombo(cbWarehouse, f.getWarehouse());
         JTextField tfProd = new JTextField(f.getName());
         JTextField tfSupp = new JTextField(f.getSupplier());
         JTextField tfCust = new JTextField(f.getCustomer());
@@ -926,21 +1347,31 @@ public class WarehouseGUI extends JFrame {
         bottomPanel.revalidate();
 
         submit.addActionListener(e -> {
+            FutureTrade updatedF;
             try {
-                FutureTrade updatedF = new FutureTrade(Integer.parseInt(tfID.getText().trim()), (String) cbWarehouse.getSelectedItem(), tfProd.getText().trim(),
+                updatedF = new FutureTrade(Integer.parseInt(tfID.getText().trim()), (String) cbWarehouse.getSelectedItem(), tfProd.getText().trim(),
                         tfSupp.getText().trim(), tfCust.getText().trim(),
                         parseInt(tfImpQ), parseDouble(tfImpP), parseInt(tfExpQ),
                         parseDouble(tfExpP),
                         dateChooser.getDate()); // Uses getDate()
-                FutureTradeDAO.updateFutureTrade(updatedF);
-                loadFutureTrades();
-                JOptionPane.showMessageDialog(this, "✅ Future Record updated successfully.");
-                clearBottomPanel();
-            } catch (SQLException ex) {
-                JOptionPane.showMessageDialog(this, "❌ Database error: " + ex.getMessage(), "Database Error", JOptionPane.ERROR_MESSAGE);
             } catch (Exception ex) {
                 JOptionPane.showMessageDialog(this, "❌ Failed to update future record: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                return;
             }
+
+            submit.setEnabled(false);
+            int view = tasks.currentView();
+            tasks.write("Updating future trade " + updatedF.getId(), () -> {
+                FutureTradeDAO.updateFutureTrade(updatedF);
+                return null;
+            }, done -> {
+                refreshFutureTrades(view);
+                JOptionPane.showMessageDialog(this, "✅ Future Record updated successfully.");
+                closeForm(submit);
+            }, ex -> {
+                submit.setEnabled(true);
+                showTaskError(ex, "Failed to update future record");
+            });
         });
     }
 
@@ -955,17 +1386,27 @@ public class WarehouseGUI extends JFrame {
         bottomPanel.revalidate();
 
         del.addActionListener(e -> {
+            int id;
             try {
-                int id = Integer.parseInt(tfID.getText().trim());
-                FutureTradeDAO.deleteFutureTrade(id);
-                loadFutureTrades();
-                JOptionPane.showMessageDialog(this, "✅ Future trade deleted.");
-                clearBottomPanel();
-            } catch (SQLException ex) {
-                JOptionPane.showMessageDialog(this, "❌ Database error: " + ex.getMessage(), "Database Error", JOptionPane.ERROR_MESSAGE);
+                id = Integer.parseInt(tfID.getText().trim());
             } catch (Exception ex) {
                 JOptionPane.showMessageDialog(this, "❌ Failed to delete future record: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                return;
             }
+
+            del.setEnabled(false);
+            int view = tasks.currentView();
+            tasks.write("Deleting future trade " + id, () -> {
+                FutureTradeDAO.deleteFutureTrade(id);
+                return null;
+            }, done -> {
+                refreshFutureTrades(view);
+                JOptionPane.showMessageDialog(this, "✅ Future trade deleted.");
+                closeForm(del);
+            }, ex -> {
+                del.setEnabled(true);
+                showTaskError(ex, "Failed to delete future record");
+            });
         });
     }
 
@@ -974,37 +1415,107 @@ public class WarehouseGUI extends JFrame {
         JPanel form = new JPanel(new FlowLayout(FlowLayout.CENTER, 10, 20));
         JTextField tfID = new JTextField(10);
         normalizeFieldHeight(tfID);
+        tfID.setToolTipText("One ID, or a list such as 3, 7, 10-25");
         JButton shift = new JButton("Shift Record");
-        form.add(new JLabel("Future Record ID to Shift:")); form.add(tfID); form.add(shift);
+        DateInputPanel dueDate = new DateInputPanel();
+        normalizeFieldHeight(dueDate);
+        JButton shiftDue = new JButton("Shift All Due");
+        form.add(new JLabel("Future Record ID(s) to Shift:")); form.add(tfID); form.add(shift);
+        form.add(new JLabel("or everything dated up to:")); form.add(dueDate); form.add(shiftDue);
         bottomPanel.add(form, BorderLayout.CENTER);
         bottomPanel.revalidate();
 
         shift.addActionListener(e -> {
+            List<Integer> ids;
             try {
-                int id = Integer.parseInt(tfID.getText().trim());
-                FutureTradeDAO.shiftToWarehouse(id); // Shift logic handles auto-delete (Point 8)
-
-                // FIX Point 8: Refresh the table immediately after shift/delete
-                loadFutureTrades();
-
-                // If we shift an export, it might fail due to low stock (handled by DAO exception)
-                JOptionPane.showMessageDialog(this, "✅ Future trade shifted to warehouse records and deleted.");
-                clearBottomPanel();
-            } catch (SQLException ex) {
-                // FIX Point 8: Specific error handling for connection/stock issue
-                if (ex.getMessage().contains("Shift failed: insufficient stock")) {
-                    JOptionPane.showMessageDialog(this, "❌ Shift failed: Insufficient stock for export in target warehouse.", "Stock Error", JOptionPane.ERROR_MESSAGE);
-                } else if (ex.getMessage().contains("Negative stock detected")) {
-                    JOptionPane.showMessageDialog(this, "❌ Shift failed: " + ex.getMessage(), "Stock Integrity Warning", JOptionPane.ERROR_MESSAGE);
-                } else {
-                    JOptionPane.showMessageDialog(this, "❌ Database error: " + ex.getMessage(), "Database Error", JOptionPane.ERROR_MESSAGE);
-                }
+                ids = parseIdList(tfID.getText());
+            } catch (Exception ex) {
+                JOptionPane.showMessageDialog(this, "❌ Failed to shift record: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+
+            shift.setEnabled(false);
+            if (ids.size() == 1) {
+                int view = tasks.currentView();
+                tasks.write("Shifting future trade " + ids.get(0), () -> {
+                    FutureTradeDAO.shiftToWarehouse(ids.get(0)); // Shift logic handles auto-delete (Point 8)
+                    return null;
+                }, done -> {
+                    shift.setEnabled(true);
+                    // FIX Point 8: Refresh the table immediately after shift/delete
+                    refreshFutureTrades(view);
+
+                    // If we shift an export, it might fail due to low stock (handled by DAO exception)
+                    JOptionPane.showMessageDialog(this, "✅ Future trade shifted to warehouse records and deleted.");
+                    closeForm(shift);
+                }, ex -> {
+                    shift.setEnabled(true);
+                    showShiftError(ex);
+                });
+            } else {
+                int view = tasks.currentView();
+                tasks.write("Shifting future trades", () -> FutureTradeDAO.shiftToWarehouses(ids), result -> {
+                    shift.setEnabled(true);
+                    reportShift(result, shift, view);
+                }, ex -> {
+                    shift.setEnabled(true);
+                    showShiftError(ex);
+                });
+            }
+        });
+
+        shiftDue.addActionListener(e -> {
+            LocalDate upTo;
+            try {
+                upTo = dueDate.getDate();
             } catch (Exception ex) {
                 JOptionPane.showMessageDialog(this, "❌ Failed to shift record: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                return;
             }
+            shiftDue.setEnabled(false);
+            int view = tasks.currentView();
+            tasks.write("Shifting due future trades", () -> FutureTradeDAO.shiftDue(upTo), result -> {
+                shiftDue.setEnabled(true);
+                reportShift(result, shiftDue, view);
+            }, ex -> {
+                shiftDue.setEnabled(true);
+                showTaskError(ex, "Failed to shift records");
+            });
         });
     }
 
+    private void showShiftError(Exception ex) {
+        if (!(ex instanceof SQLException)) {
+            showTaskError(ex, "Failed to shift record");
+        // FIX Point 8: Specific error handling for connection/stock issue
+        } else if (ex.getMessage().contains("Shift failed: insufficient stock")) {
+            JOptionPane.showMessageDialog(this, "❌ " + ex.getMessage(), "Stock Error", JOptionPane.ERROR_MESSAGE);
+        } else if (ex.getMessage().contains("Negative stock detected")) {
+            JOptionPane.showMessageDialog(this, "❌ Shift failed: " + ex.getMessage(), "Stock Integrity Warning", JOptionPane.ERROR_MESSAGE);
+        } else {
+            showDatabaseError(ex);
+        }
+    }
+
+    // Summary of a batch shift; trades that could not be shifted stay in the list
+    private void reportShift(FutureTradeDAO.ShiftResult result, JComponent formPart, int view) {
+        refreshFutureTrades(view);
+        StringBuilder sb = new StringBuilder("✅ " + result.shiftedIds.size() + " future trade(s) shifted to warehouse records.");
+        if (!result.failed.isEmpty()) {
+            sb.append("\n\n❌ Not shifted (").append(result.failed.size()).append("):");
+            int shown = 0;
+            for (Map.Entry<Integer, String> f : result.failed.entrySet()) {
+                if (shown++ == 15) {
+                    sb.append("\n  ...");
+                    break;
+                }
+                sb.append("\n  ID ").append(f.getKey()).append(": ").append(f.getValue());
+            }
+        }
+        JOptionPane.showMessageDialog(this, sb.toString(), "Shift Future Trades",
+                result.failed.isEmpty() ? JOptionPane.INFORMATION_MESSAGE : JOptionPane.WARNING_MESSAGE);
+        if (result.failed.isEmpty()) closeForm(formPart);
+    }
 
     // ---------------------- TABLE & FORM HELPERS ----------------------
     private void leftAlignAllColumns() {
@@ -1014,6 +1525,84 @@ public class WarehouseGUI extends JFrame {
             centerTable.getColumnModel().getColumn(i).setCellRenderer(left);
     }
 
+    // Back to the regular (fully loaded, sortable) table model with the given columns
+    private void setTableColumns(String[] cols) {
+        if (lazyModel != null || recordsModel != null) {
+            if (lazyModel != null) lazyModel.close();
+            lazyModel = null;
+            recordsModel = null;
+            showingSearchResults = false;
+            centerTable.setModel(centerTableModel);
+            centerTable.setRowSorter(rowSorter);
+        }
+        centerTableModel.setDataVector(new Object[][]{}, cols);
+    }
+
+    private void showLazyRecords(LazyRecordsTableModel model) {
+        setTableColumns(new String[0]);
+        centerTable.setRowSorter(null); // a sorter would read every row
+        centerTable.setModel(model);
+        lazyModel = model;
+        leftAlignAllColumns();
+    }
+
+    // Records held column-wise (RecordColumns), sortable and filterable like the regular table
+    private void showRecords(RecordsTableModel model, boolean searchResults) {
+        setTableColumns(new String[0]);
+        centerTable.setRowSorter(null);
+        centerTable.setModel(model);
+        centerTable.setRowSorter(new TableRowSorter<>(model));
+        recordsModel = model;
+        showingSearchResults = searchResults;
+        leftAlignAllColumns();
+    }
+
+    private void showBusy(String label) {
+        busyLabel.setText(label == null ? "" : label + "...");
+        busyBar.setVisible(label != null);
+    }
+
+    private void showDatabaseError(Exception ex) {
+        ex.printStackTrace();
+        JOptionPane.showMessageDialog(this, "❌ Database error: " + ex.getMessage(), "Database Error", JOptionPane.ERROR_MESSAGE);
+    }
+
+    private void showTaskError(Exception ex, String failure) {
+        if (ex instanceof SQLException) {
+            showDatabaseError(ex);
+        } else {
+            JOptionPane.showMessageDialog(this, "❌ " + failure + ": " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    // Clears the input panel only if it still shows the form the component belongs to
+    private void closeForm(JComponent formPart) {
+        if (SwingUtilities.isDescendingFrom(formPart, bottomPanel)) clearBottomPanel();
+    }
+
+    // Reloads after a write, only if the user is still looking at the changed data:
+    // view is tasks.currentView() from when the write started (any switch since moves it on)
+    private void refreshRecords(String warehouseName, int view) {
+        if (tasks.currentView() == view && currentMode == Mode.WAREHOUSE_RECORDS && warehouseName.equals(selectedWarehouse))
+            loadRecordsOfWarehouse(warehouseName);
+    }
+
+    private void refreshFutureTrades(int view) {
+        if (tasks.currentView() == view && currentMode == Mode.FUTURE_TRADES) loadFutureTrades();
+    }
+
+    private void refreshWarehouses(int view) {
+        loadWarehouseList();
+        if (tasks.currentView() == view && currentMode == Mode.WAREHOUSE_LIST) loadMasterWarehouseTable();
+    }
+
+    private void fillWarehouseCombo(JComboBox<String> combo, String selected) {
+        tasks.load("Loading warehouses", WarehouseDAO::getAllWarehouses, warehouses -> {
+            warehouses.forEach(w -> combo.addItem(w.name));
+            if (selected != null) combo.setSelectedItem(selected);
+        }, this::showDatabaseError);
+    }
+
     private void clearBottomPanel() {
         bottomPanel.removeAll();
         bottomPanel.revalidate();
@@ -1024,9 +1613,10 @@ public class WarehouseGUI extends JFrame {
     private void showRowDetails(int modelRow) {
         clearBottomPanel();
         JPanel panel = new JPanel(new GridLayout(0, 2, 10, 6));
-        for (int i = 0; i < centerTableModel.getColumnCount(); i++) {
-            panel.add(new JLabel(centerTableModel.getColumnName(i) + ":"));
-            JTextField tf = new JTextField(centerTableModel.getValueAt(modelRow, i) == null ? "" : centerTableModel.getValueAt(modelRow, i).toString());
+        TableModel model = centerTable.getModel();
+        for (int i = 0; i < model.getColumnCount(); i++) {
+            panel.add(new JLabel(model.getColumnName(i) + ":"));
+            JTextField tf = new JTextField(model.getValueAt(modelRow, i) == null ? "" : model.getValueAt(modelRow, i).toString());
             tf.setEditable(false);
             panel.add(tf);
         }
@@ -1039,13 +1629,17 @@ public class WarehouseGUI extends JFrame {
         clearBottomPanel();
 
         String warehouseName = (String) centerTableModel.getValueAt(modelRow, 2); // Name is now in Column 2
-        WarehouseDAO.WarehouseInfo info = WarehouseDAO.getWarehouseByName(warehouseName);
-
-        if (info == null) {
-            showRowDetails(modelRow);
-            return;
-        }
+        tasks.load("Reading warehouse " + warehouseName, () -> WarehouseDAO.getWarehouseByName(warehouseName), info -> {
+            if (info == null) {
+                showRowDetails(modelRow);
+                return;
+            }
+            showWarehouseDetails(info);
+        }, this::showDatabaseError);
+    }
 
+    private void showWarehouseDetails(WarehouseDAO.WarehouseInfo info) {
+        clearBottomPanel();
         JPanel panel = new JPanel(new GridLayout(0, 2, 10, 6));
 
         // FIX: Display Input Order (Inauguration Date after Name)
@@ -1092,24 +1686,184 @@ public class WarehouseGUI extends JFrame {
 
     // ---------------------- EXPORT ----------------------
     private void exportTable() {
-        if (centerTableModel.getRowCount() == 0) { JOptionPane.showMessageDialog(this, "No data to export."); return; }
+        if (lazyModel != null) { exportLazyRecords(lazyModel.getHandle()); return; }
+        TableModel model = centerTable.getModel();
+        if (model.getRowCount() == 0) { JOptionPane.showMessageDialog(this, "No data to export."); return; }
         JFileChooser fc = new JFileChooser();
         fc.setSelectedFile(new File("export_" + System.currentTimeMillis() + ".txt"));
         if (fc.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
         File f = fc.getSelectedFile();
         try (BufferedWriter bw = new BufferedWriter(new FileWriter(f))) {
-            int cols = centerTableModel.getColumnCount();
-            for (int c = 0; c < cols; c++) bw.write(centerTableModel.getColumnName(c) + "\t");
+            int cols = model.getColumnCount();
+            for (int c = 0; c < cols; c++) bw.write(model.getColumnName(c) + "\t");
             bw.newLine();
-            for (int r = 0; r < centerTableModel.getRowCount(); r++) {
+            for (int r = 0; r < model.getRowCount(); r++) {
                 for (int c = 0; c < cols; c++)
-                    bw.write((centerTableModel.getValueAt(r, c) == null ? "" : centerTableModel.getValueAt(r, c).toString()) + "\t");
+                    bw.write((model.getValueAt(r, c) == null ? "" : model.getValueAt(r, c).toString()) + "\t");
                 bw.newLine();
             }
             JOptionPane.showMessageDialog(this, "✅ Exported to " + f.getAbsolutePath());
         } catch (Exception ex) { JOptionPane.showMessageDialog(this, "❌ " + ex.getMessage()); }
     }
 
+    // Records shown page by page are written straight from a streaming read, not from the table
+    private void exportLazyRecords(WarehouseHandle h) {
+        JFileChooser fc = new JFileChooser();
+        fc.setSelectedFile(new File("export_" + System.currentTimeMillis() + ".txt"));
+        if (fc.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        File f = fc.getSelectedFile();
+
+        new SwingWorker<Integer, Void>() {
+            @Override
+            protected Integer doInBackground() throws Exception {
+                try (BufferedWriter bw = new BufferedWriter(new FileWriter(f))) {
+                    for (String col : RecordColumns.COLUMNS) bw.write(col + "\t");
+                    bw.newLine();
+                    IOException[] failure = {null};
+                    int n = ProductDAO.forEachProduct(h, p -> {
+                        try {
+                            for (Object v : RecordColumns.toRow(p)) bw.write((v == null ? "" : v.toString()) + "\t");
+                            bw.newLine();
+                            return true;
+                        } catch (IOException ex) {
+                            failure[0] = ex;
+                            return false;
+                        }
+                    });
+                    if (failure[0] != null) throw failure[0];
+                    return n;
+                }
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    JOptionPane.showMessageDialog(WarehouseGUI.this, "✅ Exported " + get() + " rows to " + f.getAbsolutePath());
+                } catch (Exception ex) {
+                    Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                    JOptionPane.showMessageDialog(WarehouseGUI.this, "❌ " + cause.getMessage());
+                }
+            }
+        }.execute();
+    }
+
+    // Moves every warehouse still on its own tables into the shared records store (RecordsStoreMigrator)
+    private void migrateToUnifiedStore() {
+        int choice = JOptionPane.showConfirmDialog(this,
+                "Move all warehouses into the unified records store?\n"
+                        + "Each warehouse is briefly closed for writes while its rows are copied.",
+                "Unified Records Store", JOptionPane.OK_CANCEL_OPTION);
+        if (choice != JOptionPane.OK_OPTION) return;
+
+        clearBottomPanel();
+        JProgressBar progress = new JProgressBar(0, 1000);
+        progress.setStringPainted(true);
+        progress.setString("Preparing...");
+        bottomPanel.add(progress, BorderLayout.CENTER);
+        bottomPanel.revalidate();
+
+        new SwingWorker<Integer, Object[]>() {
+            @Override
+            protected Integer doInBackground() throws Exception {
+                return RecordsStoreMigrator.migrateAll((name, copied, total) ->
+                        publish(new Object[]{name, copied, total}));
+            }
+
+            @Override
+            protected void process(List<Object[]> chunks) {
+                Object[] p = chunks.get(chunks.size() - 1);
+                long copied = (Long) p[1], total = (Long) p[2];
+                if (total > 0) progress.setValue((int) Math.min(1000, copied * 1000 / total));
+                progress.setString(p[0] + ": " + copied + " / " + total + " rows");
+            }
+
+            @Override
+            protected void done() {
+                if (progress.getParent() == bottomPanel) clearBottomPanel();
+                try {
+                    JOptionPane.showMessageDialog(WarehouseGUI.this, "✅ Warehouses moved: " + get());
+                } catch (Exception ex) {
+                    Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                    JOptionPane.showMessageDialog(WarehouseGUI.this, "❌ Migration stopped: " + cause.getMessage(),
+                            "Migration Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        }.execute();
+    }
+
+    // Streams a CSV/TSV file (same columns as the current view) into the warehouse or future trades
+    private void importFromFile() {
+        JFileChooser fc = new JFileChooser();
+        if (fc.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        File f = fc.getSelectedFile();
+
+        Mode mode = currentMode;
+        String warehouse = selectedWarehouse;
+        int view = tasks.currentView();
+        RecordImporter importer = new RecordImporter(f,
+                mode == Mode.WAREHOUSE_RECORDS ? RecordImporter.Target.WAREHOUSE_RECORDS : RecordImporter.Target.FUTURE_TRADES,
+                warehouse);
+        long checkpoint = RecordImporter.readCheckpoint(f);
+        if (checkpoint > 0) {
+            int choice = JOptionPane.showConfirmDialog(this,
+                    "A previous import of this file stopped after line " + checkpoint + ".\nResume from there?",
+                    "Resume Import", JOptionPane.YES_NO_CANCEL_OPTION);
+            if (choice == JOptionPane.CANCEL_OPTION || choice == JOptionPane.CLOSED_OPTION) return;
+            if (choice == JOptionPane.YES_OPTION) importer.setStartLine(checkpoint);
+        }
+
+        clearBottomPanel();
+        JProgressBar progress = new JProgressBar(0, 1000);
+        progress.setStringPainted(true);
+        progress.setString("Reading " + f.getName() + "...");
+        JButton cancel = new JButton("Cancel Import");
+        bottomPanel.add(progress, BorderLayout.CENTER);
+        bottomPanel.add(cancel, BorderLayout.SOUTH);
+        bottomPanel.revalidate();
+
+        SwingWorker<RecordImporter.ImportResult, long[]> worker = new SwingWorker<>() {
+            @Override
+            protected RecordImporter.ImportResult doInBackground() throws Exception {
+                importer.setProgressListener((lines, bytes, total, imported, rejected) ->
+                        publish(new long[]{lines, bytes, total, imported, rejected}));
+                return importer.run();
+            }
+
+            @Override
+            protected void process(List<long[]> chunks) {
+                long[] p = chunks.get(chunks.size() - 1);
+                if (p[2] > 0) progress.setValue((int) Math.min(1000, p[1] * 1000 / p[2]));
+                progress.setString("Line " + p[0] + " - imported " + p[3] + ", rejected " + p[4]);
+            }
+
+            @Override
+            protected void done() {
+                if (progress.getParent() == bottomPanel) clearBottomPanel();
+                try {
+                    RecordImporter.ImportResult r = get();
+                    String msg = (r.cancelled ? "Import cancelled after line " + r.linesDone + " (can be resumed)."
+                            : "✅ Import finished.")
+                            + "\nImported: " + r.imported + "\nRejected: " + r.rejected
+                            + (r.rejectFile != null ? "\nRejected rows written to " + r.rejectFile.getAbsolutePath() : "");
+                    JOptionPane.showMessageDialog(WarehouseGUI.this, msg);
+                } catch (Exception ex) {
+                    Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                    JOptionPane.showMessageDialog(WarehouseGUI.this, "❌ Import stopped: " + cause.getMessage()
+                            + "\nCommitted rows are kept; the import can be resumed.", "Import Error", JOptionPane.ERROR_MESSAGE);
+                }
+                // Refresh only if the user is still looking at the imported table
+                if (tasks.currentView() != view) return;
+                if (mode == Mode.WAREHOUSE_RECORDS && warehouse.equals(selectedWarehouse)) loadRecordsOfWarehouse(warehouse);
+                else if (mode == Mode.FUTURE_TRADES) loadFutureTrades();
+            }
+        };
+        cancel.addActionListener(e -> {
+            importer.cancel();
+            cancel.setEnabled(false);
+        });
+        worker.execute();
+    }
+
     // ---------------------- UTILS ----------------------
     private String extractNameFromListEntry(String s) {
         int dot = s.indexOf('.');
@@ -1144,20 +1898,90 @@ public class WarehouseGUI extends JFrame {
 
         findButton.addActionListener(e -> {
             String text = findField.getText().trim();
-            if (text.isEmpty()) {
-                rowSorter.setRowFilter(null);
+            DefaultRowSorter<?, ?> sorter = (DefaultRowSorter<?, ?>) centerTable.getRowSorter();
+            if (lazyModel != null) {
+                if (!text.isEmpty()) findInLazyRecords(lazyModel.getHandle(), text);
+            } else if (sorter == null) {
+                return;
+            } else if (text.isEmpty()) {
+                sorter.setRowFilter(null);
             } else {
-                rowSorter.setRowFilter(RowFilter.regexFilter("(?i)" + text));
+                sorter.setRowFilter(RowFilter.regexFilter("(?i)" + text));
             }
         });
 
         resetButton.addActionListener(e -> {
             findField.setText("");
-            rowSorter.setRowFilter(null);
+            DefaultRowSorter<?, ?> sorter = (DefaultRowSorter<?, ?>) centerTable.getRowSorter();
+            if (sorter != null) sorter.setRowFilter(null);
+            if (showingSearchResults && currentMode == Mode.WAREHOUSE_RECORDS && selectedWarehouse != null)
+                loadRecordsOfWarehouse(selectedWarehouse); // back to the page-by-page view
         });
     }
 
+    // Find over a warehouse shown page by page: streams every record and keeps only the matches
+    private void findInLazyRecords(WarehouseHandle h, String text) {
+        Pattern pattern;
+        try {
+            pattern = Pattern.compile(text, Pattern.CASE_INSENSITIVE);
+        } catch (PatternSyntaxException ex) {
+            JOptionPane.showMessageDialog(this, "❌ Invalid search: " + ex.getDescription());
+            return;
+        }
+        String warehouse = selectedWarehouse;
+        RecordsTableModel matches = new RecordsTableModel(new RecordColumns(256));
+        showRecords(matches, true);
+
+        SwingWorker<Void, Product> worker = new SwingWorker<>() {
+            @Override
+            protected Void doInBackground() throws Exception {
+                ProductDAO.forEachProduct(h, p -> {
+                    for (Object v : RecordColumns.toRow(p)) {
+                        if (v != null && pattern.matcher(v.toString()).find()) {
+                            publish(p);
+                            break;
+                        }
+                    }
+                    return !isCancelled();
+                });
+                return null;
+            }
+
+            @Override
+            protected void process(List<Product> found) {
+                if (recordsModel != matches || !warehouse.equals(selectedWarehouse)) return; // user moved on
+                for (Product p : found) matches.add(p);
+            }
+        };
+        tasks.trackForView("Searching " + warehouse, worker);
+        worker.execute();
+    }
+
     // ---------- Small helper methods ----------
+    // "5, 8, 12-20" -> [5, 8, 12, ..., 20]
+    private List<Integer> parseIdList(String text) {
+        List<Integer> ids = new ArrayList<>();
+        for (String part : text.split(",")) {
+            part = part.trim();
+            if (part.isEmpty()) continue;
+            int dash = part.indexOf('-', 1);
+            if (dash > 0) {
+                int from = Integer.parseInt(part.substring(0, dash).trim());
+                int to = Integer.parseInt(part.substring(dash + 1).trim());
+                long size = (long) Math.max(from, to) - Math.min(from, to) + 1;
+                if (ids.size() + size > MAX_ID_LIST)
+                    throw new IllegalArgumentException("Too many record IDs (at most " + MAX_ID_LIST + " at once).");
+                for (long id = Math.min(from, to); id <= Math.max(from, to); id++) ids.add((int) id);
+            } else {
+                if (ids.size() >= MAX_ID_LIST)
+                    throw new IllegalArgumentException("Too many record IDs (at most " + MAX_ID_LIST + " at once).");
+                ids.add(Integer.parseInt(part));
+            }
+        }
+        if (ids.isEmpty()) throw new NumberFormatException("No record ID given.");
+        return ids;
+    }
+
     private int parseInt(JTextField f) {
         try {
             return f.getText().trim().isEmpty() ? 0 : Integer.parseInt(f.getText().trim());
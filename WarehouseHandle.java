@@ -0,0 +1,271 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * WarehouseHandle
+ * -------------------------------------------
+ * Resolved, immutable view of one user's warehouse: the sanitized records and
+ * current-stock table names plus every SQL statement ProductDAO issues against
+ * them. Handles are cached
+ * per (user, warehouse) so the table-name regexes and string concatenation run
+ * once per warehouse instead of on every record operation.
+ *
+ * Two storage layouts (warehouses.records_layout):
+ *   TABLE   - the warehouse's own <user>_records_<name> / <user>_stock_<name> tables
+ *   UNIFIED - rows in the shared warehouse_records / warehouse_stock tables, keyed and
+ *             partitioned by warehouse_id (see RecordsStoreMigrator)
+ * For UNIFIED the warehouse id is part of the SQL text, so both layouts take the
+ * same statement parameters and ProductDAO does not know which one it talks to.
+ */
+public class WarehouseHandle {
+
+    public enum Layout {TABLE, UNIFIED}
+
+    public static final String UNIFIED_RECORDS = "warehouse_records";
+    public static final String UNIFIED_STOCK = "warehouse_stock";
+
+    private static final ConcurrentHashMap<String, WarehouseHandle> CACHE = new ConcurrentHashMap<>();
+
+    private static final String COLUMNS = "product, date, supplier, customer, total_quantity, "
+            + "import_quantity, import_price, export_quantity, export_price";
+
+    private final String username;
+    private final String warehouseName;
+    private final int warehouseId;
+    private final Layout layout;
+    private final String table;
+    private final String stockTable;
+    private final String scopeKey;
+    private final String columns;     // insert column list
+    private final String valuePrefix; // leading insert values (the warehouse id for UNIFIED)
+    private final String scope;       // WHERE prefix selecting this warehouse's rows
+    private volatile boolean retired = false;
+    private final ConcurrentHashMap<Integer, String> multiInsertSql = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, String> stockInSql = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, String> selectInSql = new ConcurrentHashMap<>();
+
+    // Pre-built SQL text for the records table
+    final String selectById;
+    final String selectAll;
+    final String selectPage;
+    final String countAll;
+    final String selectIds;
+    final String insertImport;
+    final String insertExport;
+    final String updateRecord;
+    final String deleteById;
+    final String latestTotalBefore;
+    final String historyFrom;
+    final String updateTotal;
+    final String shiftLaterTotals;
+    final String productDeltas;
+    final String idsInDateRange;
+    final String idsOfProduct;
+    final String movementsAfter;
+    final String movementTotalsUpTo;
+
+    // Pre-built SQL text for the current-stock table (product -> running totals)
+    final String stockLock;
+    final String stockUpsert;
+    final String stockRefreshLastId;
+    final String stockAll;
+    final String layoutCheck;
+
+    private WarehouseHandle(String username, String warehouseName, int warehouseId, Layout layout) {
+        this.username = username;
+        this.warehouseName = warehouseName;
+        this.warehouseId = warehouseId;
+        this.layout = layout;
+        boolean unified = layout == Layout.UNIFIED;
+        this.table = unified ? UNIFIED_RECORDS : tableNameFor(username, warehouseName);
+        this.stockTable = unified ? UNIFIED_STOCK : stockTableNameFor(username, warehouseName);
+        this.scopeKey = unified ? table + '#' + warehouseId : table;
+        this.columns = unified ? "warehouse_id, " + COLUMNS : COLUMNS;
+        this.valuePrefix = unified ? warehouseId + ", " : "";
+        this.scope = unified ? "warehouse_id=" + warehouseId + " AND " : "";
+        String whereAll = unified ? " WHERE warehouse_id=" + warehouseId : "";
+        String stockColumns = (unified ? "warehouse_id, " : "") + "product, quantity, last_record_id, imported_quantity, imported_value";
+
+        selectById = "SELECT * FROM " + table + " WHERE " + scope + "id=?";
+        selectAll = "SELECT * FROM " + table + whereAll + " ORDER BY id ASC";
+        selectPage = "SELECT * FROM " + table + " WHERE " + scope + "id > ? ORDER BY id ASC LIMIT ?";
+        countAll = "SELECT COUNT(*) FROM " + table + whereAll;
+        selectIds = "SELECT id FROM " + table + whereAll + " ORDER BY id ASC";
+        insertImport = "INSERT INTO " + table + " (" + columns + ") VALUES (" + valuePrefix + "?, ?, ?, ?, ?, ?, ?, 0, 0)";
+        insertExport = "INSERT INTO " + table + " (" + columns + ") VALUES (" + valuePrefix + "?, ?, ?, ?, ?, 0, 0, ?, ?)";
+        updateRecord = "UPDATE " + table + " SET product=?, date=?, supplier=?, customer=?, "
+                + "import_quantity=?, import_price=?, export_quantity=?, export_price=? WHERE " + scope + "id=?";
+        deleteById = "DELETE FROM " + table + " WHERE " + scope + "id=?";
+        latestTotalBefore = "SELECT total_quantity FROM " + table + " WHERE " + scope
+                + "product=? AND id < ? ORDER BY id DESC LIMIT 1";
+        historyFrom = "SELECT id, import_quantity - export_quantity AS delta, total_quantity FROM " + table
+                + " WHERE " + scope + "product=? AND id >= ? ORDER BY id ASC";
+        updateTotal = "UPDATE " + table + " SET total_quantity=? WHERE " + scope + "id=?";
+        shiftLaterTotals = "UPDATE " + table + " SET total_quantity = total_quantity + ? WHERE " + scope + "product=? AND id > ?";
+        productDeltas = "SELECT id, import_quantity - export_quantity FROM " + table + " WHERE " + scope
+                + "product=? ORDER BY id ASC";
+        idsInDateRange = "SELECT id FROM " + table + " WHERE " + scope + "date >= ? AND date <= ? ORDER BY id ASC";
+        idsOfProduct = "SELECT id FROM " + table + " WHERE " + scope + "product=? ORDER BY id ASC";
+        movementsAfter = "SELECT id, product, import_quantity, import_price, export_quantity, export_price FROM "
+                + table + " WHERE " + scope + "id > ? ORDER BY id ASC";
+        movementTotalsUpTo = "SELECT COUNT(*), COALESCE(SUM(import_quantity), 0), COALESCE(SUM(import_quantity * import_price), 0),"
+                + " COALESCE(SUM(export_quantity), 0), COALESCE(SUM(export_quantity * export_price), 0) FROM "
+                + table + " WHERE " + scope + "id <= ?";
+
+        stockLock = "SELECT quantity FROM " + stockTable + " WHERE " + scope + "product=? FOR UPDATE";
+        stockUpsert = "INSERT INTO " + stockTable + " (" + stockColumns + ") VALUES (" + valuePrefix + "?, ?, ?, ?, ?)"
+                + " ON DUPLICATE KEY UPDATE quantity = quantity + VALUES(quantity),"
+                + " last_record_id = GREATEST(last_record_id, VALUES(last_record_id)),"
+                + " imported_quantity = imported_quantity + VALUES(imported_quantity),"
+                + " imported_value = imported_value + VALUES(imported_value)";
+        stockRefreshLastId = "UPDATE " + stockTable + " SET last_record_id = "
+                + "(SELECT COALESCE(MAX(id), 0) FROM " + table + " WHERE " + scope + "product=?) WHERE " + scope + "product=?";
+        stockAll = "SELECT product, quantity, last_record_id, imported_quantity, imported_value FROM "
+                + stockTable + whereAll + " ORDER BY product ASC";
+        layoutCheck = "SELECT records_layout FROM warehouses WHERE warehouse_id=?"
+                + DBConnection.getStorageEngine().sharedLockSuffix();
+    }
+
+    // --------------------------------------------------------
+    // Lookup (cached) handle for a warehouse of the logged-in user
+    // --------------------------------------------------------
+    public static WarehouseHandle of(String warehouseName) throws SQLException {
+        if (!SessionManager.isLoggedIn() || warehouseName == null) {
+            throw new IllegalStateException("Warehouse not selected or user not logged in.");
+        }
+        return of(SessionManager.getCurrentUser(), warehouseName);
+    }
+
+    // Handle for a warehouse of an explicit user (background work that must not follow a re-login)
+    // (resolved outside the map so the query neither blocks other keys nor hides its SQLException)
+    static WarehouseHandle of(String user, String warehouseName) throws SQLException {
+        String key = key(user, warehouseName);
+        WarehouseHandle h = CACHE.get(key);
+        if (h != null) return h;
+        h = resolve(user, warehouseName);
+        WarehouseHandle raced = CACHE.putIfAbsent(key, h);
+        return raced != null ? raced : h;
+    }
+
+    // Handles of every warehouse of the logged-in user (creation order), resolved with one query
+    public static List<WarehouseHandle> ofAll() throws SQLException {
+        List<WarehouseHandle> handles = new ArrayList<>();
+        if (!SessionManager.isLoggedIn()) return handles;
+        String user = SessionManager.getCurrentUser();
+        String sql = "SELECT warehouse_name, warehouse_id, records_layout FROM warehouses WHERE username=? ORDER BY warehouse_id ASC";
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, user);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    String name = rs.getString("warehouse_name");
+                    int id = rs.getInt("warehouse_id");
+                    Layout layout = Layout.valueOf(rs.getString("records_layout"));
+                    handles.add(CACHE.computeIfAbsent(key(user, name), k -> new WarehouseHandle(user, name, id, layout)));
+                }
+            }
+        }
+        return handles;
+    }
+
+    // Reads the warehouse's id and layout (an unknown warehouse resolves to its TABLE names, as before)
+    private static WarehouseHandle resolve(String user, String warehouseName) throws SQLException {
+        String sql = "SELECT warehouse_id, records_layout FROM warehouses WHERE username=? AND warehouse_name=?";
+        try (Connection conn = DBConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, user);
+            ps.setString(2, warehouseName);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    return new WarehouseHandle(user, warehouseName, rs.getInt("warehouse_id"),
+                            Layout.valueOf(rs.getString("records_layout")));
+                }
+            }
+        }
+        return new WarehouseHandle(user, warehouseName, 0, Layout.TABLE);
+    }
+
+    // --------------------------------------------------------
+    // SQL whose text depends on a row count (bulk paths); cached per count so a
+    // full-size chunk always reuses the same prepared statement
+    // --------------------------------------------------------
+    String multiInsert(int rows) {
+        return multiInsertSql.computeIfAbsent(rows, n -> {
+            StringBuilder sb = new StringBuilder("INSERT INTO ").append(table)
+                    .append(" (").append(columns).append(") VALUES ");
+            for (int i = 0; i < n; i++) {
+                sb.append(i == 0 ? "(" : ", (").append(valuePrefix).append("?, ?, ?, ?, ?, ?, ?, ?, ?)");
+            }
+            return sb.toString();
+        });
+    }
+
+    String stockQuantitiesForUpdate(int products) {
+        return stockInSql.computeIfAbsent(products, n -> {
+            StringBuilder sb = new StringBuilder("SELECT product, quantity FROM ").append(stockTable)
+                    .append(" WHERE ").append(scope).append("product IN (");
+            for (int i = 0; i < n; i++) sb.append(i == 0 ? "?" : ", ?");
+            return sb.append(") FOR UPDATE").toString();
+        });
+    }
+
+    String selectByIds(int ids) {
+        return selectInSql.computeIfAbsent(ids, n -> {
+            StringBuilder sb = new StringBuilder("SELECT * FROM ").append(table)
+                    .append(" WHERE ").append(scope).append("id IN (");
+            for (int i = 0; i < n; i++) sb.append(i == 0 ? "?" : ", ?");
+            return sb.append(")").toString();
+        });
+    }
+
+    // Drop the cached handle (and in-memory stock indexes) after a warehouse is created, renamed, deleted or moved
+    public static void invalidate(String warehouseName) {
+        if (!SessionManager.isLoggedIn() || warehouseName == null) return;
+        WarehouseHandle h = CACHE.remove(key(SessionManager.getCurrentUser(), warehouseName));
+        if (h != null) {
+            h.retired = true;
+            StockIndex.invalidateScope(h.getScopeKey());
+            InventoryValuation.invalidateScope(h.getScopeKey());
+        }
+    }
+
+    // Records table name for a warehouse of the logged-in user
+    public static String tableNameFor(String warehouseName) {
+        return SessionManager.prefixTable("records_" + WarehouseDAO.sanitizeName(warehouseName));
+    }
+
+    // Current-stock table name for a warehouse of the logged-in user
+    public static String stockTableNameFor(String warehouseName) {
+        return SessionManager.prefixTable("stock_" + WarehouseDAO.sanitizeName(warehouseName));
+    }
+
+    static String stockTableNameFor(String username, String warehouseName) {
+        return SessionManager.sanitizeUsername(username) + "_stock_" + WarehouseDAO.sanitizeName(warehouseName);
+    }
+
+    static String tableNameFor(String username, String warehouseName) {
+        return SessionManager.sanitizeUsername(username) + "_records_" + WarehouseDAO.sanitizeName(warehouseName);
+    }
+
+    private static String key(String user, String warehouseName) {
+        return user + '\u0000' + warehouseName;
+    }
+
+    public String getUsername() { return username; }
+    public String getWarehouseName() { return warehouseName; }
+    public String getTable() { return table; }
+    public int getWarehouseId() { return warehouseId; }
+    public Layout getLayout() { return layout; }
+
+    // Identifies this warehouse's rows (table, or shared table + warehouse id) for in-memory caches and locks
+    public String getScopeKey() { return scopeKey; }
+
+    // True once the handle was invalidated; a write holding it must not touch its tables any more
+    public boolean isRetired() { return retired; }
+    public String getStockTable() { return stockTable; }
+}
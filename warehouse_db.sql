@@ -2,44 +2,101 @@
 CREATE DATABASE warehouse_db;
 USE warehouse_db;
 
--- 2. Creating Main Records Table
-CREATE TABLE IF NOT EXISTS records (
-    ID INT AUTO_INCREMENT PRIMARY KEY,
-    Product VARCHAR(100) NOT NULL,
-    Total_Quantity INT DEFAULT 0,
-    Import_Quantity INT DEFAULT 0,
-    Import_Price DOUBLE(10,2) DEFAULT 0.00,
-    Export_Quantity INT DEFAULT 0,
-    Export_Price DOUBLE(10,2) DEFAULT 0.00,
-    Date DATE NOT NULL
+-- NOTE: The application provisions and migrates its schema on startup
+-- (SchemaBootstrapper, tracked in schema_version). This script only mirrors
+-- the shared tables for manual installs; per-warehouse tables
+-- (<username>_records_<warehouse>, <username>_stock_<warehouse>) are created
+-- by the application when a warehouse is created.
+
+-- 2. Users
+CREATE TABLE IF NOT EXISTS users (
+    username VARCHAR(100) PRIMARY KEY,
+    password VARCHAR(100) NOT NULL,
+    email VARCHAR(150)
+);
+
+-- 3. Warehouses (one row per user warehouse)
+CREATE TABLE IF NOT EXISTS warehouses (
+    warehouse_id INT AUTO_INCREMENT PRIMARY KEY,
+    username VARCHAR(100) NOT NULL,
+    warehouse_name VARCHAR(100) NOT NULL,
+    city VARCHAR(100),
+    address VARCHAR(255),
+    inauguration_date DATE,
+    last_activity_date TIMESTAMP NULL,
+    notes VARCHAR(1000),
+    records_layout VARCHAR(16) NOT NULL DEFAULT 'TABLE', -- TABLE or UNIFIED
+    UNIQUE (username, warehouse_name)
 );
 
--- 3. Creating Future Trades Records Table
+-- 4. Future Trades (IDs are sequential per user)
 CREATE TABLE IF NOT EXISTS future_trades (
-    ID INT AUTO_INCREMENT PRIMARY KEY,
-    Product VARCHAR(100) NOT NULL,
-    Import_Quantity INT DEFAULT 0,
-    Import_Price DOUBLE(10,2) DEFAULT 0.00,
-    Export_Quantity INT DEFAULT 0,
-    Export_Price DOUBLE(10,2) DEFAULT 0.00,
-    Date DATE NOT NULL
+    id INT NOT NULL,
+    username VARCHAR(100) NOT NULL,
+    warehouse_name VARCHAR(100) NOT NULL,
+    product VARCHAR(100) NOT NULL,
+    supplier VARCHAR(100),
+    customer VARCHAR(100),
+    import_quantity INT DEFAULT 0,
+    import_price DOUBLE(10,2) DEFAULT 0.00,
+    export_quantity INT DEFAULT 0,
+    export_price DOUBLE(10,2) DEFAULT 0.00,
+    date DATE NOT NULL,
+    PRIMARY KEY (username, id),
+    INDEX idx_ft_user_date (username, date),
+    INDEX idx_ft_user_warehouse (username, warehouse_name, product, date)
+);
+
+-- 5. Next unreserved future_trades id of every user (FutureTradeIdSequence)
+CREATE TABLE IF NOT EXISTS future_trade_sequences (
+    username VARCHAR(100) PRIMARY KEY,
+    next_id INT NOT NULL
 );
 
--- 4. Creating a Trigger to Automatically Update the Total Quantity
-DELIMITER $$
-CREATE TRIGGER update_total_quantity
-    BEFORE INSERT ON records
-    FOR EACH ROW
-    BEGIN
-        DECLARE current_total INT;
-  
-       -- Get current total stock for this product
-        SELECT IFNULL(SUM(Import_Quantity) - SUM(Export_Quantity), 0)
-        INTO current_total
-        FROM records
-        WHERE Product = NEW.Product;
-  
-        -- Update Total_Quantity for the new row
-        SET NEW.Total_Quantity = current_total + (NEW.Import_Quantity - NEW.Export_Quantity);
-    END$$
-DELIMITER ;
+-- 6. Unified records store (warehouses with records_layout = 'UNIFIED')
+CREATE TABLE IF NOT EXISTS warehouse_records (
+    warehouse_id INT NOT NULL,
+    id INT NOT NULL AUTO_INCREMENT,
+    product VARCHAR(100) NOT NULL,
+    supplier VARCHAR(100),
+    customer VARCHAR(100),
+    total_quantity INT DEFAULT 0,
+    import_quantity INT DEFAULT 0,
+    import_price DOUBLE(10,2) DEFAULT 0.00,
+    export_quantity INT DEFAULT 0,
+    export_price DOUBLE(10,2) DEFAULT 0.00,
+    date DATE NOT NULL,
+    PRIMARY KEY (warehouse_id, id),
+    KEY idx_wr_id (id),
+    INDEX idx_wr_product_id (warehouse_id, product, id),
+    INDEX idx_wr_date (warehouse_id, date)
+) PARTITION BY KEY(warehouse_id) PARTITIONS 16;
+
+CREATE TABLE IF NOT EXISTS warehouse_stock (
+    warehouse_id INT NOT NULL,
+    product VARCHAR(100) NOT NULL,
+    quantity INT NOT NULL DEFAULT 0,
+    last_record_id INT NOT NULL DEFAULT 0,
+    imported_quantity BIGINT NOT NULL DEFAULT 0,
+    imported_value DOUBLE NOT NULL DEFAULT 0,
+    PRIMARY KEY (warehouse_id, product),
+    INDEX idx_ws_product (product)
+) PARTITION BY KEY(warehouse_id) PARTITIONS 16;
+
+-- 7. Daily movement summary per warehouse, product and day (RollupDAO)
+CREATE TABLE IF NOT EXISTS product_daily_rollup (
+    warehouse_id INT NOT NULL,
+    product VARCHAR(100) NOT NULL,
+    rollup_date DATE NOT NULL,
+    imported_quantity BIGINT NOT NULL DEFAULT 0,
+    exported_quantity BIGINT NOT NULL DEFAULT 0,
+    import_value DOUBLE NOT NULL DEFAULT 0,
+    export_value DOUBLE NOT NULL DEFAULT 0,
+    closing_stock BIGINT NOT NULL DEFAULT 0,
+    PRIMARY KEY (warehouse_id, product, rollup_date),
+    INDEX idx_rollup_date (warehouse_id, rollup_date)
+) PARTITION BY KEY(warehouse_id) PARTITIONS 16;
+
+-- 8. The former update_total_quantity trigger re-summed a product's whole
+-- history on every insert; running totals are maintained by the application.
+DROP TRIGGER IF EXISTS update_total_quantity;